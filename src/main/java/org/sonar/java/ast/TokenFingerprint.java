@@ -0,0 +1,65 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.ast;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.sonar.java.model.JavaTree;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fingerprint of the token stream of a tree, with the line of each token: whitespaces and comments are ignored as long
+ * as they do not move tokens to other lines. Names and lines appear in the labels of the graphs, so sources with the
+ * same fingerprint have the same graphs.
+ */
+public class TokenFingerprint {
+
+  private final Hasher hasher = Hashing.sha256().newHasher();
+
+  private TokenFingerprint() {
+  }
+
+  public static String of(Tree tree) {
+    TokenFingerprint fingerprint = new TokenFingerprint();
+    fingerprint.visit(tree);
+    return fingerprint.hasher.hash().toString();
+  }
+
+  private void visit(Tree tree) {
+    if (tree.is(Tree.Kind.IDENTIFIER)) {
+      add(((IdentifierTree) tree).identifierToken());
+    } else if (tree.is(Tree.Kind.TOKEN)) {
+      add((SyntaxToken) tree);
+    } else if (!((JavaTree) tree).isLeaf()) {
+      for (Tree child : ((JavaTree) tree).getChildren()) {
+        visit(child);
+      }
+    }
+  }
+
+  private void add(SyntaxToken token) {
+    // separator which can not be part of a token
+    hasher.putInt(token.line()).putString(token.text(), StandardCharsets.UTF_8).putChar('\n');
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.callgraph;
+
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Methods of a compilation unit and the methods they invoke, resolved by the semantic model. Methods declared in the
+ * compilation unit come first, followed by the other invoked methods. Callees of each method are stored in arrays
+ * indexed by offsets (compressed sparse rows), with the number of invocations of each callee.
+ */
+public class CallGraph {
+
+  private final List<MethodTree> declarations;
+  private final List<Symbol.MethodSymbol> methods;
+  private final int[] offsets;
+  private final int[] callees;
+  private final int[] calls;
+
+  private CallGraph(List<MethodTree> declarations, List<Symbol.MethodSymbol> methods, int[] offsets, int[] callees, int[] calls) {
+    this.declarations = declarations;
+    this.methods = methods;
+    this.offsets = offsets;
+    this.callees = callees;
+    this.calls = calls;
+  }
+
+  /**
+   * Bodies of the methods are scanned concurrently, invoked methods being numbered afterwards
+   */
+  public static CallGraph of(CompilationUnitTree cut) {
+    List<MethodTree> declarations = declarations(cut);
+    List<List<Symbol.MethodSymbol>> invocations = declarations.parallelStream()
+      .map(CallGraph::invokedMethods)
+      .collect(Collectors.toList());
+
+    List<Symbol.MethodSymbol> methods = new ArrayList<>();
+    Map<Symbol.MethodSymbol, Integer> ids = new HashMap<>();
+    for (MethodTree declaration : declarations) {
+      ids.put(declaration.symbol(), methods.size());
+      methods.add(declaration.symbol());
+    }
+    int[] offsets = new int[declarations.size() + 1];
+    int[] callees = new int[invocations.stream().mapToInt(List::size).sum()];
+    int[] calls = new int[callees.length];
+    int edges = 0;
+    for (int i = 0; i < declarations.size(); i++) {
+      int[] invoked = invocations.get(i).stream()
+        .mapToInt(symbol -> ids.computeIfAbsent(symbol, s -> {
+          methods.add(s);
+          return methods.size() - 1;
+        }))
+        .toArray();
+      Arrays.sort(invoked);
+      for (int j = 0; j < invoked.length; j++) {
+        if (j > 0 && invoked[j] == invoked[j - 1]) {
+          calls[edges - 1]++;
+        } else {
+          callees[edges] = invoked[j];
+          calls[edges] = 1;
+          edges++;
+        }
+      }
+      offsets[i + 1] = edges;
+    }
+    return new CallGraph(declarations, methods, offsets, Arrays.copyOf(callees, edges), Arrays.copyOf(calls, edges));
+  }
+
+  /**
+   * @return number of methods declared with a body in the compilation unit, numbered first
+   */
+  public int declaredMethodsCount() {
+    return declarations.size();
+  }
+
+  public int methodsCount() {
+    return methods.size();
+  }
+
+  public Symbol.MethodSymbol method(int method) {
+    return methods.get(method);
+  }
+
+  public MethodTree declaration(int method) {
+    return declarations.get(method);
+  }
+
+  /**
+   * @return methods invoked by the given method, in increasing order, none for methods not declared in the compilation unit
+   */
+  public int[] callees(int method) {
+    if (method >= declarations.size()) {
+      return new int[0];
+    }
+    return Arrays.copyOfRange(callees, offsets[method], offsets[method + 1]);
+  }
+
+  /**
+   * @return number of invocations of each callee of the given method, in the order of {@link #callees(int)}
+   */
+  public int[] calls(int method) {
+    if (method >= declarations.size()) {
+      return new int[0];
+    }
+    return Arrays.copyOfRange(calls, offsets[method], offsets[method + 1]);
+  }
+
+  private static List<MethodTree> declarations(CompilationUnitTree cut) {
+    List<MethodTree> declarations = new ArrayList<>();
+    cut.accept(new BaseTreeVisitor() {
+      @Override
+      public void visitMethod(MethodTree tree) {
+        if (tree.block() != null) {
+          declarations.add(tree);
+        }
+        super.visitMethod(tree);
+      }
+    });
+    return declarations;
+  }
+
+  private static List<Symbol.MethodSymbol> invokedMethods(MethodTree method) {
+    List<Symbol.MethodSymbol> invokedMethods = new ArrayList<>();
+    method.block().accept(new BaseTreeVisitor() {
+      @Override
+      public void visitClass(ClassTree tree) {
+        // methods of local and anonymous classes have their own invocations
+      }
+
+      @Override
+      public void visitMethodInvocation(MethodInvocationTree tree) {
+        if (tree.symbol().isMethodSymbol()) {
+          invokedMethods.add((Symbol.MethodSymbol) tree.symbol());
+        }
+        super.visitMethodInvocation(tree);
+      }
+    });
+    return invokedMethods;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.callgraph;
+
+import org.sonar.java.viewer.DotGraph;
+import org.sonar.java.viewer.dto.CommonDto;
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.semantic.Type;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class CallGraphDotGraph extends DotGraph {
+
+  private final CompilationUnitTree cut;
+
+  public CallGraphDotGraph(CompilationUnitTree cut) {
+    this.cut = cut;
+  }
+
+  @Override
+  public String name() {
+    return "CallGraph";
+  }
+
+  @Override
+  public void build() {
+    CallGraph callGraph = CallGraph.of(cut);
+    int methodsCount = callGraph.methodsCount();
+
+    // nodes, grouped by class: classes are numbered after the methods
+    Map<Symbol, List<Integer>> methodsByClass = new LinkedHashMap<>();
+    for (int method = 0; method < methodsCount; method++) {
+      methodsByClass.computeIfAbsent(callGraph.method(method).owner(), owner -> new ArrayList<>()).add(method);
+    }
+    int classId = methodsCount;
+    for (Map.Entry<Symbol, List<Integer>> entry : methodsByClass.entrySet()) {
+      addNode(new ClassDotNode(classId, entry.getKey()));
+      for (int method : entry.getValue()) {
+        addNode(new MethodDotNode(method, callGraph, method < callGraph.declaredMethodsCount()));
+        addEdge(new CallGraphDotEdge(classId, method, null));
+      }
+      classId++;
+    }
+
+    // edges
+    for (int method = 0; method < callGraph.declaredMethodsCount(); method++) {
+      int[] callees = callGraph.callees(method);
+      int[] calls = callGraph.calls(method);
+      for (int i = 0; i < callees.length; i++) {
+        addEdge(new CallGraphDotEdge(method, callees[i], calls[i] > 1 ? (calls[i] + " calls") : "call"));
+      }
+    }
+  }
+
+  private static class ClassDotNode extends DotGraph.Node {
+
+    private final String label;
+
+    public ClassDotNode(int id, Symbol owner) {
+      super(id);
+      this.label = owner.type() == null ? owner.name() : owner.type().fullyQualifiedName();
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public Highlighting highlighting() {
+      return Highlighting.CLASS_KIND;
+    }
+
+    @Override
+    public CommonDto details() {
+      return null;
+    }
+  }
+
+  private static class MethodDotNode extends DotGraph.Node {
+
+    private final String label;
+    private final boolean isDeclared;
+
+    public MethodDotNode(int id, CallGraph callGraph, boolean isDeclared) {
+      super(id);
+      this.isDeclared = isDeclared;
+      this.label = label(callGraph.method(id), isDeclared ? callGraph.declaration(id).simpleName().identifierToken().line() : null);
+    }
+
+    private static String label(Symbol.MethodSymbol method, @Nullable Integer line) {
+      String name = "<init>".equals(method.name()) ? method.owner().name() : method.name();
+      String parameters = method.parameterTypes().stream().map(Type::name).collect(Collectors.joining(", "));
+      return name + "(" + parameters + ")" + (line == null ? "" : (" L#" + line));
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @CheckForNull
+    @Override
+    public Highlighting highlighting() {
+      // methods declared elsewhere are not highlighted
+      return isDeclared ? Highlighting.METHOD_KIND : null;
+    }
+
+    @Override
+    public CommonDto details() {
+      return null;
+    }
+  }
+
+  private static class CallGraphDotEdge extends DotGraph.Edge {
+
+    private final String label;
+
+    public CallGraphDotEdge(int from, int to, @Nullable String label) {
+      super(from, to);
+      this.label = label;
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public Highlighting highlighting() {
+      return null;
+    }
+
+    @Override
+    public CommonDto details() {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.resolve;
+
+import org.sonar.java.bytecode.loader.SquidClassLoader;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+/**
+ * Semantic model shared by all the compilation units of a project.
+ *
+ * Mirrors {@link SemanticModel#createFor(CompilationUnitTree, SquidClassLoader)}, but keeps the same symbol tables
+ * for all the files: every compilation unit is indexed first (declared types are registered in the bytecode completer),
+ * then resolved, so that types declared in one file are resolved from the others instead of being unknown.
+ */
+public class ProjectSemanticModel {
+
+  private final SemanticModel semanticModel;
+  private final Symbols symbols;
+  private final Resolve resolve;
+  private final ParametrizedTypeCache parametrizedTypeCache;
+  private final TypeAndReferenceSolver typeAndReferenceSolver;
+
+  public ProjectSemanticModel(SquidClassLoader classLoader) {
+    this.parametrizedTypeCache = new ParametrizedTypeCache();
+    BytecodeCompleter bytecodeCompleter = new BytecodeCompleter(classLoader, parametrizedTypeCache);
+    this.symbols = new Symbols(bytecodeCompleter);
+    this.semanticModel = new SemanticModel(bytecodeCompleter);
+    this.resolve = new Resolve(symbols, bytecodeCompleter, parametrizedTypeCache);
+    this.typeAndReferenceSolver = new TypeAndReferenceSolver(semanticModel, symbols, resolve, parametrizedTypeCache);
+  }
+
+  /**
+   * Enter the symbols declared by the compilation unit. Every compilation unit of the project has to be indexed
+   * before resolving any of them.
+   */
+  public void index(CompilationUnitTree cut) {
+    new FirstPass(semanticModel, symbols, resolve, parametrizedTypeCache, typeAndReferenceSolver).visitCompilationUnit(cut);
+  }
+
+  /**
+   * Resolve types and references of an already indexed compilation unit
+   */
+  public void resolve(CompilationUnitTree cut) {
+    try {
+      typeAndReferenceSolver.visitCompilationUnit(cut);
+      new LabelsVisitor(semanticModel).visitCompilationUnit(cut);
+    } finally {
+      SemanticModel.handleMissingTypes(cut);
+    }
+  }
+
+  public SemanticModel semanticModel() {
+    return semanticModel;
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.sonar.java.se.dto.NodeDetailsDto;
+import org.sonar.java.se.dto.SvWithConstraintsDto;
+import org.sonar.java.se.dto.SvWithSymbolDto;
+import org.sonar.java.viewer.DotGraph;
+
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Differences between the exploded graphs of two versions of a method: only the nodes which have been added, removed or
+ * changed are kept, annotated, with the edges between them.
+ *
+ * Nodes are matched through hash maps, first by program point and program state, then by program point only, in which
+ * case the node is considered as changed. Symbolic values are renamed in order of appearance in the program state, so
+ * that the states of both versions can be compared.
+ */
+public class EGDiffDotGraph extends DotGraph {
+
+  private static final Pattern LINE = Pattern.compile(" L#\\d+");
+  private static final Pattern SYMBOLIC_VALUE = Pattern.compile("SV_\\d+");
+
+  enum Status {
+    UNCHANGED, ADDED, REMOVED, CHANGED
+  }
+
+  private final EGDotGraph before;
+  private final EGDotGraph after;
+
+  public EGDiffDotGraph(EGDotGraph before, EGDotGraph after) {
+    this.before = before;
+    this.after = after;
+  }
+
+  @Override
+  public String name() {
+    return "ExplodedGraphDiff";
+  }
+
+  @Override
+  public void build() {
+    List<ExplodedGraph.Node> beforeNodes = before.nodes();
+    List<ExplodedGraph.Node> afterNodes = after.nodes();
+    // nodes of the new version keep their index, removed nodes are numbered after them
+    int removedOffset = afterNodes.size();
+    EGDiffDotNode[] beforeDotNodes = dotNodes(before, beforeNodes, removedOffset);
+    EGDiffDotNode[] afterDotNodes = dotNodes(after, afterNodes, 0);
+
+    Status[] beforeStatuses = new Status[beforeNodes.size()];
+    Status[] afterStatuses = new Status[afterNodes.size()];
+    match(beforeDotNodes, afterDotNodes, beforeStatuses, afterStatuses);
+
+    addDiff(afterNodes, afterDotNodes, afterStatuses, 0);
+    addDiff(beforeNodes, beforeDotNodes, beforeStatuses, removedOffset);
+  }
+
+  private static void match(EGDotNode[] beforeDotNodes, EGDotNode[] afterDotNodes, Status[] beforeStatuses, Status[] afterStatuses) {
+    Map<String, Deque<Integer>> beforeByState = new HashMap<>();
+    Map<String, Deque<Integer>> beforeByPoint = new HashMap<>();
+    for (int i = 0; i < beforeDotNodes.length; i++) {
+      beforeStatuses[i] = Status.REMOVED;
+      beforeByState.computeIfAbsent(stateKey(beforeDotNodes[i]), k -> new ArrayDeque<>()).add(i);
+      beforeByPoint.computeIfAbsent(pointKey(beforeDotNodes[i]), k -> new ArrayDeque<>()).add(i);
+    }
+    for (int i = 0; i < afterDotNodes.length; i++) {
+      Integer match = poll(beforeByState.get(stateKey(afterDotNodes[i])), beforeStatuses);
+      afterStatuses[i] = match == null ? Status.ADDED : Status.UNCHANGED;
+      if (match != null) {
+        beforeStatuses[match] = Status.UNCHANGED;
+      }
+    }
+    // remaining nodes at the same program point are changed versions of each other
+    for (int i = 0; i < afterDotNodes.length; i++) {
+      if (afterStatuses[i] == Status.ADDED) {
+        Integer match = poll(beforeByPoint.get(pointKey(afterDotNodes[i])), beforeStatuses);
+        if (match != null) {
+          afterStatuses[i] = Status.CHANGED;
+          beforeStatuses[match] = Status.UNCHANGED;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return first node of the queue which has not already been matched
+   */
+  @CheckForNull
+  private static Integer poll(@CheckForNull Deque<Integer> candidates, Status[] beforeStatuses) {
+    if (candidates == null) {
+      return null;
+    }
+    Integer candidate;
+    while ((candidate = candidates.poll()) != null) {
+      if (beforeStatuses[candidate] == Status.REMOVED) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private static EGDiffDotNode[] dotNodes(EGDotGraph graph, List<ExplodedGraph.Node> nodes, int offset) {
+    EGDiffDotNode[] result = new EGDiffDotNode[nodes.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = new EGDiffDotNode(offset + i, nodes.get(i), graph);
+    }
+    return result;
+  }
+
+  private void addDiff(List<ExplodedGraph.Node> nodes, EGDiffDotNode[] dotNodes, Status[] statuses, int offset) {
+    Map<ExplodedGraph.Node, Integer> indexes = new IdentityHashMap<>();
+    for (int i = 0; i < nodes.size(); i++) {
+      indexes.put(nodes.get(i), i);
+    }
+    for (int i = 0; i < nodes.size(); i++) {
+      if (statuses[i] == Status.UNCHANGED) {
+        continue;
+      }
+      dotNodes[i].status = statuses[i];
+      addNode(dotNodes[i]);
+      for (ExplodedGraph.Edge edge : nodes.get(i).edges()) {
+        Integer parent = indexes.get(edge.parent());
+        if (parent != null && statuses[parent] != Status.UNCHANGED) {
+          addEdge(new EGDotEdge(offset + parent, offset + i, edge));
+        }
+      }
+    }
+  }
+
+  /**
+   * @return program point of the node, without line numbers which are likely to change between versions
+   */
+  static String pointKey(EGDotNode node) {
+    return LINE.matcher(node.label()).replaceAll("");
+  }
+
+  static String stateKey(EGDotNode node) {
+    NodeDetailsDto details = node.details();
+    Map<String, String> names = new HashMap<>();
+    StringBuilder sb = new StringBuilder(pointKey(node)).append('|');
+    details.psValues.stream()
+      .sorted(Comparator.comparing((SvWithSymbolDto value) -> value.symbol))
+      .forEach(value -> sb.append(value.symbol).append('=').append(rename(value.sv, names)).append(';'));
+    sb.append('|');
+    details.psStack.forEach(value -> sb.append(rename(value.sv, names)).append(';'));
+    sb.append('|');
+    details.psConstraints.stream()
+      .sorted(Comparator.comparing((SvWithConstraintsDto constraint) -> symbolicValueIds(constraint.sv)))
+      .map(constraint -> rename(constraint.sv, names) + "=" + constraint.constraints)
+      .sorted()
+      .forEach(constraint -> sb.append(constraint).append(';'));
+    return sb.toString();
+  }
+
+  private static String rename(String symbolicValue, Map<String, String> names) {
+    Matcher matcher = SYMBOLIC_VALUE.matcher(symbolicValue);
+    StringBuffer sb = new StringBuffer();
+    while (matcher.find()) {
+      matcher.appendReplacement(sb, names.computeIfAbsent(matcher.group(), sv -> "SV#" + names.size()));
+    }
+    matcher.appendTail(sb);
+    return sb.toString();
+  }
+
+  /**
+   * @return ids of the symbolic values, in creation order, used to rename values without symbol in a stable order
+   */
+  private static String symbolicValueIds(String symbolicValue) {
+    Matcher matcher = SYMBOLIC_VALUE.matcher(symbolicValue);
+    StringBuilder sb = new StringBuilder();
+    while (matcher.find()) {
+      sb.append(String.format(Locale.ROOT, "%010d", Long.parseLong(matcher.group().substring(3))));
+    }
+    return sb.toString();
+  }
+
+  private static class EGDiffDotNode extends EGDotNode {
+
+    private Status status = Status.UNCHANGED;
+
+    EGDiffDotNode(int id, ExplodedGraph.Node node, EGDotGraph graph) {
+      super(id, node, graph::methodBehavior, !node.edges().isEmpty(), graph.cfgFirstBlockId());
+    }
+
+    @Override
+    public String label() {
+      switch (status) {
+        case ADDED:
+          return "+ " + super.label();
+        case REMOVED:
+          return "- " + super.label();
+        default:
+          return "~ " + super.label();
+      }
+    }
+
+    @Override
+    public DotGraph.Highlighting highlighting() {
+      switch (status) {
+        case ADDED:
+          return DotGraph.Highlighting.ADDED_NODE;
+        case REMOVED:
+          return DotGraph.Highlighting.REMOVED_NODE;
+        default:
+          return DotGraph.Highlighting.CHANGED_NODE;
+      }
+    }
+  }
+}
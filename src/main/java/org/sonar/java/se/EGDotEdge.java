@@ -27,6 +27,7 @@ import org.sonar.java.se.symbolicvalues.SymbolicValue;
 import org.sonar.java.viewer.DotGraph;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.util.Comparator;
 import java.util.List;
@@ -36,12 +37,20 @@ import java.util.stream.Stream;
 public class EGDotEdge extends DotGraph.Edge {
 
   private final ExplodedGraph.Edge edge;
+  @Nullable
   private final EdgeDetailsDto details;
 
   public EGDotEdge(int from, int to, ExplodedGraph.Edge edge) {
+    this(from, to, edge, true);
+  }
+
+  /**
+   * @param detailed false to omit the details of the edge, its learned constraints and associations remaining in its label
+   */
+  EGDotEdge(int from, int to, ExplodedGraph.Edge edge, boolean detailed) {
     super(from, to);
     this.edge = edge;
-    this.details = buildDetails();
+    this.details = detailed ? buildDetails() : null;
   }
 
   @Override
@@ -66,6 +75,7 @@ public class EGDotEdge extends DotGraph.Edge {
     return null;
   }
 
+  @CheckForNull
   @Override
   public EdgeDetailsDto details() {
     return details;
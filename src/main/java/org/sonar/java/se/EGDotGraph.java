@@ -22,18 +22,26 @@ package org.sonar.java.se;
 import com.google.common.collect.Lists;
 
 import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.se.dto.EGProfileDto;
 import org.sonar.java.se.xproc.BehaviorCache;
 import org.sonar.java.se.xproc.MethodBehavior;
+import org.sonar.plugins.java.api.semantic.Symbol;
 import org.sonar.java.viewer.DotGraph;
 import org.sonar.java.viewer.Viewer;
+import org.sonar.plugins.java.api.JavaFileScanner;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import static org.mockito.Mockito.mock;
@@ -45,24 +53,39 @@ public class EGDotGraph extends DotGraph {
 
   private ExplodedGraph explodedGraph;
   private BehaviorCache behaviorCache;
+  private FileBehaviors fileBehaviors;
   private final CompilationUnitTree cut;
   private final MethodTree methodToAnalyze;
   private final SemanticModel semanticModel;
   private final int cfgFirstBlockId;
+  private EGIndex index;
+  private EGPaths paths;
+  private boolean summarized = false;
 
   public EGDotGraph(Viewer.Base base) {
-    this(base.cut, base.firstMethodOrConstructor, base.semanticModel, base.cfgFirstMethodOrConstructor.blocks().get(0).id());
+    this(base, null);
+  }
+
+  /**
+   * @param stream receives the nodes and edges of the graph of the method while it is explored
+   */
+  public EGDotGraph(Viewer.Base base, @Nullable EGStream stream) {
+    this(base.cut, base.firstMethodOrConstructor, base.semanticModel, firstBlockId(base), stream);
   }
 
-  private EGDotGraph(CompilationUnitTree cut, MethodTree method, SemanticModel semanticModel, int cfgFirstBlockId) {
+  private EGDotGraph(CompilationUnitTree cut, MethodTree method, SemanticModel semanticModel, int cfgFirstBlockId, @Nullable EGStream stream) {
     this.cut = cut;
     this.methodToAnalyze = method;
     this.semanticModel = semanticModel;
     this.cfgFirstBlockId = cfgFirstBlockId;
-    computeEG();
+    computeEG(stream);
   }
 
-  private void computeEG() {
+  public static int firstBlockId(Viewer.Base base) {
+    return base.cfgFirstMethodOrConstructor.blocks().get(0).id();
+  }
+
+  private void computeEG(@Nullable EGStream stream) {
     JavaFileScannerContext mockContext = mock(JavaFileScannerContext.class);
     when(mockContext.getTree()).thenReturn(cut);
     when(mockContext.getSemanticModel()).thenReturn(semanticModel);
@@ -74,6 +97,11 @@ public class EGDotGraph extends DotGraph {
       }
     };
     ExplodedGraphWalker.ExplodedGraphWalkerFactory egwFactory = new ExplodedGraphWalker.ExplodedGraphWalkerFactory(Collections.emptyList());
+    // yields of the methods of the file are known before exploring the method
+    this.fileBehaviors = new FileBehaviors(cut, methodToAnalyze, sev.behaviorCache, egwFactory, semanticModel);
+    if (stream != null) {
+      egwFactory = new ExplodedGraphWalker.ExplodedGraphWalkerFactory(Collections.<JavaFileScanner>singletonList(stream.observer));
+    }
     ExplodedGraphWalker walker = egwFactory.createWalker(sev.behaviorCache, semanticModel);
     walker.visitMethod(methodToAnalyze, new MethodBehavior(methodToAnalyze.symbol()));
 
@@ -86,19 +114,80 @@ public class EGDotGraph extends DotGraph {
     return "ExplodedGraph";
   }
 
+  List<ExplodedGraph.Node> nodes() {
+    return new ArrayList<>(explodedGraph.nodes().keySet());
+  }
+
+  public int nodeCount() {
+    return explodedGraph.nodes().size();
+  }
+
+  /**
+   * Convert the graph without the program states of its nodes and the details of its edges, for graphs too big to be
+   * fully converted
+   */
+  public void summarize() {
+    summarized = true;
+  }
+
+  public boolean isSummarized() {
+    return summarized;
+  }
+
+  /**
+   * Behavior of the methods of the file, including the ones which can be overridden, then of the library methods
+   */
+  @CheckForNull
+  MethodBehavior methodBehavior(Symbol.MethodSymbol symbol) {
+    MethodBehavior methodBehavior = fileBehaviors.get(symbol);
+    return methodBehavior != null ? methodBehavior : behaviorCache.get(symbol);
+  }
+
+  int cfgFirstBlockId() {
+    return cfgFirstBlockId;
+  }
+
+  /**
+   * Index of the symbolic values, symbols and constraints of the graph, built on first use
+   */
+  public synchronized EGIndex index() {
+    if (index == null) {
+      index = new EGIndex(nodes());
+    }
+    return index;
+  }
+
+  public EGProfileDto profile() {
+    return EGProfile.of(nodes());
+  }
+
+  /**
+   * Adjacency of the nodes of the graph, built on first use
+   */
+  public synchronized EGPaths paths() {
+    if (paths == null) {
+      paths = new EGPaths(nodes());
+    }
+    return paths;
+  }
+
   @Override
   public void build() {
     List<ExplodedGraph.Node> egNodes = new ArrayList<>(explodedGraph.nodes().keySet());
+    Map<ExplodedGraph.Node, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < egNodes.size(); i++) {
+      indexes.putIfAbsent(egNodes.get(i), i);
+    }
     int index = 0;
     for (ExplodedGraph.Node node : egNodes) {
       Collection<ExplodedGraph.Edge> egEdges = node.edges();
-      addNode(new EGDotNode(index, node, behaviorCache, !egEdges.isEmpty(), cfgFirstBlockId));
+      addNode(new EGDotNode(index, node, this::methodBehavior, !egEdges.isEmpty(), cfgFirstBlockId, !summarized));
       Stream<ExplodedGraph.Edge> edgeStream = egEdges.stream();
       if (!SHOW_MULTIPLE_PARENTS) {
         edgeStream = edgeStream.limit(1);
       }
       int finalIndex = index;
-      edgeStream.map(e -> new EGDotEdge(egNodes.indexOf(e.parent()), finalIndex, e)).forEach(this::addEdge);
+      edgeStream.map(e -> new EGDotEdge(indexes.getOrDefault(e.parent(), -1), finalIndex, e, !summarized)).forEach(this::addEdge);
       index++;
     }
   }
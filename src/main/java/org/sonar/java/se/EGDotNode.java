@@ -48,6 +48,7 @@ import javax.annotation.Nullable;
 import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -63,14 +64,25 @@ public class EGDotNode extends DotGraph.Node {
   private final NodeDetailsDto details;
 
   public EGDotNode(int id, ExplodedGraph.Node node, BehaviorCache behaviorCache, boolean hasParents, int firstBlockId) {
+    this(id, node, behaviorCache::get, hasParents, firstBlockId);
+  }
+
+  EGDotNode(int id, ExplodedGraph.Node node, Function<Symbol.MethodSymbol, MethodBehavior> methodBehaviors, boolean hasParents, int firstBlockId) {
+    this(id, node, methodBehaviors, hasParents, firstBlockId, true);
+  }
+
+  /**
+   * @param detailed false to only give the program point of the node in its details, without its program state
+   */
+  EGDotNode(int id, ExplodedGraph.Node node, Function<Symbol.MethodSymbol, MethodBehavior> methodBehaviors, boolean hasParents, int firstBlockId, boolean detailed) {
     super(id);
     this.ps = node.programState;
     this.pp = node.programPoint;
     this.hasParents = hasParents;
     this.isFirstBlock = isFirstBlock(node, firstBlockId);
-    this.methodBehavior = getMethodBehavior(behaviorCache, pp.syntaxTree());
+    this.methodBehavior = getMethodBehavior(methodBehaviors, pp.syntaxTree());
 
-    this.details = buildDetails();
+    this.details = detailed ? buildDetails() : new NodeDetailsDto(programPointKey());
   }
 
   private static boolean isFirstBlock(ExplodedGraph.Node node, int firstBlockId) {
@@ -159,16 +171,24 @@ public class EGDotNode extends DotGraph.Node {
   }
 
   private String programPointKey() {
+    return programPointKey(pp);
+  }
+
+  static String programPointKey(ProgramPoint pp) {
     return "B" + pp.block.id() + "." + pp.i;
   }
 
   private String programPoint() {
+    return label(pp);
+  }
+
+  static String label(ProgramPoint pp) {
     String tree = "";
     if (pp.i < pp.block.elements().size()) {
       Tree syntaxNode = ((CFG.Block) pp.block).elements().get(pp.i);
       tree = "" + syntaxNode.kind() + " L#" + syntaxNode.firstToken().line();
     }
-    return programPointKey() + "  " + tree;
+    return programPointKey(pp) + "  " + tree;
   }
 
   private List<MethodYieldDto> yields() {
@@ -180,7 +200,7 @@ public class EGDotNode extends DotGraph.Node {
   }
 
   @CheckForNull
-  private static MethodBehavior getMethodBehavior(BehaviorCache bc, @Nullable Tree syntaxTree) {
+  private static MethodBehavior getMethodBehavior(Function<Symbol.MethodSymbol, MethodBehavior> methodBehaviors, @Nullable Tree syntaxTree) {
     if (syntaxTree == null || !syntaxTree.is(Tree.Kind.METHOD_INVOCATION)) {
       return null;
     }
@@ -188,7 +208,7 @@ public class EGDotNode extends DotGraph.Node {
     if (!symbol.isMethodSymbol()) {
       return null;
     }
-    return bc.get((Symbol.MethodSymbol) symbol);
+    return methodBehaviors.apply((Symbol.MethodSymbol) symbol);
   }
 
   public static MethodYieldDto yield(MethodYield methodYield) {
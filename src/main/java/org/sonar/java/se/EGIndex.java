@@ -0,0 +1,155 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import com.google.common.base.Preconditions;
+import org.sonar.java.se.constraint.Constraint;
+import org.sonar.java.se.constraint.ConstraintsByDomain;
+import org.sonar.java.se.symbolicvalues.SymbolicValue;
+import org.sonar.java.viewer.dto.MatchesDto;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Symbolic values, symbols and constraints of an exploded graph, mapped to the nodes having them in their program state
+ * and to the edges learning them. Nodes are identified by their index in the graph, as in its DOT representation.
+ */
+public class EGIndex {
+
+  private static final String SV = "sv:";
+  private static final String SYMBOL = "symbol:";
+  private static final String CONSTRAINT = "constraint:";
+
+  private final Map<String, BitSet> nodesByKey = new HashMap<>();
+  private final Map<String, BitSet> edgesByKey = new HashMap<>();
+  private final List<int[]> edges = new ArrayList<>();
+
+  EGIndex(List<ExplodedGraph.Node> nodes) {
+    Map<ExplodedGraph.Node, Integer> ids = new HashMap<>();
+    for (int id = 0; id < nodes.size(); id++) {
+      ids.put(nodes.get(id), id);
+    }
+    for (int id = 0; id < nodes.size(); id++) {
+      ExplodedGraph.Node node = nodes.get(id);
+      indexNode(id, node.programState);
+      for (ExplodedGraph.Edge edge : node.edges()) {
+        indexEdge(edges.size(), edge);
+        edges.add(new int[] {ids.get(edge.parent()), id});
+      }
+    }
+  }
+
+  private void indexNode(int id, ProgramState ps) {
+    ps.constraints.forEach((sv, constraints) -> {
+      add(nodesByKey, SV + sv, id);
+      forEach(constraints, constraint -> {
+        add(nodesByKey, CONSTRAINT + constraint, id);
+        add(nodesByKey, SV + sv + "=" + constraint, id);
+      });
+    });
+    ps.values.forEach((symbol, sv) -> {
+      add(nodesByKey, SV + sv, id);
+      add(nodesByKey, SYMBOL + symbol.name(), id);
+      forEach(ps.getConstraints(sv), constraint -> add(nodesByKey, SYMBOL + symbol.name() + "=" + constraint, id));
+    });
+  }
+
+  private void indexEdge(int id, ExplodedGraph.Edge edge) {
+    ProgramState child = edge.child.programState;
+    edge.learnedConstraints().forEach(lc -> {
+      add(edgesByKey, SV + lc.sv, id);
+      add(edgesByKey, CONSTRAINT + lc.constraint, id);
+      add(edgesByKey, SV + lc.sv + "=" + lc.constraint, id);
+      // symbols are only known through the values of the resulting program state
+      child.values.forEach((symbol, sv) -> {
+        if (sv.equals(lc.sv)) {
+          add(edgesByKey, SYMBOL + symbol.name(), id);
+          add(edgesByKey, SYMBOL + symbol.name() + "=" + lc.constraint, id);
+        }
+      });
+    });
+    edge.learnedAssociations().forEach(la -> {
+      add(edgesByKey, SV + la.sv, id);
+      add(edgesByKey, SYMBOL + la.symbol.name(), id);
+    });
+  }
+
+  private static void forEach(@Nullable ConstraintsByDomain constraints, Consumer<Constraint> action) {
+    if (constraints != null) {
+      constraints.stream().forEach(action);
+    }
+  }
+
+  private static void add(Map<String, BitSet> index, String key, int id) {
+    index.computeIfAbsent(key, k -> new BitSet()).set(id);
+  }
+
+  /**
+   * Nodes and edges matching all the given criteria. When a constraint is given with a symbolic value or a symbol,
+   * the constraint must apply to that symbolic value, or to the value of that symbol.
+   *
+   * @param sv name of a symbolic value, as "SV_12"
+   * @param symbol name of a symbol
+   * @param constraint name of a constraint, as "NULL" or "NOT_NULL"
+   */
+  public MatchesDto query(@Nullable String sv, @Nullable String symbol, @Nullable String constraint) {
+    List<String> keys = new ArrayList<>();
+    String constraintSuffix = constraint == null ? "" : ("=" + constraint);
+    if (sv != null) {
+      keys.add(SV + sv + constraintSuffix);
+    }
+    if (symbol != null) {
+      keys.add(SYMBOL + symbol + constraintSuffix);
+    }
+    if (keys.isEmpty() && constraint != null) {
+      keys.add(CONSTRAINT + constraint);
+    }
+    Preconditions.checkArgument(!keys.isEmpty(), "A symbolic value, a symbol or a constraint is required.");
+
+    List<Integer> matchingNodes = new ArrayList<>();
+    matching(nodesByKey, keys).stream().forEach(matchingNodes::add);
+    List<int[]> matchingEdges = new ArrayList<>();
+    matching(edgesByKey, keys).stream().forEach(id -> matchingEdges.add(edges.get(id)));
+    return new MatchesDto(matchingNodes, matchingEdges);
+  }
+
+  private static BitSet matching(Map<String, BitSet> index, List<String> keys) {
+    BitSet result = null;
+    for (String key : keys) {
+      BitSet ids = index.get(key);
+      if (ids == null) {
+        return new BitSet();
+      }
+      if (result == null) {
+        result = (BitSet) ids.clone();
+      } else {
+        result.and(ids);
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,290 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import com.google.common.base.Preconditions;
+import org.sonar.java.se.symbolicvalues.SymbolicValue;
+import org.sonar.java.viewer.dto.MatchesDto;
+import org.sonar.java.viewer.dto.PathsDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Paths in an exploded graph, computed on arrays of children and parents of each node (compressed adjacency lists).
+ * Nodes are identified by their index in the graph, as in its DOT representation. Paths start from the nodes without
+ * parents: the first node, and lost nodes if any.
+ */
+public class EGPaths {
+
+  private static final int MAX_STEPS = 1_000_000;
+
+  private final int nodesCount;
+  private final int[] childrenOffsets;
+  private final int[] children;
+  private final int[] parentsOffsets;
+  private final int[] parents;
+  private final BitSet exceptionalExits;
+
+  EGPaths(List<ExplodedGraph.Node> nodes) {
+    this(nodes.size(), edges(nodes), exceptionalExits(nodes));
+  }
+
+  /**
+   * @param edges pairs of ids of parent and child
+   */
+  EGPaths(int nodesCount, List<int[]> edges, BitSet exceptionalExits) {
+    this.nodesCount = nodesCount;
+    this.exceptionalExits = exceptionalExits;
+    childrenOffsets = new int[nodesCount + 1];
+    children = new int[edges.size()];
+    parentsOffsets = new int[nodesCount + 1];
+    parents = new int[edges.size()];
+    fill(edges, 0, childrenOffsets, children);
+    fill(edges, 1, parentsOffsets, parents);
+  }
+
+  private static List<int[]> edges(List<ExplodedGraph.Node> nodes) {
+    Map<ExplodedGraph.Node, Integer> ids = new HashMap<>();
+    for (int id = 0; id < nodes.size(); id++) {
+      ids.put(nodes.get(id), id);
+    }
+    List<int[]> edges = new ArrayList<>();
+    for (int id = 0; id < nodes.size(); id++) {
+      for (ExplodedGraph.Edge edge : nodes.get(id).edges()) {
+        edges.add(new int[] {ids.get(edge.parent()), id});
+      }
+    }
+    return edges;
+  }
+
+  private static BitSet exceptionalExits(List<ExplodedGraph.Node> nodes) {
+    BitSet exceptionalExits = new BitSet();
+    for (int id = 0; id < nodes.size(); id++) {
+      if (isExceptionalExit(nodes.get(id))) {
+        exceptionalExits.set(id);
+      }
+    }
+    return exceptionalExits;
+  }
+
+  private static boolean isExceptionalExit(ExplodedGraph.Node node) {
+    // exit block is always the block B0
+    return node.programPoint.block.id() == 0 && node.programState.peekValue() instanceof SymbolicValue.ExceptionalSymbolicValue;
+  }
+
+  /**
+   * @param from 0 to index nodes by parent, 1 to index them by child
+   */
+  private static void fill(List<int[]> edges, int from, int[] offsets, int[] targets) {
+    for (int[] edge : edges) {
+      offsets[edge[from] + 1]++;
+    }
+    for (int i = 1; i < offsets.length; i++) {
+      offsets[i] += offsets[i - 1];
+    }
+    int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+    for (int[] edge : edges) {
+      targets[next[edge[from]]++] = edge[1 - from];
+    }
+  }
+
+  /**
+   * Shortest path from a node without parents to the given node
+   */
+  public PathsDto shortestPath(int target) {
+    checkNode(target);
+    // breadth-first search going up from the target, remembering for each node the next one toward the target
+    int[] next = new int[nodesCount];
+    Arrays.fill(next, -1);
+    next[target] = target;
+    // each node is queued at most once
+    int[] queue = new int[nodesCount];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = target;
+    while (head < tail) {
+      int node = queue[head++];
+      if (parentsOffsets[node] == parentsOffsets[node + 1]) {
+        int length = 1;
+        for (int current = node; current != target; current = next[current]) {
+          length++;
+        }
+        int[] path = new int[length];
+        path[0] = node;
+        for (int i = 1; i < length; i++) {
+          path[i] = next[path[i - 1]];
+        }
+        return new PathsDto(Collections.singletonList(path), false);
+      }
+      for (int i = parentsOffsets[node]; i < parentsOffsets[node + 1]; i++) {
+        int parent = parents[i];
+        if (next[parent] < 0) {
+          next[parent] = node;
+          queue[tail++] = parent;
+        }
+      }
+    }
+    return new PathsDto(Collections.emptyList(), false);
+  }
+
+  /**
+   * Paths without cycles from the nodes without parents to the exceptional exits of the method
+   * @param maxPaths maximum number of returned paths
+   * @param maxLength maximum number of nodes of a path, longer paths being ignored
+   */
+  public PathsDto exceptionalPaths(int maxPaths, int maxLength) {
+    Preconditions.checkArgument(maxPaths > 0, "Maximum number of paths must be positive.");
+    Preconditions.checkArgument(maxLength > 0, "Maximum length of paths must be positive.");
+    // only nodes leading to an exceptional exit are explored
+    BitSet leadingToExit = reachable(exceptionalExits, parentsOffsets, parents);
+    PathsSearch search = new PathsSearch(maxPaths, maxLength, leadingToExit);
+    for (int node = 0; node < nodesCount && !search.stopped; node++) {
+      if (parentsOffsets[node] == parentsOffsets[node + 1] && leadingToExit.get(node)) {
+        search.explore(node);
+      }
+    }
+    return new PathsDto(search.paths, search.truncated);
+  }
+
+  /**
+   * Nodes from which the given node can be reached, and the edges between them and this node
+   */
+  public MatchesDto ancestors(int target) {
+    checkNode(target);
+    BitSet start = new BitSet();
+    start.set(target);
+    BitSet subgraph = reachable(start, parentsOffsets, parents);
+    List<int[]> edges = new ArrayList<>();
+    subgraph.stream().forEach(node -> {
+      for (int i = childrenOffsets[node]; i < childrenOffsets[node + 1]; i++) {
+        if (subgraph.get(children[i])) {
+          edges.add(new int[] {node, children[i]});
+        }
+      }
+    });
+    List<Integer> nodes = new ArrayList<>();
+    subgraph.stream().filter(node -> node != target).forEach(nodes::add);
+    return new MatchesDto(nodes, edges);
+  }
+
+  private static BitSet reachable(BitSet start, int[] offsets, int[] targets) {
+    BitSet visited = (BitSet) start.clone();
+    int[] queue = new int[offsets.length - 1];
+    int head = 0;
+    int tail = 0;
+    for (int node = start.nextSetBit(0); node >= 0; node = start.nextSetBit(node + 1)) {
+      queue[tail++] = node;
+    }
+    while (head < tail) {
+      int node = queue[head++];
+      for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+        if (!visited.get(targets[i])) {
+          visited.set(targets[i]);
+          queue[tail++] = targets[i];
+        }
+      }
+    }
+    return visited;
+  }
+
+  private void checkNode(int node) {
+    Preconditions.checkArgument(node >= 0 && node < nodesCount, "Unknown node: %s", node);
+  }
+
+  /**
+   * Depth-first search, iterative as paths can be longer than what the call stack allows
+   */
+  private class PathsSearch {
+    private final int maxPaths;
+    private final int[] path;
+    private final int[] nextChildOffset;
+    private final BitSet leadingToExit;
+    private final BitSet onPath = new BitSet();
+    private final List<int[]> paths = new ArrayList<>();
+    private int steps = 0;
+    private boolean truncated = false;
+    private boolean stopped = false;
+
+    private PathsSearch(int maxPaths, int maxLength, BitSet leadingToExit) {
+      this.maxPaths = maxPaths;
+      this.path = new int[maxLength];
+      this.nextChildOffset = new int[maxLength];
+      this.leadingToExit = leadingToExit;
+    }
+
+    private void explore(int root) {
+      int depth = 0;
+      enter(root, depth);
+      while (depth >= 0 && !stopped) {
+        int child = nextChild(depth);
+        if (child < 0) {
+          onPath.clear(path[depth]);
+          depth--;
+        } else {
+          depth++;
+          enter(child, depth);
+        }
+      }
+    }
+
+    private void enter(int node, int depth) {
+      steps++;
+      if (steps > MAX_STEPS) {
+        truncated = true;
+        stopped = true;
+      }
+      path[depth] = node;
+      onPath.set(node);
+      nextChildOffset[depth] = childrenOffsets[node];
+      if (exceptionalExits.get(node)) {
+        if (paths.size() == maxPaths) {
+          truncated = true;
+          stopped = true;
+        } else {
+          paths.add(Arrays.copyOf(path, depth + 1));
+        }
+      }
+      if (depth + 1 == path.length) {
+        // longer paths are not explored
+        for (int i = childrenOffsets[node]; i < childrenOffsets[node + 1]; i++) {
+          truncated |= leadingToExit.get(children[i]);
+        }
+        nextChildOffset[depth] = childrenOffsets[node + 1];
+      }
+    }
+
+    private int nextChild(int depth) {
+      int node = path[depth];
+      while (nextChildOffset[depth] < childrenOffsets[node + 1]) {
+        int child = children[nextChildOffset[depth]++];
+        if (leadingToExit.get(child) && !onPath.get(child)) {
+          return child;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.sonar.java.cfg.CFG;
+import org.sonar.java.se.dto.BlockProfileDto;
+import org.sonar.java.se.dto.EGProfileDto;
+import org.sonar.java.se.dto.ProgramPointProfileDto;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Growth of an exploded graph attributed to its program points, to find the statements causing a state explosion.
+ * Memory is estimated for each node as if it did not share anything with other nodes, while program states actually
+ * share most of their persistent maps: it is only meant to compare program points between them.
+ */
+public class EGProfile {
+
+  private static final int NODE_BYTES = 136;
+  private static final int EDGE_BYTES = 48;
+  private static final int MAP_ENTRY_BYTES = 32;
+  private static final int CONSTRAINT_BYTES = 16;
+
+  private EGProfile() {
+  }
+
+  public static EGProfileDto of(List<ExplodedGraph.Node> nodes) {
+    Map<String, ProgramPointStats> programPoints = new HashMap<>();
+    Map<Integer, Set<ProgramState>> statesByBlock = new TreeMap<>();
+    Map<Integer, Integer> nodesByBlock = new HashMap<>();
+    Map<ExplodedGraph.Node, Integer> fanOut = new HashMap<>();
+    int edges = 0;
+    for (ExplodedGraph.Node node : nodes) {
+      ProgramPointStats stats = stats(programPoints, node.programPoint);
+      stats.nodes++;
+      stats.estimatedBytes += estimatedBytes(node);
+      int block = node.programPoint.block.id();
+      statesByBlock.computeIfAbsent(block, id -> new HashSet<>()).add(node.programState);
+      nodesByBlock.merge(block, 1, Integer::sum);
+      for (ExplodedGraph.Edge edge : node.edges()) {
+        fanOut.merge(edge.parent(), 1, Integer::sum);
+        edges++;
+      }
+    }
+    fanOut.forEach((parent, count) -> {
+      ProgramPointStats stats = stats(programPoints, parent.programPoint);
+      stats.outgoingEdges += count;
+      stats.maxFanOut = Math.max(stats.maxFanOut, count);
+    });
+
+    List<ProgramPointProfileDto> programPointProfiles = programPoints.entrySet().stream()
+      .map(entry -> entry.getValue().toDto(entry.getKey()))
+      .sorted(Comparator.comparingInt((ProgramPointProfileDto dto) -> dto.nodes).reversed().thenComparing(dto -> dto.ppKey))
+      .collect(Collectors.toList());
+    List<BlockProfileDto> blockProfiles = new ArrayList<>();
+    statesByBlock.forEach((block, states) -> blockProfiles.add(new BlockProfileDto(block, nodesByBlock.get(block), states.size())));
+    return new EGProfileDto(nodes.size(), edges, programPointProfiles, blockProfiles);
+  }
+
+  private static ProgramPointStats stats(Map<String, ProgramPointStats> programPoints, ProgramPoint programPoint) {
+    return programPoints.computeIfAbsent("B" + programPoint.block.id() + "." + programPoint.i, key -> new ProgramPointStats(programPoint));
+  }
+
+  private static long estimatedBytes(ExplodedGraph.Node node) {
+    long[] bytes = {NODE_BYTES + (long) EDGE_BYTES * node.edges().size()};
+    node.programState.constraints.forEach((sv, constraints) -> bytes[0] += MAP_ENTRY_BYTES + (constraints == null ? 0 : CONSTRAINT_BYTES * constraints.stream().count()));
+    node.programState.values.forEach((symbol, sv) -> bytes[0] += MAP_ENTRY_BYTES);
+    return bytes[0];
+  }
+
+  @CheckForNull
+  private static Integer line(ProgramPoint programPoint) {
+    CFG.Block block = (CFG.Block) programPoint.block;
+    Tree tree = programPoint.i < block.elements().size() ? block.elements().get(programPoint.i) : block.terminator();
+    SyntaxToken token = tree == null ? null : tree.firstToken();
+    return token == null ? null : token.line();
+  }
+
+  private static class ProgramPointStats {
+    private final int block;
+    @CheckForNull
+    private final Integer line;
+    private int nodes = 0;
+    private int outgoingEdges = 0;
+    private int maxFanOut = 0;
+    private long estimatedBytes = 0;
+
+    private ProgramPointStats(ProgramPoint programPoint) {
+      this.block = programPoint.block.id();
+      this.line = line(programPoint);
+    }
+
+    private ProgramPointProfileDto toDto(String ppKey) {
+      return new ProgramPointProfileDto(ppKey, block, line, nodes, outgoingEdges, maxFanOut, estimatedBytes);
+    }
+  }
+}
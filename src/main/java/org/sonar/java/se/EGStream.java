@@ -0,0 +1,118 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.sonar.java.se.checks.SECheck;
+import org.sonar.java.se.constraint.ConstraintManager;
+import org.sonar.java.viewer.DotGraph;
+import org.sonar.java.viewer.dto.BatchEdgeDto;
+import org.sonar.java.viewer.dto.BatchNodeDto;
+import org.sonar.java.viewer.dto.GraphBatchDto;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Nodes and edges of an exploded graph, collected while the walker explores it and taken by batches from another
+ * thread. Nodes are numbered in order of discovery, and edges are the ones known when their child is explored: the
+ * graph built once the exploration is done can have more edges, and other node numbers.
+ */
+public class EGStream {
+
+  private final int firstBlockId;
+  // only used by the walker
+  private final Map<ExplodedGraph.Node, Integer> ids = new IdentityHashMap<>();
+  private final Set<Long> edges = new HashSet<>();
+
+  private List<BatchNodeDto> pendingNodes = new ArrayList<>();
+  private List<BatchEdgeDto> pendingEdges = new ArrayList<>();
+
+  final SECheck observer = new SECheck() {
+    @Override
+    public ProgramState checkPreStatement(CheckerContext context, Tree syntaxNode) {
+      observe(context.getNode());
+      return context.getState();
+    }
+
+    @Override
+    public void checkEndOfExecutionPath(CheckerContext context, ConstraintManager constraintManager) {
+      observe(context.getNode());
+    }
+  };
+
+  public EGStream(int firstBlockId) {
+    this.firstBlockId = firstBlockId;
+  }
+
+  /**
+   * @return nodes and edges discovered since the previous batch
+   */
+  public synchronized GraphBatchDto nextBatch() {
+    GraphBatchDto batch = new GraphBatchDto(pendingNodes, pendingEdges);
+    pendingNodes = new ArrayList<>();
+    pendingEdges = new ArrayList<>();
+    return batch;
+  }
+
+  private void observe(@Nullable ExplodedGraph.Node node) {
+    if (node == null) {
+      return;
+    }
+    int child = id(node);
+    for (ExplodedGraph.Edge edge : node.edges()) {
+      int parent = id(edge.parent());
+      if (edges.add(((long) parent << 32) | child)) {
+        synchronized (this) {
+          pendingEdges.add(new BatchEdgeDto(parent, child));
+        }
+      }
+    }
+  }
+
+  private int id(ExplodedGraph.Node node) {
+    Integer id = ids.get(node);
+    if (id == null) {
+      id = ids.size();
+      ids.put(node, id);
+      BatchNodeDto batchNode = new BatchNodeDto(id, EGDotNode.label(node.programPoint), DotGraph.Highlighting.name(highlighting(node)));
+      synchronized (this) {
+        pendingNodes.add(batchNode);
+      }
+    }
+    return id;
+  }
+
+  @CheckForNull
+  private DotGraph.Highlighting highlighting(ExplodedGraph.Node node) {
+    String programPointKey = EGDotNode.programPointKey(node.programPoint);
+    if (node.edges().isEmpty() && programPointKey.equals("B" + firstBlockId + ".0")) {
+      return DotGraph.Highlighting.FIRST_NODE;
+    }
+    return "B0.0".equals(programPointKey) ? DotGraph.Highlighting.EXIT_NODE : null;
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.sonar.java.callgraph.CallGraph;
+import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.se.xproc.BehaviorCache;
+import org.sonar.java.se.xproc.MethodBehavior;
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+
+import javax.annotation.CheckForNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Behaviors of all the methods of a file, computed from the callees to the callers so that the yields of the methods
+ * of the file are known when their callers are explored. Strongly connected components of the call graph are explored
+ * one after the other, as the walkers share the behavior cache and the semantic model, which are not thread-safe.
+ *
+ * Behaviors of methods which cannot be overridden are stored in the behavior cache, where the engine would have put
+ * them. Behaviors of the other methods are only kept here: the engine does not use them, but they are shown in the
+ * details of the nodes.
+ */
+class FileBehaviors {
+
+  private final List<MethodTree> methods = new ArrayList<>();
+  private final Map<Symbol.MethodSymbol, MethodBehavior> behaviors = new HashMap<>();
+
+  /**
+   * @param methodToAnalyze not explored, as its graph is explored right after
+   */
+  FileBehaviors(CompilationUnitTree cut, MethodTree methodToAnalyze, BehaviorCache behaviorCache, ExplodedGraphWalker.ExplodedGraphWalkerFactory walkerFactory,
+    SemanticModel semanticModel) {
+    CallGraph callGraph = CallGraph.of(cut);
+    int declaredMethodsCount = callGraph.declaredMethodsCount();
+    for (int method = 0; method < declaredMethodsCount; method++) {
+      MethodTree declaration = callGraph.declaration(method);
+      methods.add(declaration);
+      if (declaration == methodToAnalyze) {
+        continue;
+      }
+      MethodBehavior behavior = SymbolicExecutionVisitor.methodCanNotBeOverriden(declaration.symbol())
+        ? behaviorCache.methodBehaviorForSymbol(declaration.symbol())
+        : new MethodBehavior(declaration.symbol());
+      behaviors.put(declaration.symbol(), behavior);
+    }
+    int[][] callees = new int[declaredMethodsCount][];
+    for (int method = 0; method < declaredMethodsCount; method++) {
+      callees[method] = Arrays.stream(callGraph.callees(method)).filter(callee -> callee < declaredMethodsCount).toArray();
+    }
+    // components are ordered from the callees to the callers
+    for (int[] component : stronglyConnectedComponents(callees)) {
+      for (int method : component) {
+        explore(methods.get(method), behaviorCache, walkerFactory, semanticModel);
+      }
+    }
+  }
+
+  @CheckForNull
+  MethodBehavior get(Symbol.MethodSymbol symbol) {
+    return behaviors.get(symbol);
+  }
+
+  private void explore(MethodTree method, BehaviorCache behaviorCache, ExplodedGraphWalker.ExplodedGraphWalkerFactory walkerFactory, SemanticModel semanticModel) {
+    MethodBehavior behavior = behaviors.get(method.symbol());
+    if (behavior == null || behavior.isComplete()) {
+      return;
+    }
+    try {
+      walkerFactory.createWalker(behaviorCache, semanticModel).visitMethod(method, behavior);
+      behavior.completed();
+    } catch (ExplodedGraphWalker.MaximumStepsReachedException | ExplodedGraphWalker.ExplodedGraphTooBigException e) {
+      // as in the engine, the behavior stays incomplete and its yields are not used by the callers
+    }
+  }
+
+  /**
+   * Strongly connected components of a graph given by the successors of each vertex, successors first (Tarjan).
+   * The depth-first search is iterative, as call chains can be longer than what the stack allows.
+   */
+  static List<int[]> stronglyConnectedComponents(int[][] successors) {
+    int count = successors.length;
+    int[] order = new int[count];
+    Arrays.fill(order, -1);
+    int[] lowLink = new int[count];
+    boolean[] onStack = new boolean[count];
+    int[] stack = new int[count];
+    int stackSize = 0;
+    int[] path = new int[count];
+    int[] nextSuccessor = new int[count];
+    int visited = 0;
+    List<int[]> components = new ArrayList<>();
+    for (int root = 0; root < count; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      int depth = 0;
+      path[0] = root;
+      nextSuccessor[0] = 0;
+      order[root] = visited;
+      lowLink[root] = visited;
+      visited++;
+      stack[stackSize++] = root;
+      onStack[root] = true;
+      while (depth >= 0) {
+        int vertex = path[depth];
+        if (nextSuccessor[depth] < successors[vertex].length) {
+          int successor = successors[vertex][nextSuccessor[depth]++];
+          if (order[successor] == -1) {
+            order[successor] = visited;
+            lowLink[successor] = visited;
+            visited++;
+            stack[stackSize++] = successor;
+            onStack[successor] = true;
+            depth++;
+            path[depth] = successor;
+            nextSuccessor[depth] = 0;
+          } else if (onStack[successor]) {
+            lowLink[vertex] = Math.min(lowLink[vertex], order[successor]);
+          }
+          continue;
+        }
+        if (lowLink[vertex] == order[vertex]) {
+          int start = stackSize;
+          do {
+            start--;
+            onStack[stack[start]] = false;
+          } while (stack[start] != vertex);
+          components.add(Arrays.copyOfRange(stack, start, stackSize));
+          stackSize = start;
+        }
+        depth--;
+        if (depth >= 0) {
+          lowLink[path[depth]] = Math.min(lowLink[path[depth]], lowLink[vertex]);
+        }
+      }
+    }
+    return components;
+  }
+}
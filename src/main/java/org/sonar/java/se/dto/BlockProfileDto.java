@@ -0,0 +1,34 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se.dto;
+
+import org.sonar.java.viewer.dto.CommonDto;
+
+public class BlockProfileDto implements CommonDto {
+  public final int block;
+  public final int nodes;
+  public final int distinctStates;
+
+  public BlockProfileDto(int block, int nodes, int distinctStates) {
+    this.block = block;
+    this.nodes = nodes;
+    this.distinctStates = distinctStates;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se.dto;
+
+import org.sonar.java.viewer.dto.CommonDto;
+
+import java.util.List;
+
+public class EGProfileDto implements CommonDto {
+  public final int nodes;
+  public final int edges;
+  public final List<ProgramPointProfileDto> programPoints;
+  public final List<BlockProfileDto> blocks;
+
+  public EGProfileDto(int nodes, int edges, List<ProgramPointProfileDto> programPoints, List<BlockProfileDto> blocks) {
+    this.nodes = nodes;
+    this.edges = edges;
+    this.programPoints = programPoints;
+    this.blocks = blocks;
+  }
+}
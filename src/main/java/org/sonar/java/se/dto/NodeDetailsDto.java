@@ -21,14 +21,32 @@ package org.sonar.java.se.dto;
 
 import org.sonar.java.viewer.dto.CommonDto;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 
 public class NodeDetailsDto implements CommonDto {
   public final String ppKey;
+  /**
+   * Program state, null in summarized graphs
+   */
+  @Nullable
   public final List<SvWithSymbolDto> psStack;
+  @Nullable
   public final List<SvWithConstraintsDto> psConstraints;
+  @Nullable
   public final List<SvWithSymbolDto> psValues;
 
+  /**
+   * Summary of a node, without its program state
+   */
+  public NodeDetailsDto(String programPointKey) {
+    this.ppKey = programPointKey;
+    this.psStack = null;
+    this.psConstraints = null;
+    this.psValues = null;
+  }
+
   public NodeDetailsDto(String programPointKey, List<SvWithSymbolDto> stack, List<SvWithConstraintsDto> constraints, List<SvWithSymbolDto> values) {
     this.ppKey = programPointKey;
     this.psStack = stack;
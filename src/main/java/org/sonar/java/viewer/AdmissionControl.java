@@ -0,0 +1,289 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import javax.management.NotificationEmitter;
+import org.sonar.java.se.EGDotGraph;
+import org.sonar.java.viewer.dto.AdmissionDto;
+
+/**
+ * Admission of the symbolic executions within a heap budget. Each execution reserves an estimation of its footprint,
+ * refined from the number of nodes of its exploded graph once explored. When the budget is exceeded, caches are shrunk
+ * first, then graphs are summarized without the program states of their nodes, then executions wait for the ones in
+ * flight to be done, and are finally rejected.
+ * <p>
+ * The heap usage is the one of the pools supporting usage thresholds, which are the pools of long-lived objects: the
+ * caches are also shrunk as soon as these pools exceed the budget, notified by their usage threshold.
+ */
+public class AdmissionControl {
+
+  /**
+   * Footprint of an execution before its graph is explored
+   */
+  public static final long DEFAULT_ESTIMATE = 8L * 1024 * 1024;
+  /**
+   * Footprint of a node of the exploded graph: node, details and DOT representation
+   */
+  public static final long BYTES_PER_NODE = 2048;
+  /**
+   * Summarized graphs are estimated to be this number of times smaller
+   */
+  public static final int SUMMARY_RATIO = 4;
+  private static final long QUEUE_POLL_MILLIS = 100;
+
+  private final long budget;
+  private final LongSupplier heapUsage;
+  private final long queueTimeoutMillis;
+  private final List<Runnable> cacheShrinkers = new CopyOnWriteArrayList<>();
+  private long reserved = 0;
+  private int inFlight = 0;
+  private long admitted = 0;
+  private long summarized = 0;
+  private long queued = 0;
+  private long rejected = 0;
+  private long cacheShrinks = 0;
+
+  /**
+   * @param budget maximum heap usage, in bytes
+   * @param heapUsage current heap usage, in bytes
+   * @param queueTimeoutMillis maximum time waited by an execution before being rejected
+   */
+  @VisibleForTesting
+  AdmissionControl(long budget, LongSupplier heapUsage, long queueTimeoutMillis) {
+    this.budget = budget;
+    this.heapUsage = heapUsage;
+    this.queueTimeoutMillis = queueTimeoutMillis;
+  }
+
+  /**
+   * @param budgetRatio part of the maximum size of the pools of long-lived objects which can be used
+   */
+  public static AdmissionControl forHeap(double budgetRatio, long queueTimeoutMillis) {
+    List<MemoryPoolMXBean> pools = ManagementFactory.getMemoryPoolMXBeans().stream()
+      .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported())
+      .collect(Collectors.toList());
+    long max = pools.stream().mapToLong(pool -> pool.getUsage().getMax()).filter(size -> size > 0).sum();
+    if (max == 0) {
+      max = Runtime.getRuntime().maxMemory();
+    }
+    AdmissionControl control = new AdmissionControl((long) (max * budgetRatio), () -> pools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum(),
+      queueTimeoutMillis);
+    pools.stream()
+      .filter(pool -> pool.getUsage().getMax() > 0)
+      .forEach(pool -> pool.setUsageThreshold((long) (pool.getUsage().getMax() * budgetRatio)));
+    ((NotificationEmitter) ManagementFactory.getMemoryMXBean()).addNotificationListener((notification, handback) -> {
+      if (MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(notification.getType())) {
+        control.shrinkCaches();
+      }
+    }, null, null);
+    return control;
+  }
+
+  /**
+   * @param shrinker removes the least recently used entries of a cache
+   */
+  public void addCacheShrinker(Runnable shrinker) {
+    cacheShrinkers.add(shrinker);
+  }
+
+  /**
+   * @return ticket to release once the execution is done, summarized when only a summarized graph fits in the budget
+   * @throws RejectedException when the execution does not fit in the budget before the queue timeout
+   */
+  public Ticket admit() {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    boolean shrunk = false;
+    boolean waited = false;
+    while (true) {
+      synchronized (this) {
+        if (DEFAULT_ESTIMATE <= available()) {
+          return newTicket(DEFAULT_ESTIMATE, false);
+        }
+        if (shrunk) {
+          if (DEFAULT_ESTIMATE / SUMMARY_RATIO <= available()) {
+            summarized++;
+            return newTicket(DEFAULT_ESTIMATE / SUMMARY_RATIO, true);
+          }
+          long remainingNanos = deadline - System.nanoTime();
+          if (remainingNanos <= 0) {
+            rejected++;
+            throw new RejectedException(String.format("Heap budget exceeded: %d MB used and %d MB reserved by %d analyses, out of %d MB. Retry later.",
+              toMegaBytes(heapUsage.getAsLong()), toMegaBytes(reserved), inFlight, toMegaBytes(budget)));
+          }
+          if (!waited) {
+            waited = true;
+            queued++;
+          }
+          // executions in flight notify when done, and the heap usage drops after a collection
+          waitFor(Math.min(QUEUE_POLL_MILLIS, TimeUnit.NANOSECONDS.toMillis(remainingNanos) + 1));
+          continue;
+        }
+      }
+      shrinkCaches();
+      shrunk = true;
+    }
+  }
+
+  private void waitFor(long millis) {
+    try {
+      wait(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RejectedException("Interrupted while waiting for heap budget.");
+    }
+  }
+
+  private Ticket newTicket(long bytes, boolean summary) {
+    reserved += bytes;
+    inFlight++;
+    admitted++;
+    return new Ticket(bytes, summary);
+  }
+
+  private long available() {
+    return budget - heapUsage.getAsLong() - reserved;
+  }
+
+  /**
+   * Never called while holding the lock of the admission control: shrinkers wait for the artifacts being computed, which
+   * would otherwise block the admission and the release of all executions
+   */
+  public void shrinkCaches() {
+    synchronized (this) {
+      cacheShrinks++;
+    }
+    cacheShrinkers.forEach(Runnable::run);
+  }
+
+  public synchronized AdmissionDto stats() {
+    return new AdmissionDto(budget, heapUsage.getAsLong(), reserved, inFlight, admitted, summarized, queued, rejected, cacheShrinks);
+  }
+
+  private static long toMegaBytes(long bytes) {
+    return bytes / (1024 * 1024);
+  }
+
+  /**
+   * Reservation of heap of an execution in flight
+   */
+  public class Ticket implements AutoCloseable {
+    private long bytes;
+    private boolean summary;
+    private boolean closed = false;
+
+    private Ticket(long bytes, boolean summary) {
+      this.bytes = bytes;
+      this.summary = summary;
+    }
+
+    public boolean isSummary() {
+      synchronized (AdmissionControl.this) {
+        return summary;
+      }
+    }
+
+    /**
+     * Replace the estimation of the footprint of the execution, made before its graph was explored
+     * @return false when the execution does not fit in the budget, its graph having then to be summarized
+     */
+    public boolean fits(long estimatedBytes) {
+      synchronized (AdmissionControl.this) {
+        if (summary || estimatedBytes <= available() + bytes) {
+          return reserve(estimatedBytes);
+        }
+      }
+      shrinkCaches();
+      synchronized (AdmissionControl.this) {
+        if (!summary && estimatedBytes > available() + bytes) {
+          summary = true;
+          summarized++;
+        }
+        return reserve(estimatedBytes);
+      }
+    }
+
+    /**
+     * Replace the estimation of the footprint of an execution whose graph cannot be summarized
+     * @throws RejectedException when the execution does not fit in the budget
+     */
+    public void require(long estimatedBytes) {
+      synchronized (AdmissionControl.this) {
+        if (!summary && estimatedBytes <= available() + bytes) {
+          reserve(estimatedBytes);
+          return;
+        }
+      }
+      shrinkCaches();
+      synchronized (AdmissionControl.this) {
+        if (summary || estimatedBytes > available() + bytes) {
+          rejected++;
+          throw new RejectedException(String.format("Heap budget exceeded: %d MB required by the analysis, %d MB available out of %d MB. Retry later.",
+            toMegaBytes(estimatedBytes), toMegaBytes(Math.max(available() + bytes, 0)), toMegaBytes(budget)));
+        }
+        reserve(estimatedBytes);
+      }
+    }
+
+    private boolean reserve(long estimatedBytes) {
+      long full = summary ? (estimatedBytes / SUMMARY_RATIO) : estimatedBytes;
+      reserved += full - bytes;
+      bytes = full;
+      return !summary;
+    }
+
+    /**
+     * DOT representation of the exploded graph, summarized when its nodes do not fit in the budget
+     */
+    public String toDot(EGDotGraph graph) {
+      if (!fits(graph.nodeCount() * BYTES_PER_NODE)) {
+        graph.summarize();
+      }
+      return graph.toDot();
+    }
+
+    @Override
+    public void close() {
+      synchronized (AdmissionControl.this) {
+        if (!closed) {
+          closed = true;
+          reserved -= bytes;
+          inFlight--;
+          AdmissionControl.this.notifyAll();
+        }
+      }
+    }
+  }
+
+  public static class RejectedException extends RuntimeException {
+    public RejectedException(String message) {
+      super(message);
+    }
+  }
+}
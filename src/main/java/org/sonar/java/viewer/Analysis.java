@@ -0,0 +1,218 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.sonar.java.ast.ASTDotGraph;
+import org.sonar.java.ast.TokenFingerprint;
+import org.sonar.java.callgraph.CallGraphDotGraph;
+import org.sonar.java.cfg.CFGDotGraph;
+import org.sonar.java.cfg.CFGPrinter;
+import org.sonar.java.se.EGDotGraph;
+import org.sonar.java.viewer.dto.ViewDto;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+
+/**
+ * Analysis of a source code whose graphs are computed when first requested by the page, each one only computing the
+ * artifacts it needs: the syntax tree view parses its own tree, while the semantic model and the CFG are built once on a
+ * shared tree, only for the views requiring them. Computed views are kept serialized in the cache of payloads, out of the heap.
+ */
+public class Analysis {
+
+  public static final String AST_VIEW = "ast";
+  public static final String CFG_VIEW = "cfg";
+  public static final String EG_VIEW = "eg";
+  public static final String CALL_GRAPH_VIEW = "callgraph";
+  public static final List<String> VIEWS = Collections.unmodifiableList(Arrays.asList(AST_VIEW, CFG_VIEW, EG_VIEW, CALL_GRAPH_VIEW));
+
+  public final String id;
+  public final Workspace workspace;
+  /**
+   * Content of the workspace when the analysis was created, the analysis being outdated once a jar is added
+   */
+  public final String workspaceFingerprint;
+  private final String source;
+  private final PayloadCache cache;
+  private final Lazy<CompilationUnitTree> syntaxTree = new Lazy<>();
+  private final Lazy<Viewer.Base> base = new Lazy<>();
+  private volatile String tokensFingerprint;
+  /**
+   * Held while computing a view, for the view to be computed once by concurrent requests
+   */
+  private final Map<String, Object> viewLocks = new LinkedHashMap<>();
+
+  public Analysis(String source, Workspace workspace) {
+    this(source, workspace, Viewer.PAYLOADS);
+  }
+
+  public Analysis(String source, Workspace workspace, PayloadCache cache) {
+    this.id = id(source, workspace);
+    this.workspace = workspace;
+    this.workspaceFingerprint = workspace.fingerprint();
+    this.source = source;
+    this.cache = cache;
+    VIEWS.forEach(view -> viewLocks.put(view, new Object()));
+  }
+
+  public static String id(String source, Workspace workspace) {
+    return Hashing.sha256().hashString(workspace.id + "\n" + source, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Key of the views in the store, shared by equivalent code having the same tokens on the same lines, and changing with
+   * the content of the workspace
+   *
+   * @return null for the syntax tree view, which only requires the parse already made to compute the key
+   */
+  @CheckForNull
+  public String storeKey(String view, ServerTiming timing) {
+    if (AST_VIEW.equals(view)) {
+      return null;
+    }
+    String fingerprint = tokensFingerprint;
+    if (fingerprint == null) {
+      fingerprint = timing.measure("fingerprint", () -> TokenFingerprint.of(syntaxTree(timing)));
+      tokensFingerprint = fingerprint;
+    }
+    return storeKey(workspaceFingerprint, fingerprint, view);
+  }
+
+  static String storeKey(String workspaceFingerprint, String tokensFingerprint, String view) {
+    return "view/" + workspaceFingerprint + "/" + tokensFingerprint + "/" + view;
+  }
+
+  /**
+   * Key of the views in the cache of payloads
+   */
+  public String cacheKey(String view) {
+    return "analysis/" + id + "/" + workspaceFingerprint + "/" + view;
+  }
+
+  /**
+   * @return the syntax tree, without semantic
+   */
+  public CompilationUnitTree syntaxTree(ServerTiming timing) {
+    return syntaxTree.get(() -> timing.measure("parse", () -> Viewer.Base.parse(source)));
+  }
+
+  public Viewer.Base base(ServerTiming timing) {
+    return base.get(() -> new Viewer.Base(syntaxTree(timing), workspace, timing));
+  }
+
+  /**
+   * @param onComputed called with the view when computed, not when taken from the cache
+   * @return the serialized view, computed again only once evicted from the cache, to be closed once written
+   */
+  public PayloadCache.Payload view(String view, ServerTiming timing, Consumer<ViewDto> onComputed) {
+    synchronized (viewLock(view)) {
+      PayloadCache.Payload payload = cache.acquire(cacheKey(view));
+      if (payload == null) {
+        ViewDto result = computeView(view, timing);
+        onComputed.accept(result);
+        payload = timing.measure("cache", () -> cache.put(cacheKey(view), result.toJson()));
+      }
+      return payload;
+    }
+  }
+
+  /**
+   * Drop the syntax tree, semantic model and CFG, computed again by the next view requiring them: the analysis itself is
+   * kept, for the page to still request its views
+   */
+  public void releaseArtifacts() {
+    base.clear();
+    syntaxTree.clear();
+  }
+
+  public boolean isCached(String view) {
+    viewLock(view);
+    return cache.contains(cacheKey(view));
+  }
+
+  private Object viewLock(String view) {
+    Object result = viewLocks.get(view);
+    Preconditions.checkArgument(result != null, "Unknown view: '%s', expected one of %s", view, VIEWS);
+    return result;
+  }
+
+  private ViewDto computeView(String view, ServerTiming timing) {
+    switch (view) {
+      case AST_VIEW:
+        // the semantic model is not required, but is attached to the shared tree while other views are computed
+        ASTDotGraph astDotGraph = new ASTDotGraph(timing.measure("parse", () -> Viewer.Base.parse(source)));
+        return graphView(astDotGraph, timing.measure("astDot", astDotGraph::toDot), null);
+      case CFG_VIEW:
+        Viewer.Base cfgBase = base(timing);
+        String text = timing.measure("cfgText", () -> CFGPrinter.toString(cfgBase.cfgFirstMethodOrConstructor));
+        CFGDotGraph cfgDotGraph = new CFGDotGraph(cfgBase.cfgFirstMethodOrConstructor);
+        return graphView(cfgDotGraph, timing.measure("cfgDot", cfgDotGraph::toDot), text);
+      case EG_VIEW:
+        Viewer.Base egBase = base(timing);
+        try (AdmissionControl.Ticket ticket = Viewer.ADMISSION.admit()) {
+          EGDotGraph egDotGraph = timing.measure("se", () -> new EGDotGraph(egBase));
+          String dot = timing.measure("egDot", () -> ticket.toDot(egDotGraph));
+          return new ViewDto(dot, Viewer.register(egDotGraph, dot), null, egDotGraph.isSummarized());
+        }
+      default:
+        CallGraphDotGraph callGraphDotGraph = new CallGraphDotGraph(base(timing).cut);
+        return graphView(callGraphDotGraph, timing.measure("callGraphDot", callGraphDotGraph::toDot), null);
+    }
+  }
+
+  private static ViewDto graphView(DotGraph graph, String dot, @CheckForNull String text) {
+    return new ViewDto(dot, Viewer.register(graph, dot), text, false);
+  }
+
+  /**
+   * Value computed once, by the first caller, without blocking the computation of other values
+   */
+  private static class Lazy<T> {
+    @CheckForNull
+    private volatile T value;
+
+    T get(Supplier<T> supplier) {
+      T result = value;
+      if (result == null) {
+        synchronized (this) {
+          result = value;
+          if (result == null) {
+            result = supplier.get();
+            value = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    synchronized void clear() {
+      value = null;
+    }
+  }
+}
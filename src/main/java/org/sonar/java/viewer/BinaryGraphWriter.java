@@ -0,0 +1,131 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Graph in a compact binary format, made of length-prefixed records so that readers can skip the ones they do not need.
+ * All numbers are big-endian, strings are an int length (-1 for null) followed by UTF-8 bytes:
+ * <pre>
+ * file      := "SGVB" version:byte name:string record* end:int(0)
+ * record    := length:int (NODE id:int | EDGE from:int to:int) count:short attribute*
+ * attribute := name:string type:byte value
+ * value     := BOOLEAN byte | LONG long | DOUBLE double | STRING string | JSON string
+ * </pre>
+ * Record kinds are {@link #NODE} and {@link #EDGE}, attribute types are the ordinals of {@link GraphWriter.AttributeType}.
+ */
+public class BinaryGraphWriter implements GraphWriter {
+
+  public static final String CONTENT_TYPE = "application/octet-stream";
+  public static final byte VERSION = 1;
+  public static final byte NODE = 1;
+  public static final byte EDGE = 2;
+
+  private static final byte[] MAGIC = "SGVB".getBytes(StandardCharsets.US_ASCII);
+
+  private final DataOutputStream output;
+  private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+  private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+  public BinaryGraphWriter(OutputStream output) {
+    this.output = new DataOutputStream(output);
+  }
+
+  @Override
+  public boolean declaresAttributes() {
+    return false;
+  }
+
+  @Override
+  public void start(String name, Map<String, AttributeType> nodeAttributes, Map<String, AttributeType> edgeAttributes) throws IOException {
+    output.write(MAGIC);
+    output.writeByte(VERSION);
+    writeString(output, name);
+  }
+
+  @Override
+  public void node(int id, Map<String, Object> attributes) throws IOException {
+    record.writeByte(NODE);
+    record.writeInt(id);
+    writeRecord(attributes);
+  }
+
+  @Override
+  public void edge(int from, int to, Map<String, Object> attributes) throws IOException {
+    record.writeByte(EDGE);
+    record.writeInt(from);
+    record.writeInt(to);
+    writeRecord(attributes);
+  }
+
+  private void writeRecord(Map<String, Object> attributes) throws IOException {
+    record.writeShort(attributes.size());
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      writeString(record, attribute.getKey());
+      writeValue(attribute.getValue());
+    }
+    output.writeInt(recordBytes.size());
+    recordBytes.writeTo(output);
+    recordBytes.reset();
+  }
+
+  private void writeValue(Object value) throws IOException {
+    if (value instanceof Boolean) {
+      record.writeByte(AttributeType.BOOLEAN.ordinal());
+      record.writeBoolean((Boolean) value);
+    } else if (value instanceof Long) {
+      record.writeByte(AttributeType.LONG.ordinal());
+      record.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      record.writeByte(AttributeType.DOUBLE.ordinal());
+      record.writeDouble((Double) value);
+    } else if (value instanceof String) {
+      record.writeByte(AttributeType.STRING.ordinal());
+      writeString(record, (String) value);
+    } else {
+      record.writeByte(AttributeType.JSON.ordinal());
+      writeString(record, value.toString());
+    }
+  }
+
+  private static void writeString(DataOutputStream stream, @Nullable String value) throws IOException {
+    if (value == null) {
+      stream.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    stream.writeInt(bytes.length);
+    stream.write(bytes);
+  }
+
+  @Override
+  public void end() throws IOException {
+    output.writeInt(0);
+    output.flush();
+  }
+}
@@ -19,22 +19,32 @@
  */
 package org.sonar.java.viewer;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
 import org.sonar.java.viewer.dto.CommonDto;
 
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public abstract class DotGraph {
 
   private static final String ESCAPE_CHAR = "?";
+  private static final Gson GSON = new Gson();
 
-  private final Stream.Builder<DotElement> elements = Stream.builder();
+  private final Elements elements = new Elements();
+  private boolean built = false;
+  private TextIndex textIndex;
 
   /**
    * Provide the graph name
@@ -48,35 +58,225 @@ public abstract class DotGraph {
    */
   public abstract void build();
 
+  /**
+   * Only the properties of the edge are kept, not the edge itself
+   */
   public final void addEdge(DotGraph.Edge edge) {
-    elements.add(edge);
+    elements.addEdge(edge.from, edge.to, edge.label(), edge.highlighting(), edge.details());
   }
 
+  /**
+   * Only the properties of the node are kept, not the node itself
+   */
   public final void addNode(DotGraph.Node node) {
-    elements.add(node);
+    elements.addNode(node.id, node.label(), node.highlighting(), node.details());
   }
 
   /**
    * Convert the graph to DOT format (graph description language).
    * See language specification: http://www.graphviz.org/content/dot-language
    */
-  public final String toDot() {
-    build();
+  public final synchronized String toDot() {
+    buildOnce();
 
     StringBuilder sb = new StringBuilder()
       .append("graph ")
       .append(name())
       .append(" {");
-    elements.build().map(DotElement::toDot).forEach(sb::append);
+    for (int i = 0; i < elements.size(); i++) {
+      appendDot(sb, i);
+    }
     return sb.append("}")
       .toString();
   }
 
+  private void appendDot(StringBuilder sb, int element) {
+    if (elements.isNode(element)) {
+      sb.append(elements.id(element));
+    } else {
+      sb.append(elements.from(element)).append("->").append(elements.to(element));
+    }
+    sb.append('[');
+    int length = sb.length();
+    CommonDto details = elements.details(element);
+    if (details != null) {
+      appendProperty(sb, length, "details", details.toJson().replace("\"", ESCAPE_CHAR));
+    }
+    appendProperty(sb, length, "label", elements.label(element));
+    appendProperty(sb, length, "highlighting", Highlighting.name(elements.highlighting(element)));
+    sb.append("];");
+  }
+
+  private static void appendProperty(StringBuilder sb, int start, String name, @Nullable String value) {
+    if (value == null) {
+      return;
+    }
+    if (sb.length() > start) {
+      sb.append(',');
+    }
+    sb.append(name).append("=\"").append(value).append('"');
+  }
+
+  /**
+   * Index of the labels and details of the nodes and edges, built on first use
+   */
+  public final synchronized TextIndex textIndex() {
+    if (textIndex != null) {
+      return textIndex;
+    }
+    buildOnce();
+    // nodes can be declared several times, their properties being merged
+    Map<Integer, String> nodeLabels = new LinkedHashMap<>();
+    Map<Integer, String> nodeDetails = new HashMap<>();
+    List<TextIndex.Document> documents = new ArrayList<>();
+    for (int element = 0; element < elements.size(); element++) {
+      String label = elements.label(element) == null ? "" : elements.label(element);
+      CommonDto details = elements.details(element);
+      String detailsText = details == null ? "" : details.toJson();
+      if (elements.isNode(element)) {
+        int id = elements.id(element);
+        nodeLabels.merge(id, label, (l1, l2) -> l1 + "\n" + l2);
+        nodeDetails.merge(id, detailsText, (d1, d2) -> d1 + "\n" + d2);
+      } else {
+        documents.add(TextIndex.Document.edge(elements.from(element), elements.to(element), label, detailsText));
+      }
+    }
+    nodeLabels.forEach((id, label) -> documents.add(TextIndex.Document.node(id, label, nodeDetails.get(id))));
+    textIndex = new TextIndex(documents);
+    return textIndex;
+  }
+
+  /**
+   * Give the nodes and edges of the graph to the writer, in order. Successive declarations of the same node are merged,
+   * their labels being joined.
+   */
+  public final synchronized void write(GraphWriter writer) throws IOException {
+    buildOnce();
+    Map<String, GraphWriter.AttributeType> nodeAttributes = new LinkedHashMap<>();
+    Map<String, GraphWriter.AttributeType> edgeAttributes = new LinkedHashMap<>();
+    if (writer.declaresAttributes()) {
+      for (int element = 0; element < elements.size(); element++) {
+        Map<String, GraphWriter.AttributeType> types = elements.isNode(element) ? nodeAttributes : edgeAttributes;
+        attributes(element).forEach((name, value) -> types.merge(name, attributeType(value), DotGraph::commonType));
+      }
+    }
+    writer.start(name(), nodeAttributes, edgeAttributes);
+    int pendingNode = -1;
+    Map<String, Object> pendingAttributes = null;
+    for (int element = 0; element < elements.size(); element++) {
+      Map<String, Object> attributes = attributes(element);
+      boolean node = elements.isNode(element);
+      if (pendingNode != -1 && node && elements.id(element) == elements.id(pendingNode)) {
+        mergeAttributes(pendingAttributes, attributes);
+        continue;
+      }
+      if (pendingNode != -1) {
+        writer.node(elements.id(pendingNode), pendingAttributes);
+        pendingNode = -1;
+      }
+      if (node) {
+        pendingNode = element;
+        pendingAttributes = attributes;
+      } else {
+        writer.edge(elements.from(element), elements.to(element), attributes);
+      }
+    }
+    if (pendingNode != -1) {
+      writer.node(elements.id(pendingNode), pendingAttributes);
+    }
+    writer.end();
+  }
+
+  /**
+   * Fill the nodes and edges on first use only, the conversions of the graph sharing them
+   */
+  private void buildOnce() {
+    if (!built) {
+      build();
+      built = true;
+    }
+  }
+
+  private Map<String, Object> attributes(int element) {
+    Map<String, Object> attributes = new LinkedHashMap<>();
+    String label = elements.label(element);
+    if (label != null) {
+      attributes.put("label", label);
+    }
+    String highlighting = Highlighting.name(elements.highlighting(element));
+    if (highlighting != null) {
+      attributes.put("highlighting", highlighting);
+    }
+    CommonDto details = elements.details(element);
+    if (details != null) {
+      for (Map.Entry<String, JsonElement> property : GSON.toJsonTree(details).getAsJsonObject().entrySet()) {
+        attributes.putIfAbsent(property.getKey(), attributeValue(property.getValue()));
+      }
+    }
+    return attributes;
+  }
+
+  private static Object attributeValue(JsonElement value) {
+    if (!value.isJsonPrimitive()) {
+      return value;
+    }
+    JsonPrimitive primitive = value.getAsJsonPrimitive();
+    if (primitive.isBoolean()) {
+      return primitive.getAsBoolean();
+    }
+    if (primitive.isNumber()) {
+      double number = primitive.getAsDouble();
+      if (number == Math.rint(number) && Math.abs(number) < Long.MAX_VALUE) {
+        return primitive.getAsLong();
+      }
+      return number;
+    }
+    return primitive.getAsString();
+  }
+
+  private static GraphWriter.AttributeType attributeType(Object value) {
+    if (value instanceof Boolean) {
+      return GraphWriter.AttributeType.BOOLEAN;
+    }
+    if (value instanceof Long) {
+      return GraphWriter.AttributeType.LONG;
+    }
+    if (value instanceof Double) {
+      return GraphWriter.AttributeType.DOUBLE;
+    }
+    if (value instanceof JsonElement) {
+      return GraphWriter.AttributeType.JSON;
+    }
+    return GraphWriter.AttributeType.STRING;
+  }
+
+  private static GraphWriter.AttributeType commonType(GraphWriter.AttributeType type1, GraphWriter.AttributeType type2) {
+    if (type1 == type2) {
+      return type1;
+    }
+    boolean numbers = EnumSet.of(GraphWriter.AttributeType.LONG, GraphWriter.AttributeType.DOUBLE).containsAll(EnumSet.of(type1, type2));
+    return numbers ? GraphWriter.AttributeType.DOUBLE : GraphWriter.AttributeType.STRING;
+  }
+
+  private static void mergeAttributes(Map<String, Object> attributes, Map<String, Object> redeclaredAttributes) {
+    redeclaredAttributes.forEach((name, value) -> {
+      if ("label".equals(name) && attributes.containsKey(name)) {
+        attributes.put(name, attributes.get(name) + "\n" + value);
+      } else {
+        attributes.put(name, value);
+      }
+    });
+  }
+
   public enum Highlighting {
     FIRST_NODE("firstNode"),
     LOST_NODE("lostNode"),
     EXIT_NODE("exitNode"),
 
+    ADDED_NODE("addedNode"),
+    REMOVED_NODE("removedNode"),
+    CHANGED_NODE("changedNode"),
+
     TOKEN_KIND("tokenKind"),
     CLASS_KIND("classKind"),
     METHOD_KIND("methodKind"),
@@ -101,7 +301,6 @@ public abstract class DotGraph {
 
   private abstract static class DotElement {
 
-
     public abstract String label();
 
     @CheckForNull
@@ -109,27 +308,6 @@ public abstract class DotGraph {
 
     @CheckForNull
     public abstract CommonDto details();
-
-    public abstract String toDot();
-
-    protected String dotProperties() {
-      Map<String, String> properties = new HashMap<>();
-      properties.put("label", label());
-      properties.put("highlighting", Highlighting.name(highlighting()));
-      properties.put("details", escape(details()));
-
-      return properties.entrySet().stream()
-        .filter(entry -> entry.getValue() != null)
-        .map(entry -> MessageFormat.format("{0}=\"{1}\"", entry.getKey(), entry.getValue()))
-        .collect(Collectors.joining(","));
-    }
-
-    private static String escape(@Nullable CommonDto dto) {
-      if (dto == null) {
-        return null;
-      }
-      return dto.toJson().replaceAll("\"", ESCAPE_CHAR);
-    }
   }
 
   public abstract static class Node extends DotElement {
@@ -139,11 +317,6 @@ public abstract class DotGraph {
     public Node(int id) {
       this.id = id;
     }
-
-    @Override
-    public final String toDot() {
-      return MessageFormat.format("{0}[{1}];", id, dotProperties());
-    }
   }
 
   public abstract static class Edge extends DotElement {
@@ -162,10 +335,103 @@ public abstract class DotGraph {
     @CheckForNull
     @Override
     public abstract String label();
+  }
 
-    @Override
-    public final String toDot() {
-      return MessageFormat.format("{0}->{1}[{2}];", from, to, dotProperties());
+  /**
+   * Nodes and edges of the graph in order of declaration, stored in parallel arrays rather than as objects: the id of
+   * a node or the endpoints of an edge, its highlighting, and the indexes of its label in the table of distinct labels
+   * and of its details in the table of details.
+   */
+  private static final class Elements {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NONE = -1;
+    private static final Highlighting[] HIGHLIGHTINGS = Highlighting.values();
+
+    private int size = 0;
+    /**
+     * Id of the node, or source of the edge
+     */
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private int[] targets = new int[INITIAL_CAPACITY];
+    private final BitSet edges = new BitSet();
+    /**
+     * Ordinal of the highlighting, plus one
+     */
+    private byte[] highlightings = new byte[INITIAL_CAPACITY];
+    private int[] labels = new int[INITIAL_CAPACITY];
+    private int[] details = new int[INITIAL_CAPACITY];
+    private final List<String> labelTable = new ArrayList<>();
+    private final Map<String, Integer> labelIndexes = new HashMap<>();
+    private final List<CommonDto> detailsTable = new ArrayList<>();
+
+    void addNode(int id, @Nullable String label, @Nullable Highlighting highlighting, @Nullable CommonDto elementDetails) {
+      add(id, NONE, label, highlighting, elementDetails);
+    }
+
+    void addEdge(int from, int to, @Nullable String label, @Nullable Highlighting highlighting, @Nullable CommonDto elementDetails) {
+      edges.set(size);
+      add(from, to, label, highlighting, elementDetails);
+    }
+
+    private void add(int id, int target, @Nullable String label, @Nullable Highlighting highlighting, @Nullable CommonDto elementDetails) {
+      if (size == ids.length) {
+        int capacity = size * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        targets = Arrays.copyOf(targets, capacity);
+        highlightings = Arrays.copyOf(highlightings, capacity);
+        labels = Arrays.copyOf(labels, capacity);
+        details = Arrays.copyOf(details, capacity);
+      }
+      ids[size] = id;
+      targets[size] = target;
+      highlightings[size] = (byte) (highlighting == null ? 0 : (highlighting.ordinal() + 1));
+      labels[size] = label == null ? NONE : labelIndexes.computeIfAbsent(label, l -> {
+        labelTable.add(l);
+        return labelTable.size() - 1;
+      });
+      if (elementDetails == null) {
+        details[size] = NONE;
+      } else {
+        details[size] = detailsTable.size();
+        detailsTable.add(elementDetails);
+      }
+      size++;
+    }
+
+    int size() {
+      return size;
+    }
+
+    boolean isNode(int element) {
+      return !edges.get(element);
+    }
+
+    int id(int node) {
+      return ids[node];
+    }
+
+    int from(int edge) {
+      return ids[edge];
+    }
+
+    int to(int edge) {
+      return targets[edge];
+    }
+
+    @CheckForNull
+    String label(int element) {
+      return labels[element] == NONE ? null : labelTable.get(labels[element]);
+    }
+
+    @CheckForNull
+    Highlighting highlighting(int element) {
+      return highlightings[element] == 0 ? null : HIGHLIGHTINGS[highlightings[element] - 1];
+    }
+
+    @CheckForNull
+    CommonDto details(int element) {
+      return details[element] == NONE ? null : detailsTable.get(details[element]);
     }
   }
 }
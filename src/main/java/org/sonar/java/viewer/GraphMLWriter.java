@@ -0,0 +1,146 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Graph in GraphML format, attributes being declared as keys with their types.
+ * See specification: http://graphml.graphdrawing.org/specification.html
+ */
+public class GraphMLWriter implements GraphWriter {
+
+  public static final String CONTENT_TYPE = "application/graphml+xml";
+
+  private static final String NAMESPACE = "http://graphml.graphdrawing.org/xmlns";
+
+  private final XMLStreamWriter xml;
+  private final Map<String, String> nodeKeys = new HashMap<>();
+  private final Map<String, String> edgeKeys = new HashMap<>();
+
+  public GraphMLWriter(OutputStream output) throws IOException {
+    try {
+      this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(output, StandardCharsets.UTF_8.name());
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public boolean declaresAttributes() {
+    return true;
+  }
+
+  @Override
+  public void start(String name, Map<String, AttributeType> nodeAttributes, Map<String, AttributeType> edgeAttributes) throws IOException {
+    try {
+      xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+      xml.writeStartElement("graphml");
+      xml.writeDefaultNamespace(NAMESPACE);
+      writeKeys("node", "n", nodeAttributes, nodeKeys);
+      writeKeys("edge", "e", edgeAttributes, edgeKeys);
+      xml.writeStartElement("graph");
+      xml.writeAttribute("id", name);
+      xml.writeAttribute("edgedefault", "directed");
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void writeKeys(String domain, String prefix, Map<String, AttributeType> attributes, Map<String, String> keys) throws XMLStreamException {
+    for (Map.Entry<String, AttributeType> attribute : attributes.entrySet()) {
+      String key = prefix + keys.size();
+      keys.put(attribute.getKey(), key);
+      xml.writeEmptyElement("key");
+      xml.writeAttribute("id", key);
+      xml.writeAttribute("for", domain);
+      xml.writeAttribute("attr.name", attribute.getKey());
+      xml.writeAttribute("attr.type", graphMLType(attribute.getValue()));
+    }
+  }
+
+  private static String graphMLType(AttributeType type) {
+    switch (type) {
+      case BOOLEAN:
+      case LONG:
+      case DOUBLE:
+        return type.name().toLowerCase(Locale.ROOT);
+      default:
+        // JSON values are given as strings
+        return "string";
+    }
+  }
+
+  @Override
+  public void node(int id, Map<String, Object> attributes) throws IOException {
+    try {
+      xml.writeStartElement("node");
+      xml.writeAttribute("id", "n" + id);
+      writeData(attributes, nodeKeys);
+      xml.writeEndElement();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  @Override
+  public void edge(int from, int to, Map<String, Object> attributes) throws IOException {
+    try {
+      xml.writeStartElement("edge");
+      xml.writeAttribute("source", "n" + from);
+      xml.writeAttribute("target", "n" + to);
+      writeData(attributes, edgeKeys);
+      xml.writeEndElement();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void writeData(Map<String, Object> attributes, Map<String, String> keys) throws XMLStreamException {
+    for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+      xml.writeStartElement("data");
+      xml.writeAttribute("key", keys.get(attribute.getKey()));
+      xml.writeCharacters(String.valueOf(attribute.getValue()));
+      xml.writeEndElement();
+    }
+  }
+
+  @Override
+  public void end() throws IOException {
+    try {
+      // graph and graphml elements
+      xml.writeEndElement();
+      xml.writeEndElement();
+      xml.writeEndDocument();
+      xml.flush();
+    } catch (XMLStreamException e) {
+      throw new IOException(e);
+    }
+  }
+}
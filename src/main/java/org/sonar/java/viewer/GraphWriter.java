@@ -0,0 +1,57 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Receives the nodes and edges of a graph one at a time, to write them without keeping the whole output in memory.
+ * Attributes are the label and the highlighting of the elements, and the top-level properties of their details:
+ * booleans, longs, doubles and strings, other values being given as JSON.
+ */
+public interface GraphWriter {
+
+  enum AttributeType {
+    BOOLEAN,
+    LONG,
+    DOUBLE,
+    STRING,
+    JSON
+  }
+
+  /**
+   * @return true if the attributes of all the elements must be known before the first element, requiring a first
+   * pass over the graph
+   */
+  boolean declaresAttributes();
+
+  /**
+   * @param nodeAttributes types of the attributes of the nodes, empty if attributes are not declared
+   * @param edgeAttributes types of the attributes of the edges, empty if attributes are not declared
+   */
+  void start(String name, Map<String, AttributeType> nodeAttributes, Map<String, AttributeType> edgeAttributes) throws IOException;
+
+  void node(int id, Map<String, Object> attributes) throws IOException;
+
+  void edge(int from, int to, Map<String, Object> attributes) throws IOException;
+
+  void end() throws IOException;
+}
@@ -0,0 +1,108 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies covering their whole range with a bounded relative error, as a high dynamic range histogram:
+ * values are exact below 128 microseconds, and above are counted in buckets whose width doubles with each power of two,
+ * each power of two having 64 buckets, giving percentiles within 1.6% of the recorded values.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+  private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param micros latency, in microseconds
+   */
+  public void record(long micros) {
+    Preconditions.checkArgument(micros >= 0, "Latency must not be negative: %s", micros);
+    counts.incrementAndGet(index(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    max.accumulateAndGet(micros, Math::max);
+  }
+
+  public long count() {
+    return count.get();
+  }
+
+  /**
+   * @return mean latency, in microseconds
+   */
+  public double mean() {
+    long total = count.get();
+    return total == 0 ? 0 : (sum.get() / (double) total);
+  }
+
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * @param percentile between 0 and 100, for instance 99.9
+   * @return highest latency of the bucket containing the percentile, in microseconds
+   */
+  public long percentile(double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100: %s", percentile);
+    long total = count.get();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long cumulated = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      cumulated += counts.get(i);
+      if (cumulated >= rank) {
+        return Math.min(highestValue(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  private static int index(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS + 1;
+    int subBucket = (int) (value >> shift);
+    return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (subBucket - HALF_SUB_BUCKETS);
+  }
+
+  private static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+    long subBucket = (long) ((index - SUB_BUCKETS) % HALF_SUB_BUCKETS) + HALF_SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
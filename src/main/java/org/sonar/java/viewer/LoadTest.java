@@ -0,0 +1,332 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Load generator replaying java sources against a running viewer, reporting the throughput, error rate and latency
+ * percentiles of each kind of request, and the durations of the server stages taken from the Server-Timing headers.
+ * <p>
+ * Usage: {@code java -cp <jar> org.sonar.java.viewer.LoadTest [directory of java sources]}, configured by the system
+ * properties {@code load.url}, {@code load.concurrency}, {@code load.duration} (in seconds) and {@code load.mix}, as
+ * weights of the kinds of requests: {@code get} (page of the default code), {@code post} (page of a source, followed by
+ * the graphs shown by the page) and {@code static} (assets of the page).
+ */
+public class LoadTest {
+
+  public static final String GET = "get";
+  public static final String POST = "post";
+  public static final String VIEW = "view";
+  public static final String STATIC = "static";
+  public static final String ALL = "all";
+  private static final String DEFAULT_MIX = "get=1,post=4,static=2";
+  private static final List<String> PAGE_VIEWS = Arrays.asList(Analysis.CFG_VIEW, Analysis.EG_VIEW);
+  private static final List<String> STATIC_ASSETS = Arrays.asList(
+    "/lib/viewer/js/viewer.js",
+    "/lib/viewer/css/style.css",
+    "/lib/vis-4.20.0/vis.min.js",
+    "/lib/codemirror-5.27.2/codemirror.min.js");
+  private static final Pattern ANALYSIS = Pattern.compile("var analysis = '(\\w*)';");
+  private static final Pattern STAGE = Pattern.compile("([\\w-]+);dur=([0-9.]+)");
+
+  private final String url;
+  private final List<String> sources;
+  private final int concurrency;
+  private final long durationMillis;
+  private final Map<String, Integer> mix;
+  private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> stageCounts = new ConcurrentHashMap<>();
+  private final Map<String, DoubleAdder> stageDurations = new ConcurrentHashMap<>();
+  private final AtomicLong nextSource = new AtomicLong();
+
+  /**
+   * @param url base url of the viewer, without trailing slash
+   * @param mix weight of each kind of request
+   */
+  public LoadTest(String url, List<String> sources, int concurrency, long durationMillis, Map<String, Integer> mix) {
+    Preconditions.checkArgument(!sources.isEmpty(), "No java source to replay.");
+    Preconditions.checkArgument(concurrency > 0, "Concurrency must be positive: %s", concurrency);
+    Preconditions.checkArgument(mix.values().stream().mapToInt(Integer::intValue).sum() > 0, "Request mix has no weight: %s", mix);
+    mix.keySet().forEach(kind -> Preconditions.checkArgument(Arrays.asList(GET, POST, STATIC).contains(kind),
+      "Unknown kind of request: '%s', expected '%s', '%s' or '%s'", kind, GET, POST, STATIC));
+    this.url = url;
+    this.sources = sources;
+    this.concurrency = concurrency;
+    this.durationMillis = durationMillis;
+    this.mix = mix;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    List<String> sources = args.length == 0 ? WarmUp.corpus() : readSources(Paths.get(args[0]));
+    LoadTest loadTest = new LoadTest(
+      System.getProperty("load.url", "http://localhost:9999"),
+      sources,
+      Integer.getInteger("load.concurrency", 4),
+      TimeUnit.SECONDS.toMillis(Integer.getInteger("load.duration", 30)),
+      parseMix(System.getProperty("load.mix", DEFAULT_MIX)));
+    System.out.println(loadTest.run().format());
+  }
+
+  static List<String> readSources(Path directory) throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files.filter(file -> file.toString().endsWith(".java"))
+        .sorted()
+        .map(file -> {
+          try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        })
+        .collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * @param mix weights of the kinds of requests, as "get=1,post=4,static=2"
+   */
+  static Map<String, Integer> parseMix(String mix) {
+    Map<String, Integer> result = new LinkedHashMap<>();
+    for (String entry : mix.split(",")) {
+      String[] weight = entry.trim().split("=");
+      Preconditions.checkArgument(weight.length == 2, "Weight of a kind of request expected as 'kind=weight': '%s'", entry);
+      try {
+        result.put(weight[0], Integer.parseInt(weight[1]));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(String.format("Weight must be an integer: '%s'", entry), e);
+      }
+    }
+    return result;
+  }
+
+  public Report run() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    for (int i = 0; i < concurrency; i++) {
+      executor.execute(() -> {
+        while (System.nanoTime() < deadline) {
+          execute(nextKind());
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(durationMillis + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+    return new Report((System.nanoTime() - start) / 1_000_000_000d);
+  }
+
+  private String nextKind() {
+    int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+    int draw = ThreadLocalRandom.current().nextInt(total);
+    for (Map.Entry<String, Integer> entry : mix.entrySet()) {
+      draw -= entry.getValue();
+      if (draw < 0) {
+        return entry.getKey();
+      }
+    }
+    throw new IllegalStateException("No kind of request drawn from " + mix);
+  }
+
+  private void execute(String kind) {
+    switch (kind) {
+      case GET:
+        request(GET, "/", null);
+        break;
+      case POST:
+        String source = sources.get((int) (nextSource.getAndIncrement() % sources.size()));
+        String page = request(POST, "/", "javaCode=" + encode(source));
+        Matcher analysis = ANALYSIS.matcher(page == null ? "" : page);
+        if (analysis.find() && !analysis.group(1).isEmpty()) {
+          // graphs requested by the page once loaded
+          PAGE_VIEWS.forEach(view -> request(VIEW, "/analysis/" + analysis.group(1) + "/" + view, null));
+        }
+        break;
+      default:
+        request(STATIC, STATIC_ASSETS.get(ThreadLocalRandom.current().nextInt(STATIC_ASSETS.size())), null);
+        break;
+    }
+  }
+
+  /**
+   * @return body of the response, null on error
+   */
+  @CheckForNull
+  private String request(String kind, String path, @CheckForNull String form) {
+    long start = System.nanoTime();
+    String body = null;
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) new URL(url + path).openConnection();
+      if (form != null) {
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+        try (OutputStream output = connection.getOutputStream()) {
+          output.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      int status = connection.getResponseCode();
+      InputStream input = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      String content = input == null ? "" : read(input);
+      if (status < 400) {
+        body = content;
+        recordStages(connection.getHeaderField(ServerTiming.HEADER));
+      }
+    } catch (IOException e) {
+      // counted as an error
+    } finally {
+      if (connection != null && body == null) {
+        connection.disconnect();
+      }
+    }
+    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    latencies.computeIfAbsent(kind, k -> new LatencyHistogram()).record(micros);
+    latencies.computeIfAbsent(ALL, k -> new LatencyHistogram()).record(micros);
+    if (body == null) {
+      errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+      errors.computeIfAbsent(ALL, k -> new LongAdder()).increment();
+    }
+    return body;
+  }
+
+  private void recordStages(@CheckForNull String serverTiming) {
+    if (serverTiming == null) {
+      return;
+    }
+    Matcher stage = STAGE.matcher(serverTiming);
+    while (stage.find()) {
+      stageCounts.computeIfAbsent(stage.group(1), k -> new LongAdder()).increment();
+      stageDurations.computeIfAbsent(stage.group(1), k -> new DoubleAdder()).add(Double.parseDouble(stage.group(2)));
+    }
+  }
+
+  private static String read(InputStream input) throws IOException {
+    try (InputStream stream = input) {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = stream.read(buffer)) != -1) {
+        output.write(buffer, 0, read);
+      }
+      return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String encode(String value) {
+    try {
+      return URLEncoder.encode(value, StandardCharsets.UTF_8.name());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Results of a run, latencies being in microseconds
+   */
+  public class Report {
+    public final double seconds;
+
+    private Report(double seconds) {
+      this.seconds = seconds;
+    }
+
+    public LatencyHistogram latencies(String kind) {
+      return latencies.getOrDefault(kind, new LatencyHistogram());
+    }
+
+    public long errors(String kind) {
+      LongAdder result = errors.get(kind);
+      return result == null ? 0 : result.sum();
+    }
+
+    public double throughput(String kind) {
+      return latencies(kind).count() / seconds;
+    }
+
+    /**
+     * @return mean duration of each server stage, in milliseconds
+     */
+    public Map<String, Double> meanStageDurations() {
+      Map<String, Double> result = new LinkedHashMap<>();
+      List<String> stages = new ArrayList<>(stageCounts.keySet());
+      Collections.sort(stages);
+      stages.forEach(stage -> result.put(stage, stageDurations.get(stage).sum() / stageCounts.get(stage).sum()));
+      return result;
+    }
+
+    public String format() {
+      StringBuilder result = new StringBuilder();
+      result.append(String.format(Locale.ROOT, "%s, %d client(s), %.1f s%n", url, concurrency, seconds));
+      result.append(String.format(Locale.ROOT, "%-8s %8s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+        "request", "count", "errors", "req/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+      for (String kind : Arrays.asList(GET, POST, VIEW, STATIC, ALL)) {
+        LatencyHistogram histogram = latencies(kind);
+        if (histogram.count() == 0) {
+          continue;
+        }
+        result.append(String.format(Locale.ROOT, "%-8s %8d %6.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+          kind, histogram.count(), 100d * errors(kind) / histogram.count(), throughput(kind), histogram.mean() / 1000,
+          millis(histogram.percentile(50)), millis(histogram.percentile(90)), millis(histogram.percentile(99)),
+          millis(histogram.percentile(99.9)), millis(histogram.max())));
+      }
+      result.append(String.format(Locale.ROOT, "%n%-16s %8s %9s%n", "server stage", "count", "mean ms"));
+      meanStageDurations().forEach((stage, mean) -> result.append(String.format(Locale.ROOT, "%-16s %8d %9.3f%n", stage, stageCounts.get(stage).sum(), mean)));
+      return result.toString();
+    }
+
+    private double millis(long micros) {
+      return micros / 1000d;
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.annotation.CheckForNull;
+
+/**
+ * Jar (or zip) file read through a memory-mapped buffer. The central directory is indexed once, when opening the file,
+ * and entries are then inflated directly from the mapped buffer.
+ * See specification of the format: https://pkware.cachefly.net/webdocs/casestudies/APPNOTE.TXT
+ */
+public class MappedJar {
+
+  private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+  private static final int CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+  private static final int LOCAL_HEADER_SIZE = 30;
+  private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+  private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+  private static final int MAX_COMMENT_SIZE = 0xFFFF;
+  private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+
+  private final File file;
+  private final ByteBuffer buffer;
+  private final Map<String, Entry> entries;
+
+  public MappedJar(File file) throws IOException {
+    this.file = file;
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("File too large to be mapped: " + file);
+      }
+      // the mapping remains valid once the channel is closed
+      MappedByteBuffer mappedBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      this.buffer = mappedBuffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+    this.entries = readCentralDirectory();
+  }
+
+  private MappedJar(File file, ByteBuffer buffer, Map<String, Entry> entries) {
+    this.file = file;
+    this.buffer = buffer;
+    this.entries = entries;
+  }
+
+  /**
+   * @return the same jar, without indexing it again, once its file has been moved
+   */
+  public MappedJar movedTo(File target) {
+    return new MappedJar(target, buffer, entries);
+  }
+
+  public File file() {
+    return file;
+  }
+
+  /**
+   * @return names of the file entries of the jar
+   */
+  public Set<String> entries() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  public long classCount() {
+    return entries.keySet().stream().filter(name -> name.endsWith(".class")).count();
+  }
+
+  /**
+   * @return the content of the entry, or null if the jar does not contain such entry
+   */
+  @CheckForNull
+  public InputStream open(String name) throws IOException {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      return null;
+    }
+    int localHeader = entry.localHeaderOffset;
+    if (buffer.getInt(localHeader) != LOCAL_HEADER_SIGNATURE) {
+      throw new IOException("Invalid local header for entry '" + name + "' in " + file);
+    }
+    int dataOffset = localHeader + LOCAL_HEADER_SIZE + unsignedShort(localHeader + 26) + unsignedShort(localHeader + 28);
+    ByteBuffer data = buffer.duplicate();
+    data.position(dataOffset);
+    data.limit(dataOffset + entry.compressedSize);
+    InputStream inputStream = new ByteBufferInputStream(data.slice());
+    switch (entry.method) {
+      case STORED:
+        return inputStream;
+      case DEFLATED:
+        return new EntryInflaterInputStream(inputStream);
+      default:
+        throw new IOException("Unsupported compression method " + entry.method + " for entry '" + name + "' in " + file);
+    }
+  }
+
+  private Map<String, Entry> readCentralDirectory() throws IOException {
+    int endOfCentralDirectory = findEndOfCentralDirectory();
+    int count = unsignedShort(endOfCentralDirectory + 10);
+    long offset = unsignedInt(endOfCentralDirectory + 16);
+    if (count == 0xFFFF || offset == ZIP64_MARKER) {
+      throw new IOException("ZIP64 archives are not supported: " + file);
+    }
+    Map<String, Entry> result = new HashMap<>(2 * count);
+    int position = (int) offset;
+    for (int i = 0; i < count; i++) {
+      if (buffer.getInt(position) != CENTRAL_DIRECTORY_SIGNATURE) {
+        throw new IOException("Invalid central directory in " + file);
+      }
+      int method = unsignedShort(position + 10);
+      long compressedSize = unsignedInt(position + 20);
+      int nameLength = unsignedShort(position + 28);
+      int extraLength = unsignedShort(position + 30);
+      int commentLength = unsignedShort(position + 32);
+      long localHeaderOffset = unsignedInt(position + 42);
+      String name = string(position + CENTRAL_DIRECTORY_HEADER_SIZE, nameLength);
+      if (!name.endsWith("/")) {
+        result.put(name, new Entry(method, (int) localHeaderOffset, (int) compressedSize));
+      }
+      position += CENTRAL_DIRECTORY_HEADER_SIZE + nameLength + extraLength + commentLength;
+    }
+    return result;
+  }
+
+  private int findEndOfCentralDirectory() throws IOException {
+    int last = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+    // the end of central directory record is only followed by the archive comment
+    int first = Math.max(0, last - MAX_COMMENT_SIZE);
+    for (int position = last; position >= first; position--) {
+      if (buffer.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE) {
+        return position;
+      }
+    }
+    throw new IOException("Not a jar file: " + file);
+  }
+
+  private int unsignedShort(int position) {
+    return buffer.getShort(position) & 0xFFFF;
+  }
+
+  private long unsignedInt(int position) {
+    return buffer.getInt(position) & 0xFFFFFFFFL;
+  }
+
+  private String string(int position, int length) {
+    byte[] bytes = new byte[length];
+    ByteBuffer source = buffer.duplicate();
+    source.position(position);
+    source.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static class Entry {
+    private final int method;
+    private final int localHeaderOffset;
+    private final int compressedSize;
+
+    Entry(int method, int localHeaderOffset, int compressedSize) {
+      this.method = method;
+      this.localHeaderOffset = localHeaderOffset;
+      this.compressedSize = compressedSize;
+    }
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer buffer;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int read = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, read);
+      return read;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
+  }
+
+  /**
+   * Same behavior as the inflater used by {@link java.util.zip.ZipFile}: raw deflate data, which may require an extra
+   * dummy byte once the compressed data is consumed, and native resources released when closing the stream.
+   */
+  private static class EntryInflaterInputStream extends InflaterInputStream {
+    private boolean eof = false;
+
+    EntryInflaterInputStream(InputStream inputStream) {
+      super(inputStream, new Inflater(true));
+    }
+
+    @Override
+    protected void fill() throws IOException {
+      if (eof) {
+        throw new EOFException("Unexpected end of compressed entry");
+      }
+      len = in.read(buf, 0, buf.length);
+      if (len == -1) {
+        buf[0] = 0;
+        len = 1;
+        eof = true;
+      }
+      inf.setInput(buf, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      super.close();
+      inf.end();
+    }
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import com.sonar.sslr.api.typed.ActionParser;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.sonar.java.viewer.dto.ParserPoolDto;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+/**
+ * Bounded pool of parsers, which are not thread-safe: each parse checks out a parser, created on demand up to the size
+ * of the pool, and returns it once done. Callers wait for a parser when all of them are in use.
+ */
+public class ParserPool {
+
+  private final int size;
+  private final Supplier<ActionParser<Tree>> factory;
+  private final BlockingQueue<ActionParser<Tree>> idle;
+  private final AtomicInteger created = new AtomicInteger();
+  private final AtomicLong checkouts = new AtomicLong();
+  private final AtomicLong waits = new AtomicLong();
+  private final AtomicLong totalWaitNanos = new AtomicLong();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+
+  public ParserPool(int size, Supplier<ActionParser<Tree>> factory) {
+    Preconditions.checkArgument(size > 0, "Size of the parser pool must be positive: %s", size);
+    this.size = size;
+    this.factory = factory;
+    this.idle = new ArrayBlockingQueue<>(size);
+  }
+
+  public CompilationUnitTree parse(String source) {
+    ActionParser<Tree> parser = checkout();
+    try {
+      return (CompilationUnitTree) parser.parse(source);
+    } finally {
+      idle.offer(parser);
+    }
+  }
+
+  private ActionParser<Tree> checkout() {
+    checkouts.incrementAndGet();
+    ActionParser<Tree> parser = idle.poll();
+    if (parser != null) {
+      return parser;
+    }
+    if (created.getAndUpdate(count -> count < size ? (count + 1) : count) < size) {
+      return factory.get();
+    }
+    long start = System.nanoTime();
+    try {
+      parser = idle.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a parser.", e);
+    }
+    long waitNanos = System.nanoTime() - start;
+    waits.incrementAndGet();
+    totalWaitNanos.addAndGet(waitNanos);
+    maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    return parser;
+  }
+
+  public ParserPoolDto stats() {
+    return new ParserPoolDto(size, created.get(), checkouts.get(), waits.get(), toMillis(totalWaitNanos.get()), toMillis(maxWaitNanos.get()));
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / 1_000_000d;
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Utf8;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.CheckForNull;
+import org.sonar.java.viewer.dto.PayloadCacheDto;
+
+/**
+ * Cache of serialized payloads kept out of the heap, so that large DOT and JSON results do not inflate the old
+ * generation. The payloads are encoded in UTF-8 into blocks of a single direct buffer allocated once, the cache
+ * accounting for the blocks in use and evicting the least recently used payloads to make room.
+ *
+ * Payloads are acquired to be written to the response, and must be closed once written: the blocks of an evicted
+ * payload are only released when its last reader closes it.
+ */
+public class PayloadCache {
+
+  static final int DEFAULT_BLOCK_SIZE = 16 * 1024;
+  private static final int ENCODING_CHUNK_SIZE = 4 * 1024;
+
+  private final ByteBuffer slab;
+  private final int blockSize;
+  private final int[] freeBlocks;
+  private int freeCount;
+  private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+  private long uncached = 0;
+
+  public PayloadCache(int capacity, int blockSize) {
+    Preconditions.checkArgument(blockSize >= 4, "Block size must hold any encoded character: %s", blockSize);
+    Preconditions.checkArgument(capacity >= blockSize, "Capacity must hold at least one block: %s", capacity);
+    this.blockSize = blockSize;
+    this.freeBlocks = new int[capacity / blockSize];
+    this.freeCount = freeBlocks.length;
+    for (int i = 0; i < freeCount; i++) {
+      // first blocks taken first
+      freeBlocks[i] = freeCount - 1 - i;
+    }
+    this.slab = ByteBuffer.allocateDirect(freeBlocks.length * blockSize);
+  }
+
+  public PayloadCache(int capacity) {
+    this(capacity, DEFAULT_BLOCK_SIZE);
+  }
+
+  /**
+   * @return the payload, to be closed once written, or null if not cached
+   */
+  @CheckForNull
+  public synchronized Payload acquire(String key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses++;
+      return null;
+    }
+    hits++;
+    return new Payload(entry);
+  }
+
+  public synchronized boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  /**
+   * Encode the content out of the heap, replacing any payload cached for the key. Content too large for the cache, or
+   * not fitting because the other payloads are being read, is returned without being cached.
+   *
+   * @return the payload, to be closed once written
+   */
+  public Payload put(String key, CharSequence content) {
+    int length;
+    try {
+      length = Utf8.encodedLength(content);
+    } catch (IllegalArgumentException e) {
+      // unpaired surrogate, replaced by the encoder of the heap buffer
+      return uncached(content);
+    }
+    int blockCount = Math.max(1, (length + blockSize - 1) / blockSize);
+    int[] blocks = allocate(blockCount);
+    if (blocks == null) {
+      return uncached(content);
+    }
+    // encoded outside of the lock, the blocks being owned by this call until published
+    Entry entry = new Entry(key, blocks, length);
+    encode(content, entry);
+    synchronized (this) {
+      Payload payload = new Payload(entry);
+      Entry previous = entries.put(key, entry);
+      if (previous != null) {
+        evict(previous);
+      }
+      return payload;
+    }
+  }
+
+  public synchronized void invalidateAll() {
+    new ArrayList<>(entries.values()).forEach(entry -> {
+      entries.remove(entry.key);
+      evict(entry);
+    });
+  }
+
+  public synchronized PayloadCacheDto stats() {
+    long capacity = (long) freeBlocks.length * blockSize;
+    long used = (long) (freeBlocks.length - freeCount) * blockSize;
+    long bytes = entries.values().stream().mapToLong(entry -> entry.length).sum();
+    return new PayloadCacheDto(capacity, used, bytes, entries.size(), hits, misses, evictions, uncached);
+  }
+
+  @CheckForNull
+  private synchronized int[] allocate(int blockCount) {
+    if (blockCount > freeBlocks.length) {
+      return null;
+    }
+    Iterator<Entry> lru = entries.values().iterator();
+    while (freeCount < blockCount && lru.hasNext()) {
+      Entry entry = lru.next();
+      lru.remove();
+      evict(entry);
+    }
+    if (freeCount < blockCount) {
+      // remaining blocks are held by payloads being written to responses
+      return null;
+    }
+    int[] blocks = new int[blockCount];
+    for (int i = 0; i < blockCount; i++) {
+      freeCount--;
+      blocks[i] = freeBlocks[freeCount];
+    }
+    return blocks;
+  }
+
+  private void evict(Entry entry) {
+    evictions++;
+    entry.evicted = true;
+    if (entry.readers == 0) {
+      release(entry);
+    }
+  }
+
+  private void release(Entry entry) {
+    for (int block : entry.blocks) {
+      freeBlocks[freeCount] = block;
+      freeCount++;
+    }
+  }
+
+  private synchronized void close(Entry entry) {
+    entry.readers--;
+    if (entry.readers == 0 && entry.evicted) {
+      release(entry);
+    }
+  }
+
+  /**
+   * Encode by chunks through a small buffer, characters encoded in several bytes being split across blocks
+   */
+  private void encode(CharSequence content, Entry entry) {
+    CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    CharBuffer input = CharBuffer.wrap(content);
+    ByteBuffer chunk = ByteBuffer.allocate(ENCODING_CHUNK_SIZE);
+    int block = 0;
+    ByteBuffer output = block(entry.blocks[block]);
+    CoderResult result;
+    do {
+      result = encoder.encode(input, chunk, true);
+      Preconditions.checkState(!result.isError(), "Unable to encode payload: %s", result);
+      chunk.flip();
+      while (chunk.hasRemaining()) {
+        if (!output.hasRemaining()) {
+          block++;
+          output = block(entry.blocks[block]);
+        }
+        int count = Math.min(chunk.remaining(), output.remaining());
+        ByteBuffer part = chunk.duplicate();
+        part.limit(part.position() + count);
+        output.put(part);
+        chunk.position(chunk.position() + count);
+      }
+      chunk.clear();
+    } while (result.isOverflow());
+  }
+
+  private ByteBuffer block(int block) {
+    ByteBuffer result = slab.duplicate();
+    result.position(block * blockSize);
+    result.limit((block + 1) * blockSize);
+    return result.slice();
+  }
+
+  private Payload uncached(CharSequence content) {
+    synchronized (this) {
+      uncached++;
+    }
+    return new Payload(StandardCharsets.UTF_8.encode(CharBuffer.wrap(content)));
+  }
+
+  private static class Entry {
+    private final String key;
+    private final int[] blocks;
+    private final int length;
+    private int readers = 0;
+    private boolean evicted = false;
+
+    Entry(String key, int[] blocks, int length) {
+      this.key = key;
+      this.blocks = blocks;
+      this.length = length;
+    }
+  }
+
+  /**
+   * Payload being read, whose blocks are not reused until closed
+   */
+  public class Payload implements AutoCloseable {
+    @CheckForNull
+    private final Entry entry;
+    private final List<ByteBuffer> buffers;
+    private final int length;
+    private boolean closed = false;
+
+    private Payload(Entry entry) {
+      this.entry = entry;
+      this.length = entry.length;
+      entry.readers++;
+      List<ByteBuffer> result = new ArrayList<>(entry.blocks.length);
+      int remaining = entry.length;
+      for (int block : entry.blocks) {
+        ByteBuffer buffer = block(block).asReadOnlyBuffer();
+        buffer.limit(Math.min(remaining, blockSize));
+        remaining -= buffer.limit();
+        result.add(buffer);
+      }
+      this.buffers = Collections.unmodifiableList(result);
+    }
+
+    private Payload(ByteBuffer content) {
+      this.entry = null;
+      this.length = content.remaining();
+      this.buffers = Collections.singletonList(content.asReadOnlyBuffer());
+    }
+
+    public int length() {
+      return length;
+    }
+
+    /**
+     * @return the successive parts of the payload, as read-only buffers positioned at their start
+     */
+    public List<ByteBuffer> buffers() {
+      List<ByteBuffer> result = new ArrayList<>(buffers.size());
+      buffers.forEach(buffer -> result.add(buffer.duplicate()));
+      return result;
+    }
+
+    public boolean isCached() {
+      return entry != null;
+    }
+
+    @Override
+    public void close() {
+      synchronized (PayloadCache.this) {
+        if (!closed && entry != null) {
+          PayloadCache.this.close(entry);
+        }
+        closed = true;
+      }
+    }
+  }
+}
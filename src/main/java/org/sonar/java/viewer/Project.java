@@ -0,0 +1,219 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.java.bytecode.loader.SquidClassLoader;
+import org.sonar.java.resolve.ProjectSemanticModel;
+import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.viewer.dto.ProjectDto;
+import org.sonar.java.viewer.dto.ProjectFileDto;
+import org.sonar.java.viewer.dto.ProjectMethodDto;
+import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+
+/**
+ * Several compilation units analyzed together, sharing a single semantic model.
+ */
+public class Project {
+
+  private static final String JAVA_EXTENSION = ".java";
+  private static final String ZIP_EXTENSION = ".zip";
+
+  public final String id;
+  public final SemanticModel semanticModel;
+  public final Workspace workspace;
+  private final Map<String, String> sources;
+  private final Map<String, CompilationUnitTree> cuts = new LinkedHashMap<>();
+  private final Map<String, ServerTiming> fileTimings = new LinkedHashMap<>();
+  private final Map<String, Method> methods = new LinkedHashMap<>();
+
+  /**
+   * @param sources content of the files, by file name
+   */
+  public Project(Map<String, String> sources, ServerTiming timing) {
+    this(sources, Workspace.defaultWorkspace(), timing);
+  }
+
+  /**
+   * @param sources content of the files, by file name
+   * @param workspace workspace providing the dependencies of the project
+   */
+  public Project(Map<String, String> sources, Workspace workspace, ServerTiming timing) {
+    Preconditions.checkArgument(!sources.isEmpty(), "No java file provided.");
+    this.id = UUID.randomUUID().toString();
+    this.workspace = workspace;
+    this.sources = sources;
+    sources.keySet().forEach(fileName -> fileTimings.put(fileName, new ServerTiming()));
+
+    // each parsing thread uses its own parser
+    List<String> fileNames = new ArrayList<>(sources.keySet());
+    List<CompilationUnitTree> parsedFiles = timing.measure("parse", () -> fileNames.parallelStream()
+      .map(fileName -> fileTimings.get(fileName).measure("parse", () -> Viewer.Base.parse(sources.get(fileName))))
+      .collect(Collectors.toList()));
+    for (int i = 0; i < fileNames.size(); i++) {
+      cuts.put(fileNames.get(i), parsedFiles.get(i));
+    }
+
+    SquidClassLoader classLoader = timing.measure("classpath", workspace::classLoader);
+    this.semanticModel = timing.measure("semantic", () -> {
+      ProjectSemanticModel projectSemanticModel = new ProjectSemanticModel(classLoader);
+      // all the files have to be indexed before resolving any of them
+      cuts.forEach((fileName, cut) -> fileTimings.get(fileName).measure("index", () -> projectSemanticModel.index(cut)));
+      cuts.forEach((fileName, cut) -> fileTimings.get(fileName).measure("resolve", () -> projectSemanticModel.resolve(cut)));
+      return projectSemanticModel.semanticModel();
+    });
+
+    cuts.forEach((fileName, cut) -> new MethodCollector(fileName).collect(cut));
+  }
+
+  /**
+   * Read the java files from an uploaded file, which can be a single java file or a zip archive
+   * @return the content of the java files, by file name
+   */
+  public static Map<String, String> readSources(String fileName, InputStream inputStream) throws IOException {
+    Map<String, String> result = new LinkedHashMap<>();
+    if (fileName.endsWith(ZIP_EXTENSION)) {
+      ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        if (!entry.isDirectory() && entry.getName().endsWith(JAVA_EXTENSION)) {
+          result.put(entry.getName(), read(zipInputStream));
+        }
+      }
+    } else if (fileName.endsWith(JAVA_EXTENSION)) {
+      result.put(fileName, read(inputStream));
+    }
+    return result;
+  }
+
+  private static String read(InputStream inputStream) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = inputStream.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param methodKey key of a method of the project, the first method of the project being analyzed when null
+   */
+  public Viewer.Base base(@Nullable String methodKey, ServerTiming timing) {
+    Method method = method(methodKey);
+    Preconditions.checkNotNull(method, "Unable to find a method/constructor in project.");
+    return new Viewer.Base(cuts.get(method.fileName), semanticModel, method.tree, timing);
+  }
+
+  /**
+   * @return the method with the given key, or the first method of the project when the key is null
+   */
+  @CheckForNull
+  public Method method(@Nullable String methodKey) {
+    if (methodKey == null) {
+      return methods.values().stream().findFirst().orElse(null);
+    }
+    return methods.get(methodKey);
+  }
+
+  public String source(String fileName) {
+    return sources.get(fileName);
+  }
+
+  public ProjectDto details(@Nullable Method selected) {
+    List<ProjectFileDto> files = fileTimings.entrySet().stream()
+      .map(entry -> new ProjectFileDto(entry.getKey(), entry.getValue().durations()))
+      .collect(Collectors.toList());
+    List<ProjectMethodDto> methodDtos = methods.values().stream()
+      .map(method -> new ProjectMethodDto(method.key, method.label, method.fileName))
+      .collect(Collectors.toList());
+    return new ProjectDto(id, selected == null ? null : selected.key, files, methodDtos);
+  }
+
+  public static class Method {
+    public final String key;
+    public final String label;
+    public final String fileName;
+    public final MethodTree tree;
+
+    private Method(String fileName, String className, MethodTree tree) {
+      SyntaxToken name = tree.simpleName().firstToken();
+      int line = name.line();
+      // several methods can be declared on the same line
+      this.key = fileName + ":" + line + ":" + name.column();
+      this.label = className + "#" + tree.simpleName().name() + " L#" + line;
+      this.fileName = fileName;
+      this.tree = tree;
+    }
+  }
+
+  private class MethodCollector extends BaseTreeVisitor {
+
+    private final String fileName;
+    private final Deque<String> classNames = new ArrayDeque<>();
+
+    MethodCollector(String fileName) {
+      this.fileName = fileName;
+    }
+
+    void collect(CompilationUnitTree cut) {
+      scan(cut);
+    }
+
+    @Override
+    public void visitClass(ClassTree tree) {
+      IdentifierTree simpleName = tree.simpleName();
+      String name = simpleName == null ? "<anonymous>" : simpleName.name();
+      classNames.push(classNames.isEmpty() ? name : (classNames.peek() + "." + name));
+      super.visitClass(tree);
+      classNames.pop();
+    }
+
+    @Override
+    public void visitMethod(MethodTree tree) {
+      // methods of local and anonymous classes are not listed
+      if (tree.block() != null) {
+        Method method = new Method(fileName, classNames.peek(), tree);
+        methods.put(method.key, method);
+      }
+    }
+  }
+}
@@ -0,0 +1,423 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.zip.CRC32;
+import javax.annotation.CheckForNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only store of analysis results, persisted in memory-mapped segment files so that results survive restarts.
+ *
+ * Each segment is a file of fixed size, filled with records: [length][crc][version length][version][key length][key][payload],
+ * a zero length marking the end of the written records. The index of the records is rebuilt when opening the store,
+ * a record written with another version of SonarJava, or replaced by a more recent record with the same key, being stale.
+ *
+ * The number of segments is bounded: when a new segment would exceed the maximum size of the store, the segments are
+ * compacted one at a time, the least recently used results being dropped first when live records outweigh stale ones,
+ * so that a result is never delayed by the copy of more than one segment.
+ */
+public class ResultStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResultStore.class);
+  private static final String SONAR_JAVA_POM = "/META-INF/maven/org.sonarsource.java/java-frontend/pom.properties";
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".dat";
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+  static final long DEFAULT_MAX_SIZE = 16L * DEFAULT_SEGMENT_SIZE;
+  private static final int MIN_SEGMENTS = 2;
+  // length and crc
+  private static final int RECORD_HEADER_SIZE = 8;
+
+  private final Path directory;
+  private final String version;
+  private final int segmentSize;
+  private final int maxSegments;
+  private final List<Segment> segments = new ArrayList<>();
+  /**
+   * Live records, in access order
+   */
+  private final Map<String, Record> index = new LinkedHashMap<>(16, 0.75f, true);
+  private int nextSegmentNumber = 0;
+  private long staleBytes = 0;
+  private long liveBytes = 0;
+
+  public ResultStore(Path directory, String version, int segmentSize) throws IOException {
+    this(directory, version, segmentSize, DEFAULT_MAX_SIZE);
+  }
+
+  /**
+   * Open the store, rebuilding its index from the segments found in the directory, and compact it when more than half
+   * of its content is stale or when it exceeds its maximum size
+   *
+   * @param maxSize maximum size of the segment files, in bytes, at least two segments
+   */
+  public ResultStore(Path directory, String version, int segmentSize, long maxSize) throws IOException {
+    Preconditions.checkArgument(maxSize >= MIN_SEGMENTS * (long) segmentSize, "Maximum size must hold %s segments: %s", MIN_SEGMENTS, maxSize);
+    this.directory = directory;
+    this.version = version;
+    this.segmentSize = segmentSize;
+    this.maxSegments = (int) Math.min(Integer.MAX_VALUE, maxSize / segmentSize);
+    Files.createDirectories(directory);
+    for (Path path : segmentFiles()) {
+      Segment segment = new Segment(path, segmentSize);
+      segments.add(segment);
+      segment.scan();
+      nextSegmentNumber = segment.number() + 1;
+    }
+    LOGGER.info("Result store opened with {} results, {} stale bytes", index.size(), staleBytes);
+    if (staleBytes > liveBytes) {
+      compact();
+    }
+    makeRoom(0);
+  }
+
+  public static ResultStore open(Path directory, long maxSize) throws IOException {
+    return new ResultStore(directory, sonarJavaVersion(), DEFAULT_SEGMENT_SIZE, maxSize);
+  }
+
+  /**
+   * @return version of the SonarJava analyzer producing the results, as found in its jar
+   */
+  public static String sonarJavaVersion() {
+    Properties properties = new Properties();
+    try (InputStream inputStream = ResultStore.class.getResourceAsStream(SONAR_JAVA_POM)) {
+      if (inputStream != null) {
+        properties.load(inputStream);
+      }
+    } catch (IOException e) {
+      LOGGER.warn("Unable to read version of SonarJava.", e);
+    }
+    return properties.getProperty("version", "unknown");
+  }
+
+  /**
+   * @return a read-only view of the stored payload, directly backed by the mapped segment, or null if no result is stored for the key
+   */
+  @CheckForNull
+  public synchronized ByteBuffer get(String key) {
+    Record record = index.get(key);
+    return record == null ? null : record.payload();
+  }
+
+  /**
+   * Append the result, making room first when a new segment would exceed the maximum size of the store
+   */
+  public synchronized void put(String key, byte[] payload) {
+    int length = recordLength(key, payload);
+    if (length > segmentSize - 4) {
+      LOGGER.debug("Result too large to be stored: {} bytes", length);
+      return;
+    }
+    try {
+      makeRoom(length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    append(key, payload);
+  }
+
+  private void append(String key, byte[] payload) {
+    index(write(key, payload));
+  }
+
+  private Record write(String key, byte[] payload) {
+    int length = recordLength(key, payload);
+    Segment segment = lastSegmentHasRoom(length) ? segments.get(segments.size() - 1) : newSegment();
+    return segment.append(version.getBytes(StandardCharsets.UTF_8), key.getBytes(StandardCharsets.UTF_8), payload);
+  }
+
+  private int recordLength(String key, byte[] payload) {
+    return RECORD_HEADER_SIZE + 4 + version.getBytes(StandardCharsets.UTF_8).length + 4 + key.getBytes(StandardCharsets.UTF_8).length + payload.length;
+  }
+
+  private boolean lastSegmentHasRoom(int length) {
+    return !segments.isEmpty() && segments.get(segments.size() - 1).hasRoom(length);
+  }
+
+  /**
+   * Compact the segments one at a time while a record of the given length would require a segment beyond the maximum
+   * size, dropping first the least recently used results until the live records fit in half of the segments
+   */
+  private void makeRoom(int length) throws IOException {
+    long target = (maxSegments / 2) * (long) (segmentSize - 4);
+    while (segments.size() > maxSegments || (segments.size() == maxSegments && !lastSegmentHasRoom(length))) {
+      if (staleBytes <= liveBytes) {
+        evictLeastRecentlyUsed(target);
+        // records do not fill the segments exactly
+        target /= 2;
+      }
+      compact(mostStaleSegment());
+    }
+  }
+
+  /**
+   * @return the segment with the most stale bytes, other than the last one where the live records are moved
+   */
+  private Segment mostStaleSegment() {
+    Segment result = segments.get(0);
+    for (Segment segment : segments.subList(1, segments.size() - 1)) {
+      if (segment.staleBytes() > result.staleBytes()) {
+        result = segment;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Move the live records of the segment to the last one, keeping their access order, and delete it. Payloads previously
+   * returned remain readable.
+   */
+  private void compact(Segment segment) throws IOException {
+    segments.remove(segment);
+    staleBytes -= segment.staleBytes();
+    for (Record record : index.values()) {
+      if (record.segment == segment) {
+        ByteBuffer payload = record.payload();
+        byte[] bytes = new byte[payload.remaining()];
+        payload.get(bytes);
+        // moved in place, as putting it again in the index would make it the most recently used
+        record.moveTo(write(record.key, bytes));
+      }
+    }
+    Files.delete(segment.path);
+    LOGGER.debug("Result store segment compacted: {}", segment.path);
+  }
+
+  private void evictLeastRecentlyUsed(long target) {
+    Iterator<Record> records = index.values().iterator();
+    int evicted = 0;
+    while (liveBytes > target && records.hasNext()) {
+      Record record = records.next();
+      records.remove();
+      record.segment.liveBytes -= record.length;
+      liveBytes -= record.length;
+      staleBytes += record.length;
+      evicted++;
+    }
+    LOGGER.info("Result store full: {} least recently used results dropped", evicted);
+  }
+
+  public synchronized int size() {
+    return index.size();
+  }
+
+  public synchronized long staleBytes() {
+    return staleBytes;
+  }
+
+  public synchronized int segmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Copy the live records to new segments, in access order, and delete the old ones. Payloads previously returned
+   * remain readable.
+   */
+  public synchronized void compact() throws IOException {
+    List<Segment> oldSegments = new ArrayList<>(segments);
+    List<Record> liveRecords = new ArrayList<>(index.values());
+    segments.clear();
+    index.clear();
+    staleBytes = 0;
+    liveBytes = 0;
+    for (Record record : liveRecords) {
+      ByteBuffer payload = record.payload();
+      byte[] bytes = new byte[payload.remaining()];
+      payload.get(bytes);
+      append(record.key, bytes);
+    }
+    for (Segment segment : oldSegments) {
+      Files.delete(segment.path);
+    }
+    LOGGER.info("Result store compacted: {} results in {} segments", index.size(), segments.size());
+  }
+
+  private Segment newSegment() {
+    Path path = directory.resolve(String.format(Locale.ROOT, "%s%08d%s", SEGMENT_PREFIX, nextSegmentNumber, SEGMENT_SUFFIX));
+    nextSegmentNumber++;
+    try {
+      Segment segment = new Segment(path, segmentSize);
+      segments.add(segment);
+      return segment;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private List<Path> segmentFiles() throws IOException {
+    List<Path> result = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      stream.forEach(result::add);
+    }
+    result.sort(null);
+    return result;
+  }
+
+  private void index(Record record) {
+    Record previous = index.put(record.key, record);
+    if (previous != null) {
+      previous.segment.liveBytes -= previous.length;
+      staleBytes += previous.length;
+      liveBytes -= previous.length;
+    }
+    record.segment.liveBytes += record.length;
+    liveBytes += record.length;
+  }
+
+  private static int crc(ByteBuffer buffer, int offset, int length) {
+    ByteBuffer content = buffer.duplicate();
+    content.position(offset);
+    content.limit(offset + length);
+    CRC32 crc = new CRC32();
+    crc.update(content);
+    return (int) crc.getValue();
+  }
+
+  private class Segment {
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private int position = 0;
+    private long liveBytes = 0;
+
+    Segment(Path path, int size) throws IOException {
+      this.path = path;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        Preconditions.checkState(channel.size() <= size, "Segment larger than expected: %s", path);
+        // the mapping extends the file, and remains valid once the channel is closed
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    }
+
+    int number() {
+      String fileName = path.getFileName().toString();
+      return Integer.parseInt(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    long staleBytes() {
+      return position - liveBytes;
+    }
+
+    boolean hasRoom(int length) {
+      // keep room for the end marker
+      return position + length + 4 <= buffer.capacity();
+    }
+
+    void scan() {
+      while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+        int length = buffer.getInt(position);
+        if (length <= RECORD_HEADER_SIZE || position + length > buffer.capacity()
+          || buffer.getInt(position + 4) != crc(buffer, position + RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE)) {
+          // end of the records, or record partially written before a crash which is overwritten by next append
+          break;
+        }
+        Record record = read(position, length);
+        if (version.equals(record.version)) {
+          index(record);
+        } else {
+          staleBytes += length;
+        }
+        position += length;
+      }
+    }
+
+    Record append(byte[] versionBytes, byte[] keyBytes, byte[] payload) {
+      int length = RECORD_HEADER_SIZE + 4 + versionBytes.length + 4 + keyBytes.length + payload.length;
+      ByteBuffer output = buffer.duplicate();
+      output.position(position + RECORD_HEADER_SIZE);
+      output.putInt(versionBytes.length).put(versionBytes);
+      output.putInt(keyBytes.length).put(keyBytes);
+      output.put(payload);
+      // end marker, then header written last so that a partially written record is never read
+      output.putInt(0);
+      buffer.putInt(position + 4, crc(buffer, position + RECORD_HEADER_SIZE, length - RECORD_HEADER_SIZE));
+      buffer.putInt(position, length);
+      Record record = read(position, length);
+      position += length;
+      return record;
+    }
+
+    private Record read(int offset, int length) {
+      ByteBuffer input = buffer.duplicate();
+      input.position(offset + RECORD_HEADER_SIZE);
+      String recordVersion = string(input);
+      String key = string(input);
+      return new Record(this, offset, length, recordVersion, key, input.position() - offset);
+    }
+
+    private String string(ByteBuffer input) {
+      byte[] bytes = new byte[input.getInt()];
+      input.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static class Record {
+    private Segment segment;
+    private int offset;
+    private final int length;
+    private final String version;
+    private final String key;
+    private final int payloadOffset;
+
+    Record(Segment segment, int offset, int length, String version, String key, int payloadOffset) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.version = version;
+      this.key = key;
+      this.payloadOffset = payloadOffset;
+    }
+
+    void moveTo(Record copy) {
+      segment.liveBytes -= length;
+      copy.segment.liveBytes += length;
+      segment = copy.segment;
+      offset = copy.offset;
+    }
+
+    ByteBuffer payload() {
+      ByteBuffer payload = segment.buffer.asReadOnlyBuffer();
+      payload.position(offset + payloadOffset);
+      payload.limit(offset + length);
+      return payload.slice();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Durations of the successive stages of an analysis, in order of first occurrence.
+ * See specification of the header: https://www.w3.org/TR/server-timing/
+ */
+public class ServerTiming {
+
+  public static final String HEADER = "Server-Timing";
+
+  private final Map<String, Long> durations = new LinkedHashMap<>();
+
+  public <T> T measure(String stage, Supplier<T> supplier) {
+    long start = System.nanoTime();
+    try {
+      return supplier.get();
+    } finally {
+      add(stage, System.nanoTime() - start);
+    }
+  }
+
+  public void measure(String stage, Runnable runnable) {
+    measure(stage, () -> {
+      runnable.run();
+      return null;
+    });
+  }
+
+  /**
+   * Stages measured several times are cumulated
+   */
+  public synchronized void add(String stage, long durationInNanos) {
+    durations.merge(stage, durationInNanos, Long::sum);
+  }
+
+  /**
+   * @return the duration of each stage, in milliseconds
+   */
+  public synchronized Map<String, Double> durations() {
+    Map<String, Double> result = new LinkedHashMap<>();
+    durations.forEach((stage, nanos) -> result.put(stage, toMillis(nanos)));
+    return result;
+  }
+
+  /**
+   * @return the value of the header, as "stage;dur=12.345" entries separated by commas
+   */
+  public String toHeader() {
+    return durations().entrySet().stream()
+      .map(entry -> String.format(Locale.ROOT, "%s;dur=%.3f", entry.getKey(), entry.getValue()))
+      .collect(Collectors.joining(", "));
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
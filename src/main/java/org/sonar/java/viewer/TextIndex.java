@@ -0,0 +1,209 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import org.sonar.java.viewer.dto.MatchesDto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trigram index of the labels and details of the nodes and edges of a graph. Candidates are the documents having all
+ * the trigrams of the searched text, then checked to actually contain it, and ranked: documents having the searched
+ * text as a token come first, followed by documents having a token starting with it, and documents containing it in
+ * their label.
+ */
+public class TextIndex {
+
+  private static final int GRAM = 3;
+
+  private final List<Document> documents;
+  private final Map<Long, int[]> postings = new HashMap<>();
+
+  TextIndex(List<Document> documents) {
+    this.documents = documents;
+    Map<Long, Postings> builders = new HashMap<>();
+    for (int i = 0; i < documents.size(); i++) {
+      String text = documents.get(i).text;
+      for (int start = 0; start + GRAM <= text.length(); start++) {
+        builders.computeIfAbsent(gram(text, start), g -> new Postings()).add(i);
+      }
+    }
+    builders.forEach((gram, builder) -> postings.put(gram, builder.toArray()));
+  }
+
+  /**
+   * Searched text is not case sensitive
+   * @param limit maximum number of nodes and of edges
+   */
+  public MatchesDto search(String text, int limit) {
+    String searched = text.trim().toLowerCase(Locale.ROOT);
+    Preconditions.checkArgument(!searched.isEmpty(), "A text to search is required.");
+    Preconditions.checkArgument(limit > 0, "Limit must be positive.");
+
+    List<Match> matches = new ArrayList<>();
+    for (int candidate : candidates(searched)) {
+      Document document = documents.get(candidate);
+      if (document.text.contains(searched)) {
+        matches.add(new Match(document, rank(document, searched)));
+      }
+    }
+    matches.sort(Comparator.comparingInt(match -> match.rank));
+
+    List<Integer> nodes = new ArrayList<>();
+    List<int[]> edges = new ArrayList<>();
+    for (Match match : matches) {
+      Document document = match.document;
+      if (document.isNode() && nodes.size() < limit) {
+        nodes.add(document.from);
+      } else if (!document.isNode() && edges.size() < limit) {
+        edges.add(new int[] {document.from, document.to});
+      }
+    }
+    return new MatchesDto(nodes, edges);
+  }
+
+  private int[] candidates(String searched) {
+    if (searched.length() < GRAM) {
+      int[] all = new int[documents.size()];
+      Arrays.setAll(all, i -> i);
+      return all;
+    }
+    List<int[]> lists = new ArrayList<>();
+    for (int start = 0; start + GRAM <= searched.length(); start++) {
+      int[] ids = postings.get(gram(searched, start));
+      if (ids == null) {
+        return new int[0];
+      }
+      lists.add(ids);
+    }
+    // intersect from the most selective trigram
+    lists.sort(Comparator.comparingInt(ids -> ids.length));
+    int[] result = lists.get(0);
+    for (int i = 1; i < lists.size() && result.length > 0; i++) {
+      result = intersect(result, lists.get(i));
+    }
+    return result;
+  }
+
+  private static int[] intersect(int[] ids1, int[] ids2) {
+    int[] result = new int[Math.min(ids1.length, ids2.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < ids1.length && j < ids2.length) {
+      if (ids1[i] < ids2[j]) {
+        i++;
+      } else if (ids1[i] > ids2[j]) {
+        j++;
+      } else {
+        result[size++] = ids1[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static int rank(Document document, String searched) {
+    int rank = document.label.contains(searched) ? 2 : 3;
+    String text = document.text;
+    for (int start = text.indexOf(searched); start >= 0; start = text.indexOf(searched, start + 1)) {
+      int end = start + searched.length();
+      if (start == 0 || !isTokenPart(text.charAt(start - 1))) {
+        if (end == text.length() || !isTokenPart(text.charAt(end))) {
+          return 0;
+        }
+        rank = 1;
+      }
+    }
+    return rank;
+  }
+
+  private static boolean isTokenPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '$' || c == '#';
+  }
+
+  private static long gram(String text, int start) {
+    return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+  }
+
+  static class Document {
+    private final int from;
+    private final int to;
+    private final String label;
+    private final String text;
+
+    private Document(int from, int to, String label, String details) {
+      this.from = from;
+      this.to = to;
+      this.label = label.toLowerCase(Locale.ROOT);
+      this.text = this.label + "\n" + details.toLowerCase(Locale.ROOT);
+    }
+
+    static Document node(int id, String label, String details) {
+      return new Document(id, -1, label, details);
+    }
+
+    static Document edge(int from, int to, String label, String details) {
+      return new Document(from, to, label, details);
+    }
+
+    private boolean isNode() {
+      return to < 0;
+    }
+  }
+
+  private static class Match {
+    private final Document document;
+    private final int rank;
+
+    private Match(Document document, int rank) {
+      this.document = document;
+      this.rank = rank;
+    }
+  }
+
+  private static class Postings {
+    private int[] ids = new int[4];
+    private int size = 0;
+
+    private void add(int id) {
+      // documents are indexed in order: a document having several times the same trigram is only added once
+      if (size > 0 && ids[size - 1] == id) {
+        return;
+      }
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+
+    private int[] toArray() {
+      return Arrays.copyOf(ids, size);
+    }
+  }
+}
@@ -21,48 +21,80 @@ package org.sonar.java.viewer;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import com.sonar.sslr.api.typed.ActionParser;
-import java.io.File;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import javax.servlet.MultipartConfigElement;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Part;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.java.ast.ASTDotGraph;
+import org.sonar.java.ast.TokenFingerprint;
 import org.sonar.java.ast.parser.JavaParser;
 import org.sonar.java.bytecode.loader.SquidClassLoader;
+import org.sonar.java.callgraph.CallGraphDotGraph;
 import org.sonar.java.cfg.CFG;
 import org.sonar.java.cfg.CFGDotGraph;
 import org.sonar.java.cfg.CFGPrinter;
 import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.se.EGDiffDotGraph;
 import org.sonar.java.se.EGDotGraph;
+import org.sonar.java.se.EGIndex;
+import org.sonar.java.se.EGPaths;
+import org.sonar.java.se.EGStream;
+import org.sonar.java.viewer.dto.CommonDto;
+import org.sonar.java.viewer.dto.GraphBatchDto;
+import org.sonar.java.viewer.dto.GraphsDto;
+import org.sonar.java.viewer.dto.MatchesDto;
+import org.sonar.java.viewer.dto.ReadinessDto;
+import org.sonar.java.viewer.dto.StreamedGraphDto;
+import org.sonar.java.viewer.dto.ViewDto;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.Tree;
 import spark.ModelAndView;
 import spark.Request;
+import spark.Response;
 import spark.template.velocity.VelocityTemplateEngine;
 import spark.utils.IOUtils;
 
 import static spark.Spark.awaitInitialization;
 import static spark.Spark.exception;
 import static spark.Spark.get;
+import static spark.Spark.halt;
 import static spark.Spark.port;
 import static spark.Spark.post;
+import static spark.Spark.put;
 import static spark.Spark.staticFiles;
 
 public class Viewer {
@@ -70,66 +102,798 @@ public class Viewer {
   private static final Logger LOGGER = LoggerFactory.getLogger(Viewer.class);
   private static final String DEFAULT_SOURCE_CODE = fileContent("/public/example/example.java");
   private static final int DEFAULT_PORT = 9999;
+  private static final int DEFAULT_WARM_UP_ROUNDS = 3;
+  private static final long DEFAULT_STORE_SIZE_MB = 1024;
+  private static final int DEFAULT_CLUSTERING_THRESHOLD = 1000;
+  private static final String MULTIPART_CONFIG = "org.eclipse.jetty.multipartConfig";
+  private static final String JSON_CONTENT_TYPE = "application/json";
+  private static final String GRAPHML_FORMAT = "graphml";
+  private static final String BINARY_FORMAT = "binary";
+  private static final String ALL_STAGE = "all";
+  private static final String SYNTAX_STAGE = "syntax";
+  private static final String EXPLORATION_STAGE = "exploration";
+  private static final String DOT_CONTENT_TYPE = "text/vnd.graphviz; charset=utf-8";
+  private static final String EVENT_STREAM_CONTENT_TYPE = "text/event-stream; charset=utf-8";
+  private static final long STREAM_BATCH_INTERVAL_MILLIS = 100;
+  private static final int MAX_PROJECTS = 16;
+  private static final Map<String, Project> PROJECTS = Collections.synchronizedMap(new LinkedHashMap<String, Project>(MAX_PROJECTS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Project> eldest) {
+      return size() > MAX_PROJECTS;
+    }
+  });
+  private static final int MAX_ANALYSES = 32;
+  /**
+   * Recent analyses of the pages, whose graphs are computed when first shown
+   */
+  private static final Map<String, Analysis> ANALYSES = Collections.synchronizedMap(new LinkedHashMap<String, Analysis>(MAX_ANALYSES, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Analysis> eldest) {
+      return size() > MAX_ANALYSES;
+    }
+  });
+  private static final int MAX_GRAPHS = 32;
+  private static final String RETRY_AFTER_SECONDS = "5";
+  private static final String DEFAULT_SEARCH_LIMIT = "50";
+  private static final String DEFAULT_MAX_PATHS = "10";
+  private static final String DEFAULT_MAX_PATH_LENGTH = "1000";
+  /**
+   * Recently computed graphs, identified by the hash of their DOT representation, kept to answer queries from the pages
+   */
+  private static final Map<String, DotGraph> GRAPHS = Collections.synchronizedMap(new LinkedHashMap<String, DotGraph>(MAX_GRAPHS, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, DotGraph> eldest) {
+      return size() > MAX_GRAPHS;
+    }
+  });
+  /**
+   * Symbolic executions are admitted within a part of the heap (viewer.heap.budget), caches being shrunk first
+   */
+  static final AdmissionControl ADMISSION = admissionControl();
+  private static final int DEFAULT_PAYLOADS_SIZE_MB = 64;
+  /**
+   * Serialized views of the analyses, kept out of the heap (viewer.payloads.size, in MB)
+   */
+  static final PayloadCache PAYLOADS = new PayloadCache(Integer.getInteger("viewer.payloads.size", DEFAULT_PAYLOADS_SIZE_MB) * 1024 * 1024);
+
+  @CheckForNull
+  private static ResultStore resultStore;
+  @CheckForNull
+  private static WarmUp warmUp;
 
   private Viewer() {
   }
 
-  public static void main(String[] args) {
-    startWebServer(DEFAULT_PORT, DEFAULT_SOURCE_CODE);
+  public static void main(String[] args) throws IOException {
+    ResultStore store = ResultStore.open(Paths.get(System.getProperty("viewer.store", "target/store")),
+      Long.getLong("viewer.store.size", DEFAULT_STORE_SIZE_MB) * 1024 * 1024);
+    startWebServer(DEFAULT_PORT, DEFAULT_SOURCE_CODE, store, Integer.getInteger("viewer.warmup.rounds", DEFAULT_WARM_UP_ROUNDS));
+    if (Boolean.getBoolean("viewer.warmup.exit")) {
+      // used to record the classes loaded by the warm-up in a class data sharing archive
+      warmUp.run();
+      System.exit(0);
+    }
   }
 
   @VisibleForTesting
   static void startWebServer(int port, String defaultSourceCode) {
+    startWebServer(port, defaultSourceCode, null, 0);
+  }
+
+  /**
+   * @param store store of the rendered results, reused instead of analyzing again the same source code
+   * @param warmUpRounds number of times the warm-up corpus is analyzed before reporting the server as ready
+   */
+  @VisibleForTesting
+  static void startWebServer(int port, String defaultSourceCode, @Nullable ResultStore store, int warmUpRounds) {
+    resultStore = store;
+    warmUp = new WarmUp(defaultSourceCode, warmUpRounds);
     // print all exceptions
     exception(Exception.class, (e, req, res) -> LOGGER.error("Unexpected exception.", e));
 
     staticFiles.location("/public");
     port(port);
 
-    get("/", (req, res) -> generate(defaultSourceCode));
-    post("/", (req, res) -> generate(req, defaultSourceCode));
+    get("/", (req, res) -> generate(defaultSourceCode, Workspace.defaultWorkspace(), res));
+    post("/", (req, res) -> generate(req, res, defaultSourceCode));
+    post("/graphs", (req, res) -> generateGraphs(req, res, defaultSourceCode));
+
+    post("/diff", Viewer::diff);
+    post("/stream", Viewer::streamGraph);
+    get("/analysis/:id/:view", Viewer::view);
+    post("/analysis/:id/:view", Viewer::view);
+
+    post("/project", Viewer::createProject);
+    get("/project/:id", (req, res) -> generate(getProject(req.params("id")), req.queryParams("method"), res));
+
+    put("/workspace/:id/jars/:name", Viewer::addJar);
+    get("/ready", Viewer::readiness);
+    get("/admission", (req, res) -> {
+      res.type(JSON_CONTENT_TYPE);
+      return ADMISSION.stats().toJson();
+    });
+    get("/payloads", (req, res) -> {
+      res.type(JSON_CONTENT_TYPE);
+      return PAYLOADS.stats().toJson();
+    });
+    get("/parsers", (req, res) -> {
+      res.type(JSON_CONTENT_TYPE);
+      return Base.PARSERS.stats().toJson();
+    });
+    get("/graph/:id/query", Viewer::queryGraph);
+    get("/graph/:id/search", Viewer::searchGraph);
+    get("/graph/:id/path", (req, res) -> queryPaths(req, res, paths -> paths.shortestPath(intParam(req, "to", null))));
+    get("/graph/:id/ancestors", (req, res) -> queryPaths(req, res, paths -> paths.ancestors(intParam(req, "of", null))));
+    get("/graph/:id/profile", Viewer::profileGraph);
+    get("/graph/:id/export", Viewer::exportGraph);
+    get("/graph/:id/exceptional-paths", (req, res) -> queryPaths(req, res,
+      paths -> paths.exceptionalPaths(intParam(req, "maxPaths", DEFAULT_MAX_PATHS), intParam(req, "maxLength", DEFAULT_MAX_PATH_LENGTH))));
+    get("/workspace/:id", (req, res) -> {
+      res.type(JSON_CONTENT_TYPE);
+      return getWorkspace(req.params("id")).details().toJson();
+    });
 
     awaitInitialization();
     LOGGER.info("Viewer at http://localhost:{}", port);
+
+    if (!Boolean.getBoolean("viewer.warmup.exit")) {
+      Thread warmUpThread = new Thread(warmUp::run, "warm-up");
+      warmUpThread.setDaemon(true);
+      warmUpThread.start();
+    }
+  }
+
+  private static AdmissionControl admissionControl() {
+    AdmissionControl admission = AdmissionControl.forHeap(Double.parseDouble(System.getProperty("viewer.heap.budget", "0.8")), Long.getLong("viewer.admission.timeout", 2000));
+    admission.addCacheShrinker(() -> shrink(GRAPHS));
+    // analyses are referenced by the open pages: only the artifacts they computed are released
+    admission.addCacheShrinker(Viewer::releaseAnalysisArtifacts);
+    admission.addCacheShrinker(() -> shrink(PROJECTS));
+    return admission;
   }
 
-  private static String generate(Request request, String defaultSourceCode) {
+  /**
+   * Remove the least recently used half of the entries of the cache
+   */
+  private static void shrink(Map<String, ?> cache) {
+    synchronized (cache) {
+      Iterator<String> keys = cache.keySet().iterator();
+      for (int i = cache.size() / 2; i > 0; i--) {
+        keys.next();
+        keys.remove();
+      }
+    }
+  }
+
+  private static void releaseAnalysisArtifacts() {
+    synchronized (ANALYSES) {
+      ANALYSES.values().forEach(Analysis::releaseArtifacts);
+    }
+  }
+
+  private static void reject(AdmissionControl.RejectedException e, Response response) {
+    response.header("Retry-After", RETRY_AFTER_SECONDS);
+    halt(503, e.getMessage());
+  }
+
+  private static String readiness(Request request, Response response) {
+    WarmUp currentWarmUp = warmUp;
+    boolean ready = currentWarmUp != null && currentWarmUp.isDone();
+    response.status(ready ? 200 : 503);
+    response.type(JSON_CONTENT_TYPE);
+    double warmUpDuration = currentWarmUp == null ? 0 : currentWarmUp.duration();
+    return new ReadinessDto(ready, warmUpDuration, ManagementFactory.getRuntimeMXBean().getUptime()).toJson();
+  }
+
+  private static String generate(Request request, Response response, String defaultSourceCode) {
     String javaCode = request.queryParams("javaCode");
     if (javaCode == null) {
       javaCode = defaultSourceCode;
     }
-    return generate(javaCode);
+    return generate(javaCode, getWorkspace(request.queryParams("workspace")), response);
   }
 
-  private static String generate(String javaCode) {
+  /**
+   * The page only requires the syntax tree, to check that there is a method to analyze: its graphs are then requested
+   * separately, when shown
+   */
+  private static String generate(String javaCode, Workspace workspace, Response response) {
+    ServerTiming timing = new ServerTiming();
+    String result = render(javaCode, getAnalysis(javaCode, workspace), timing);
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    return result;
+  }
+
+  /**
+   * @param analysis analysis of the java code, whose views are requested by the page
+   */
+  static String render(String javaCode, Analysis analysis, ServerTiming timing) {
     Map<String, String> values;
     try {
-      values = getValues(javaCode);
+      Preconditions.checkNotNull(Base.getFirstMethodOrConstructor(analysis.syntaxTree(timing)), "Unable to find a method/constructor in first class.");
+      values = new HashMap<>();
+      values.put("analysis", analysis.id);
+      values.put("errorMessage", "");
+      values.put("errorStackTrace", "");
     } catch (Exception e) {
       values = getErrorValues(e);
     }
-    return renderWithValues(javaCode, values);
+    values.put("workspace", analysis.workspace.id);
+    Map<String, String> finalValues = values;
+    return timing.measure("render", () -> renderWithValues(javaCode, finalValues));
   }
 
-  @VisibleForTesting
-  static Map<String, String> getValues(String javaCode) {
+  /**
+   * The analysis is shared by the requests for the same code, unless jars were added to the workspace since
+   */
+  private static Analysis getAnalysis(String javaCode, Workspace workspace) {
+    String id = Analysis.id(javaCode, workspace);
+    synchronized (ANALYSES) {
+      Analysis analysis = ANALYSES.get(id);
+      if (analysis == null || !analysis.workspaceFingerprint.equals(workspace.fingerprint())) {
+        analysis = new Analysis(javaCode, workspace);
+        ANALYSES.put(id, analysis);
+      }
+      return analysis;
+    }
+  }
+
+  /**
+   * Views computed by a previous run are taken from the store, without their graph being available for queries. Views
+   * are written from the cache of payloads, without being copied back to the heap.
+   */
+  private static String view(Request request, Response response) throws IOException {
+    Analysis analysis = findAnalysis(request);
+    String view = request.params("view");
+    if (!Analysis.VIEWS.contains(view)) {
+      halt(400, String.format("Unknown view: '%s', expected one of %s.", view, Analysis.VIEWS));
+    }
+    ServerTiming timing = new ServerTiming();
+    ResultStore store = resultStore;
+    String storeKey = store != null && !analysis.isCached(view) ? analysis.storeKey(view, timing) : null;
+    if (storeKey != null) {
+      ByteBuffer storedView = timing.measure("store", () -> store.get(storeKey));
+      if (storedView != null) {
+        response.header(ServerTiming.HEADER, timing.toHeader());
+        return send(storedView, JSON_CONTENT_TYPE, response);
+      }
+    }
+    PayloadCache.Payload payload = null;
+    try {
+      payload = analysis.view(view, timing, result -> {
+        // summarized graphs depend on the load of the server
+        if (storeKey != null && !result.summarized) {
+          timing.measure("store", () -> store.put(storeKey, storedView(result.dot, result.text)));
+        }
+      });
+    } catch (AdmissionControl.RejectedException e) {
+      reject(e, response);
+    } catch (Exception e) {
+      halt(400, String.valueOf(e.getMessage()));
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    try (PayloadCache.Payload sent = payload) {
+      return send(sent, JSON_CONTENT_TYPE, response);
+    }
+  }
+
+  /**
+   * Analyses evicted, or made before a restart of the server, are made again from the source posted by the page
+   */
+  private static Analysis findAnalysis(Request request) {
+    String id = request.params("id");
+    Analysis analysis = ANALYSES.get(id);
+    String javaCode = request.queryParams("javaCode");
+    if (analysis == null && javaCode != null) {
+      Workspace workspace = getWorkspace(request.queryParams("workspace"));
+      if (!Analysis.id(javaCode, workspace).equals(id)) {
+        halt(400, "Source does not match analysis: " + id);
+      }
+      analysis = getAnalysis(javaCode, workspace);
+    }
+    if (analysis == null) {
+      halt(404, "Unknown analysis: " + id);
+    }
+    return analysis;
+  }
+
+  /**
+   * Graphs only, for the page to update its graphs in place. The syntax stage only gives the graphs not requiring the
+   * symbolic execution, to be shown first, and the exploration stage the other ones: both stages, requested together,
+   * share the semantic model and CFG of the analysis of the code without computing any graph twice.
+   */
+  private static String generateGraphs(Request request, Response response, String defaultSourceCode) {
+    String javaCode = Optional.ofNullable(request.queryParams("javaCode")).orElse(defaultSourceCode);
+    Workspace workspace = getWorkspace(request.queryParams("workspace"));
+    String stage = Optional.ofNullable(request.queryParams("stage")).orElse(ALL_STAGE);
+    if (!ALL_STAGE.equals(stage) && !SYNTAX_STAGE.equals(stage) && !EXPLORATION_STAGE.equals(stage)) {
+      halt(400, String.format("Unknown stage: '%s', expected '%s', '%s' or '%s'.", stage, ALL_STAGE, SYNTAX_STAGE, EXPLORATION_STAGE));
+    }
+    ServerTiming timing = new ServerTiming();
     Map<String, String> values = new HashMap<>();
+    try {
+      values = getValues(getAnalysis(javaCode, workspace).base(timing), workspace, stage, timing, resultStore);
+    } catch (AdmissionControl.RejectedException e) {
+      reject(e, response);
+    } catch (Exception e) {
+      halt(400, String.valueOf(e.getMessage()));
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(JSON_CONTENT_TYPE);
+    return new GraphsDto(
+      values.get("cfg"),
+      values.get("dotCFG"),
+      values.get("cfgGraph"),
+      values.get("dotEG"),
+      values.get("egGraph"),
+      values.get("dotAST"),
+      values.get("astGraph"),
+      values.get("dotCallGraph"),
+      values.get("callGraph")).toJson();
+  }
 
-    Base base = new Base(javaCode);
+  /**
+   * Write the stored result, without copying it from the mapped segment when the servlet container allows it
+   */
+  private static String send(ByteBuffer result, String contentType, Response response) throws IOException {
+    response.type(contentType);
+    response.raw().setContentLength(result.remaining());
+    write(result, response.raw().getOutputStream());
+    return "";
+  }
 
-    values.put("cfg", CFGPrinter.toString(base.cfgFirstMethodOrConstructor));
+  /**
+   * Write the cached payload block by block, without copying it from the off-heap buffer when the servlet container allows it
+   */
+  private static String send(PayloadCache.Payload payload, String contentType, Response response) throws IOException {
+    response.type(contentType);
+    response.raw().setContentLength(payload.length());
+    ServletOutputStream outputStream = response.raw().getOutputStream();
+    for (ByteBuffer buffer : payload.buffers()) {
+      write(buffer, outputStream);
+    }
+    return "";
+  }
 
-    values.put("dotAST", new ASTDotGraph(base.cut).toDot());
-    values.put("dotCFG", new CFGDotGraph(base.cfgFirstMethodOrConstructor).toDot());
-    values.put("dotEG", new EGDotGraph(base).toDot());
+  private static void write(ByteBuffer buffer, ServletOutputStream outputStream) throws IOException {
+    if (outputStream instanceof HttpOutput) {
+      ((HttpOutput) outputStream).write(buffer);
+    } else {
+      Channels.newChannel(outputStream).write(buffer);
+    }
+  }
+
+  private static String createProject(Request request, Response response) throws IOException, ServletException {
+    request.attribute(MULTIPART_CONFIG, new MultipartConfigElement(System.getProperty("java.io.tmpdir")));
+    Map<String, String> sources = new LinkedHashMap<>();
+    String workspaceId = null;
+    for (Part part : request.raw().getParts()) {
+      if ("workspace".equals(part.getName())) {
+        try (InputStream inputStream = part.getInputStream()) {
+          workspaceId = IOUtils.toString(inputStream).trim();
+        }
+      }
+      String fileName = part.getSubmittedFileName();
+      if ("files".equals(part.getName()) && fileName != null) {
+        try (InputStream inputStream = part.getInputStream()) {
+          sources.putAll(Project.readSources(fileName, inputStream));
+        }
+      }
+    }
+    ServerTiming timing = new ServerTiming();
+    Project project;
+    try {
+      project = new Project(sources, getWorkspace(workspaceId), timing);
+    } catch (Exception e) {
+      return renderWithValues("", getErrorValues(e));
+    }
+    PROJECTS.put(project.id, project);
+    return generate(project, null, timing, response);
+  }
+
+  private static String diff(Request request, Response response) {
+    String before = request.queryParams("before");
+    String after = request.queryParams("after");
+    if (before == null || after == null) {
+      halt(400, "Both 'before' and 'after' sources are required.");
+    }
+    Workspace workspace = getWorkspace(request.queryParams("workspace"));
+    ServerTiming timing = new ServerTiming();
+    String result = null;
+    try {
+      result = getDiff(before, after, workspace, timing);
+    } catch (AdmissionControl.RejectedException e) {
+      reject(e, response);
+    } catch (CompletionException e) {
+      halt(400, e.getCause().getMessage());
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(DOT_CONTENT_TYPE);
+    return result;
+  }
+
+  /**
+   * Both versions are analyzed concurrently, each one being admitted within the heap budget. The diff is made from the
+   * program states of the nodes: graphs which would have to be summarized are rejected.
+   * @return the differences between the exploded graphs of both versions, in DOT format
+   */
+  @VisibleForTesting
+  static String getDiff(String before, String after, Workspace workspace, ServerTiming timing) {
+    try (AdmissionControl.Ticket beforeTicket = ADMISSION.admit(); AdmissionControl.Ticket afterTicket = ADMISSION.admit()) {
+      CompletableFuture<EGDotGraph> beforeGraph = CompletableFuture.supplyAsync(() -> timing.measure("before", () -> new EGDotGraph(new Base(before, workspace, timing))));
+      CompletableFuture<EGDotGraph> afterGraph = CompletableFuture.supplyAsync(() -> timing.measure("after", () -> new EGDotGraph(new Base(after, workspace, timing))));
+      // tickets are only released once both executions are done
+      CompletableFuture.allOf(beforeGraph, afterGraph).exceptionally(e -> null).join();
+      EGDotGraph beforeDotGraph = beforeGraph.join();
+      EGDotGraph afterDotGraph = afterGraph.join();
+      beforeTicket.require(beforeDotGraph.nodeCount() * AdmissionControl.BYTES_PER_NODE);
+      afterTicket.require(afterDotGraph.nodeCount() * AdmissionControl.BYTES_PER_NODE);
+      return timing.measure("diff", () -> new EGDiffDotGraph(beforeDotGraph, afterDotGraph).toDot());
+    }
+  }
+
+  /**
+   * Nodes and edges of the exploded graph are sent as server-sent events while the method is explored, followed by
+   * the complete graph once the exploration is done.
+   */
+  private static String streamGraph(Request request, Response response) throws IOException {
+    String javaCode = Optional.ofNullable(request.queryParams("javaCode")).orElse(DEFAULT_SOURCE_CODE);
+    Workspace workspace = getWorkspace(request.queryParams("workspace"));
+    response.type(EVENT_STREAM_CONTENT_TYPE);
+    response.header("Cache-Control", "no-cache");
+    Writer writer = new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8);
+    AdmissionControl.Ticket ticket = null;
+    CompletableFuture<EGDotGraph> graph = null;
+    try {
+      ticket = ADMISSION.admit();
+      Base base = new Base(javaCode, workspace, new ServerTiming());
+      EGStream stream = new EGStream(EGDotGraph.firstBlockId(base));
+      graph = CompletableFuture.supplyAsync(() -> new EGDotGraph(base, stream));
+      EGDotGraph explodedGraph = null;
+      while (explodedGraph == null) {
+        try {
+          explodedGraph = graph.get(STREAM_BATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+          sendBatch(writer, stream.nextBatch());
+        }
+      }
+      sendBatch(writer, stream.nextBatch());
+      String dot = ticket.toDot(explodedGraph);
+      sendEvent(writer, "done", new StreamedGraphDto(register(explodedGraph, dot), dot).toJson());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      sendError(writer, "Interrupted");
+    } catch (Exception e) {
+      Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+      sendError(writer, String.valueOf(cause.getMessage()));
+    } finally {
+      release(ticket, graph);
+    }
+    return "";
+  }
+
+  /**
+   * The exploration goes on when the client is gone: its ticket is then only released once it is done
+   */
+  @VisibleForTesting
+  static void release(@Nullable AdmissionControl.Ticket ticket, @Nullable CompletableFuture<EGDotGraph> graph) {
+    if (ticket == null) {
+      return;
+    }
+    if (graph == null || graph.isDone()) {
+      ticket.close();
+    } else {
+      graph.whenComplete((result, e) -> ticket.close());
+    }
+  }
+
+  /**
+   * The error may be the disconnection of the client, to which nothing can be sent anymore
+   */
+  private static void sendError(Writer writer, String message) {
+    try {
+      sendEvent(writer, "error", message);
+    } catch (IOException e) {
+      LOGGER.debug("Client of the stream is gone.", e);
+    }
+  }
+
+  private static void sendBatch(Writer writer, GraphBatchDto batch) throws IOException {
+    if (!batch.isEmpty()) {
+      sendEvent(writer, "batch", batch.toJson());
+    }
+  }
+
+  /**
+   * See format of the events: https://html.spec.whatwg.org/multipage/server-sent-events.html
+   */
+  private static void sendEvent(Writer writer, String event, String data) throws IOException {
+    writer.write("event: " + event + "\n");
+    for (String line : data.split("\n", -1)) {
+      writer.write("data: " + line + "\n");
+    }
+    writer.write("\n");
+    writer.flush();
+  }
+
+  private static String addJar(Request request, Response response) throws IOException {
+    Workspace workspace = getWorkspace(request.params("id"));
+    try (InputStream inputStream = request.raw().getInputStream()) {
+      workspace.addJar(request.params("name"), inputStream);
+    } catch (IllegalArgumentException | IllegalStateException | UncheckedIOException e) {
+      halt(400, e.getMessage());
+    }
+    response.type(JSON_CONTENT_TYPE);
+    return workspace.details().toJson();
+  }
+
+  private static String queryGraph(Request request, Response response) {
+    EGDotGraph graph = getExplodedGraph(request.params("id"));
+    ServerTiming timing = new ServerTiming();
+    EGIndex index = timing.measure("index", graph::index);
+    MatchesDto matches = null;
+    try {
+      matches = timing.measure("query", () -> index.query(request.queryParams("sv"), request.queryParams("symbol"), request.queryParams("constraint")));
+    } catch (IllegalArgumentException e) {
+      halt(400, e.getMessage());
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(JSON_CONTENT_TYPE);
+    return matches.toJson();
+  }
+
+  private static String searchGraph(Request request, Response response) {
+    DotGraph graph = getGraph(request.params("id"));
+    ServerTiming timing = new ServerTiming();
+    TextIndex index = timing.measure("index", graph::textIndex);
+    MatchesDto matches = null;
+    try {
+      int limit = intParam(request, "limit", DEFAULT_SEARCH_LIMIT);
+      String text = Optional.ofNullable(request.queryParams("q")).orElse("");
+      matches = timing.measure("search", () -> index.search(text, limit));
+    } catch (IllegalArgumentException e) {
+      halt(400, e.getMessage());
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(JSON_CONTENT_TYPE);
+    return matches.toJson();
+  }
+
+  private static String profileGraph(Request request, Response response) {
+    EGDotGraph graph = getExplodedGraph(request.params("id"));
+    ServerTiming timing = new ServerTiming();
+    String profile = timing.measure("profile", () -> graph.profile().toJson());
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(JSON_CONTENT_TYPE);
+    return profile;
+  }
+
+  /**
+   * Nodes and edges are written to the response as they are converted, without building the whole output
+   */
+  private static String exportGraph(Request request, Response response) throws IOException {
+    DotGraph graph = getGraph(request.params("id"));
+    String format = Optional.ofNullable(request.queryParams("format")).orElse(GRAPHML_FORMAT);
+    if (!GRAPHML_FORMAT.equals(format) && !BINARY_FORMAT.equals(format)) {
+      halt(400, String.format("Unknown format: '%s', expected '%s' or '%s'.", format, GRAPHML_FORMAT, BINARY_FORMAT));
+    }
+    boolean graphML = GRAPHML_FORMAT.equals(format);
+    response.type(graphML ? GraphMLWriter.CONTENT_TYPE : BinaryGraphWriter.CONTENT_TYPE);
+    response.header("Content-Disposition", "attachment; filename=\"" + graph.name() + (graphML ? ".graphml" : ".sgvb") + "\"");
+    ServletOutputStream outputStream = response.raw().getOutputStream();
+    graph.write(graphML ? new GraphMLWriter(outputStream) : new BinaryGraphWriter(outputStream));
+    return "";
+  }
+
+  private static String queryPaths(Request request, Response response, Function<EGPaths, CommonDto> query) {
+    EGDotGraph graph = getExplodedGraph(request.params("id"));
+    ServerTiming timing = new ServerTiming();
+    EGPaths paths = timing.measure("index", graph::paths);
+    CommonDto result = null;
+    try {
+      result = timing.measure("paths", () -> query.apply(paths));
+    } catch (IllegalArgumentException e) {
+      halt(400, e.getMessage());
+    }
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    response.type(JSON_CONTENT_TYPE);
+    return result.toJson();
+  }
+
+  private static int intParam(Request request, String name, @Nullable String defaultValue) {
+    String value = Optional.ofNullable(request.queryParams(name)).orElse(defaultValue);
+    Preconditions.checkArgument(value != null, "Parameter '%s' is required.", name);
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Parameter '%s' must be an integer: '%s'", name, value), e);
+    }
+  }
+
+  private static DotGraph getGraph(String id) {
+    DotGraph graph = GRAPHS.get(id);
+    if (graph == null) {
+      halt(404, "Unknown graph: " + id);
+    }
+    return graph;
+  }
+
+  private static EGDotGraph getExplodedGraph(String id) {
+    DotGraph graph = getGraph(id);
+    if (!(graph instanceof EGDotGraph)) {
+      halt(400, "Not an exploded graph: " + id);
+    }
+    return (EGDotGraph) graph;
+  }
+
+  /**
+   * @return the id of the graph, to be used by the page to query it
+   */
+  @VisibleForTesting
+  static String register(DotGraph graph, String dot) {
+    String id = Hashing.sha256().hashString(dot, StandardCharsets.UTF_8).toString();
+    GRAPHS.put(id, graph);
+    return id;
+  }
+
+  private static Workspace getWorkspace(@Nullable String id) {
+    Workspace workspace = null;
+    try {
+      workspace = Workspace.get(id);
+    } catch (IllegalArgumentException e) {
+      halt(400, e.getMessage());
+    }
+    return workspace;
+  }
+
+  private static Project getProject(String id) {
+    Project project = PROJECTS.get(id);
+    if (project == null) {
+      halt(404, "Unknown project: " + id);
+    }
+    return project;
+  }
+
+  private static String generate(Project project, @Nullable String methodKey, Response response) {
+    return generate(project, methodKey, new ServerTiming(), response);
+  }
+
+  private static String generate(Project project, @Nullable String methodKey, ServerTiming timing, Response response) {
+    Project.Method method = project.method(methodKey);
+    if (methodKey != null && method == null) {
+      halt(404, "Unknown method: " + methodKey);
+    }
+    Map<String, String> values;
+    try {
+      values = getValues(project.base(methodKey, timing), timing);
+    } catch (Exception e) {
+      values = getErrorValues(e);
+    }
+    values.put("project", project.details(method).toJson());
+    values.put("workspace", project.workspace.id);
+    String javaCode = method == null ? "" : project.source(method.fileName);
+    Map<String, String> finalValues = values;
+    String result = timing.measure("render", () -> renderWithValues(javaCode, finalValues));
+    response.header(ServerTiming.HEADER, timing.toHeader());
+    return result;
+  }
+
+  @VisibleForTesting
+  static Map<String, String> getValues(String javaCode) {
+    return getValues(javaCode, new ServerTiming());
+  }
+
+  @VisibleForTesting
+  static Map<String, String> getValues(String javaCode, ServerTiming timing) {
+    return getValues(new Base(javaCode, timing), timing);
+  }
+
+  @VisibleForTesting
+  static Map<String, String> getValues(Base base, ServerTiming timing) {
+    Map<String, String> values = getValues(base, Workspace.defaultWorkspace(), ALL_STAGE, timing, null);
 
     // explicitly force empty message and stack trace
     values.put("errorMessage", "");
     values.put("errorStackTrace", "");
+    return values;
+  }
 
+  /**
+   * Graphs already computed for an equivalent source code, having the same tokens on the same lines, are taken from the
+   * store under the keys of the views of the analyses, only the syntax tree and the call graph being computed again
+   *
+   * @param stage graphs not requiring the symbolic execution, graphs requiring it, or all of them
+   */
+  @VisibleForTesting
+  static Map<String, String> getValues(Base base, Workspace workspace, String stage, ServerTiming timing, @Nullable ResultStore store) {
+    String tokensFingerprint = store == null ? null : timing.measure("fingerprint", () -> TokenFingerprint.of(base.cut));
+    Map<String, String> values = new HashMap<>();
+    if (!EXPLORATION_STAGE.equals(stage)) {
+      putSyntaxValues(base, values, timing, store, storeKey(workspace, tokensFingerprint, Analysis.CFG_VIEW));
+    }
+    if (!SYNTAX_STAGE.equals(stage)) {
+      putExplorationValues(base, values, timing, store, storeKey(workspace, tokensFingerprint, Analysis.EG_VIEW));
+    }
     return values;
   }
 
+  @CheckForNull
+  private static String storeKey(Workspace workspace, @Nullable String tokensFingerprint, String view) {
+    return tokensFingerprint == null ? null : Analysis.storeKey(workspace.fingerprint(), tokensFingerprint, view);
+  }
+
+  /**
+   * Values not requiring the symbolic execution: text of the CFG, syntax tree and CFG graphs
+   */
+  private static void putSyntaxValues(Base base, Map<String, String> values, ServerTiming timing, @Nullable ResultStore store,
+    @Nullable String storeKey) {
+    putAST(base, values, timing);
+    ViewDto storedCfg = storedView(store, storeKey, timing);
+    if (storedCfg != null) {
+      values.put("cfg", storedCfg.text);
+      values.put("dotCFG", storedCfg.dot);
+      return;
+    }
+    values.put("cfg", timing.measure("cfgText", () -> CFGPrinter.toString(base.cfgFirstMethodOrConstructor)));
+    CFGDotGraph cfgDotGraph = new CFGDotGraph(base.cfgFirstMethodOrConstructor);
+    values.put("dotCFG", timing.measure("cfgDot", cfgDotGraph::toDot));
+    values.put("cfgGraph", register(cfgDotGraph, values.get("dotCFG")));
+    if (store != null && storeKey != null) {
+      timing.measure("store", () -> store.put(storeKey, storedView(values.get("dotCFG"), values.get("cfg"))));
+    }
+  }
+
+  /**
+   * Values of the exploration stage: exploded graph and call graph
+   */
+  private static void putExplorationValues(Base base, Map<String, String> values, ServerTiming timing, @Nullable ResultStore store,
+    @Nullable String storeKey) {
+    putCallGraph(base, values, timing);
+    ViewDto storedEg = storedView(store, storeKey, timing);
+    if (storedEg != null) {
+      values.put("dotEG", storedEg.dot);
+      return;
+    }
+    EGDotGraph egDotGraph;
+    try (AdmissionControl.Ticket ticket = ADMISSION.admit()) {
+      egDotGraph = timing.measure("se", () -> new EGDotGraph(base));
+      values.put("dotEG", timing.measure("egDot", () -> ticket.toDot(egDotGraph)));
+    }
+    values.put("egGraph", register(egDotGraph, values.get("dotEG")));
+    // summarized graphs depend on the load of the server
+    if (store != null && storeKey != null && !egDotGraph.isSummarized()) {
+      timing.measure("store", () -> store.put(storeKey, storedView(values.get("dotEG"), null)));
+    }
+  }
+
+  private static void putAST(Base base, Map<String, String> values, ServerTiming timing) {
+    ASTDotGraph astDotGraph = new ASTDotGraph(base.cut);
+    values.put("dotAST", timing.measure("astDot", astDotGraph::toDot));
+    values.put("astGraph", register(astDotGraph, values.get("dotAST")));
+  }
+
+  private static void putCallGraph(Base base, Map<String, String> values, ServerTiming timing) {
+    CallGraphDotGraph callGraphDotGraph = new CallGraphDotGraph(base.cut);
+    values.put("dotCallGraph", timing.measure("callGraphDot", callGraphDotGraph::toDot));
+    values.put("callGraph", register(callGraphDotGraph, values.get("dotCallGraph")));
+  }
+
+  /**
+   * Views are stored without the id of their graph, only available for queries while the graph is registered
+   */
+  private static byte[] storedView(String dot, @Nullable String text) {
+    return new ViewDto(dot, null, text, false).toJson().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @CheckForNull
+  private static ViewDto storedView(@Nullable ResultStore store, @Nullable String storeKey, ServerTiming timing) {
+    if (store == null || storeKey == null) {
+      return null;
+    }
+    ByteBuffer storedView = timing.measure("store", () -> store.get(storeKey));
+    return storedView == null ? null : new Gson().fromJson(StandardCharsets.UTF_8.decode(storedView).toString(), ViewDto.class);
+  }
+
   @VisibleForTesting
   static Map<String, String> getErrorValues(Exception e) {
     Map<String, String> values = new HashMap<>();
@@ -147,6 +911,22 @@ public class Viewer {
 
   private static String renderWithValues(String javaCode, Map<String, String> values) {
     values.put("javaCode", javaCode);
+    values.putIfAbsent("project", "null");
+    values.putIfAbsent("workspace", "");
+    // graphs of the analysis are requested by the page when shown
+    values.putIfAbsent("analysis", "");
+    values.putIfAbsent("cfg", "");
+    values.putIfAbsent("dotEG", "");
+    values.putIfAbsent("dotCFG", "");
+    values.putIfAbsent("dotAST", "");
+    values.putIfAbsent("dotCallGraph", "");
+    // graphs taken from the store are not available for queries
+    values.putIfAbsent("astGraph", "");
+    values.putIfAbsent("cfgGraph", "");
+    values.putIfAbsent("egGraph", "");
+    values.putIfAbsent("callGraph", "");
+    // number of nodes above which the page clusters the nodes of a graph
+    values.putIfAbsent("clusteringThreshold", Integer.toString(Integer.getInteger("viewer.clustering.threshold", DEFAULT_CLUSTERING_THRESHOLD)));
     return new VelocityTemplateEngine().render(new ModelAndView(values, "velocity/index.vm"));
   }
 
@@ -162,56 +942,56 @@ public class Viewer {
   }
 
   public static class Base {
-    private static final ActionParser<Tree> PARSER = JavaParser.createParser();
+    // parsers are not thread-safe: requests and files of a project are parsed concurrently
+    static final ParserPool PARSERS = new ParserPool(Integer.getInteger("viewer.parsers", Runtime.getRuntime().availableProcessors()), JavaParser::createParser);
     public final CompilationUnitTree cut;
+    /**
+     * The analyzed method: first method or constructor of the first class, or method selected in a project
+     */
     public final MethodTree firstMethodOrConstructor;
     public final SemanticModel semanticModel;
     public final CFG cfgFirstMethodOrConstructor;
 
     public Base(String source) {
-      this.cut = (CompilationUnitTree) PARSER.parse(source);
-
-      List<File> classpath = getFilesRecursively(new String[] {"jar", "zip"});
-      this.semanticModel = SemanticModel.createFor(cut, new SquidClassLoader(classpath));
-      this.firstMethodOrConstructor = getFirstMethodOrConstructor(cut);
+      this(source, new ServerTiming());
+    }
 
-      Preconditions.checkNotNull(firstMethodOrConstructor, "Unable to find a method/constructor in first class.");
+    public Base(String source, ServerTiming timing) {
+      this(source, Workspace.defaultWorkspace(), timing);
+    }
 
-      this.cfgFirstMethodOrConstructor = CFG.build(firstMethodOrConstructor);
+    public Base(String source, Workspace workspace, ServerTiming timing) {
+      this(timing.measure("parse", () -> parse(source)), workspace, timing);
     }
 
-    private static List<File> getFilesRecursively(final String[] extensions) {
-      List<File> files = new ArrayList<>();
+    /**
+     * @param cut syntax tree, parsed without semantic
+     */
+    public Base(CompilationUnitTree cut, Workspace workspace, ServerTiming timing) {
+      this.cut = cut;
 
-      FileVisitor<Path> visitor = new SimpleFileVisitor<Path>() {
-        @Override
-        public FileVisitResult visitFile(Path filePath, BasicFileAttributes attrs) throws IOException {
-          for (String extension : extensions) {
-            if (filePath.toString().endsWith("." + extension)) {
-              files.add(filePath.toFile());
-              break;
-            }
-          }
-          return FileVisitResult.CONTINUE;
-        }
+      SquidClassLoader classLoader = timing.measure("classpath", workspace::classLoader);
+      this.semanticModel = timing.measure("semantic", () -> SemanticModel.createFor(cut, classLoader));
+      this.firstMethodOrConstructor = getFirstMethodOrConstructor(cut);
 
-        @Override
-        public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-          return FileVisitResult.CONTINUE;
-        }
-      };
+      Preconditions.checkNotNull(firstMethodOrConstructor, "Unable to find a method/constructor in first class.");
 
-      try {
-        Files.walkFileTree(Paths.get("target/test-jars"), visitor);
-      } catch (IOException e) {
-        // we already ignore errors in the visitor
-      }
+      this.cfgFirstMethodOrConstructor = timing.measure("cfg", () -> CFG.build(firstMethodOrConstructor));
+    }
+
+    Base(CompilationUnitTree cut, SemanticModel semanticModel, MethodTree method, ServerTiming timing) {
+      this.cut = cut;
+      this.semanticModel = semanticModel;
+      this.firstMethodOrConstructor = method;
+      this.cfgFirstMethodOrConstructor = timing.measure("cfg", () -> CFG.build(method));
+    }
 
-      return files;
+    static CompilationUnitTree parse(String source) {
+      return PARSERS.parse(source);
     }
 
     @CheckForNull
-    private static MethodTree getFirstMethodOrConstructor(CompilationUnitTree cut) {
+    static MethodTree getFirstMethodOrConstructor(CompilationUnitTree cut) {
       return (MethodTree) cut.types().stream()
         .findFirst()
         .map(ClassTree.class::cast)
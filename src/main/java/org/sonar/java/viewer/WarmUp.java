@@ -0,0 +1,98 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run sources through the pipeline of the pages, from the rendering of the page to the computation of its views, so that
+ * classes of the analyzer are loaded, the parser is built and the JIT compiler has seen the hot paths before the first
+ * user request.
+ */
+public class WarmUp {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WarmUp.class);
+  private static final List<String> CORPUS = Arrays.asList("Loops", "Exceptions", "Switches", "Lambdas");
+  private static final int PAYLOADS_SIZE = 16 * 1024 * 1024;
+
+  private final List<String> sources = new ArrayList<>();
+  private final int rounds;
+  private volatile boolean done = false;
+  private volatile double duration = 0;
+
+  /**
+   * @param rounds number of times the corpus is analyzed, no warm-up being made when zero
+   */
+  public WarmUp(String defaultSourceCode, int rounds) {
+    this.rounds = rounds;
+    sources.add(defaultSourceCode);
+    sources.addAll(corpus());
+  }
+
+  /**
+   * @return sources of the warm-up corpus
+   */
+  public static List<String> corpus() {
+    return CORPUS.stream().map(name -> Viewer.fileContent("/warmup/" + name + ".java")).collect(Collectors.toList());
+  }
+
+  public void run() {
+    ServerTiming timing = new ServerTiming();
+    PayloadCache cache = new PayloadCache(PAYLOADS_SIZE);
+    for (int round = 0; round < rounds; round++) {
+      sources.forEach(source -> timing.measure("warmUp", () -> warmUp(source, cache)));
+    }
+    duration = timing.durations().getOrDefault("warmUp", 0d);
+    done = true;
+    LOGGER.info("Warm-up done in {} ms ({} analyses)", Math.round(duration), rounds * sources.size());
+  }
+
+  /**
+   * Same path as the requests of a page: the page is rendered from the syntax tree, then each of its views is computed.
+   * Views are cached apart from the ones of the pages, and dropped for the next round to compute them again.
+   */
+  private static void warmUp(String source, PayloadCache cache) {
+    ServerTiming timing = new ServerTiming();
+    Analysis analysis = new Analysis(source, Workspace.defaultWorkspace(), cache);
+    Viewer.render(source, analysis, timing);
+    try {
+      Analysis.VIEWS.forEach(view -> analysis.view(view, timing, result -> {}).close());
+    } catch (RuntimeException e) {
+      LOGGER.warn("Warm-up analysis failed: {}", e.getMessage());
+    }
+    cache.invalidateAll();
+  }
+
+  public boolean isDone() {
+    return done;
+  }
+
+  /**
+   * @return duration of the warm-up, in milliseconds
+   */
+  public double duration() {
+    return duration;
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.java.bytecode.loader.SquidClassLoader;
+import org.sonar.java.viewer.dto.WorkspaceDto;
+import org.sonar.java.viewer.dto.WorkspaceJarDto;
+
+/**
+ * Set of dependency jars, stored on disk and indexed once, shared by all the analyses made in the workspace.
+ * Jars uploaded in a workspace complement the jars of the default workspace, taken from "target/test-jars".
+ */
+public class Workspace {
+
+  public static final String DEFAULT_ID = "default";
+  /**
+   * Starting with a letter or digit, for ids such as "." or ".." not to designate directories outside of the root
+   */
+  private static final Pattern ID_PATTERN = Pattern.compile("[A-Za-z0-9][\\w.-]{0,63}");
+  private static final Pattern JAR_NAME_PATTERN = Pattern.compile("[\\w.-]{1,128}\\.(jar|zip)");
+  private static final Path ROOT = Paths.get(System.getProperty("viewer.workspaces", "target/workspaces"));
+  private static final Path DEFAULT_JARS = Paths.get("target/test-jars");
+  private static final Map<String, Workspace> WORKSPACES = new ConcurrentHashMap<>();
+
+  public final String id;
+  @Nullable
+  private final Workspace parent;
+  private final Path directory;
+  private final Map<String, IndexedJar> jars = new LinkedHashMap<>();
+  @CheckForNull
+  private SquidClassLoader classLoader;
+  @CheckForNull
+  private String fingerprint;
+
+  private Workspace(String id, @Nullable Workspace parent, Path directory, List<File> files) {
+    this.id = id;
+    this.parent = parent;
+    this.directory = directory;
+    files.forEach(file -> jars.put(file.getName(), index(file)));
+  }
+
+  public static Workspace defaultWorkspace() {
+    return WORKSPACES.computeIfAbsent(DEFAULT_ID, id -> new Workspace(id, null, DEFAULT_JARS, jarsRecursively(DEFAULT_JARS)));
+  }
+
+  /**
+   * @return the workspace with the given id, jars already stored in its directory being indexed on first access
+   */
+  public static Workspace get(@Nullable String id) {
+    if (id == null || id.isEmpty() || DEFAULT_ID.equals(id)) {
+      return defaultWorkspace();
+    }
+    Preconditions.checkArgument(ID_PATTERN.matcher(id).matches(), "Invalid workspace: '%s'", id);
+    Path directory = ROOT.resolve(id).normalize();
+    Preconditions.checkArgument(directory.startsWith(ROOT.normalize()) && !directory.equals(ROOT.normalize()), "Invalid workspace: '%s'", id);
+    // not created while updating the map, which does not support recursive updates
+    Workspace parent = defaultWorkspace();
+    return WORKSPACES.computeIfAbsent(id, key -> new Workspace(key, parent, directory, jars(directory)));
+  }
+
+  /**
+   * Store the jar in the workspace and index it. A jar with the same name is replaced.
+   */
+  public synchronized void addJar(String name, InputStream content) throws IOException {
+    Preconditions.checkState(parent != null, "Jars can not be added to the default workspace.");
+    Preconditions.checkArgument(JAR_NAME_PATTERN.matcher(name).matches(), "Invalid jar name: '%s'", name);
+    Files.createDirectories(directory);
+    Path temporaryFile = Files.createTempFile(directory, name, ".tmp");
+    try {
+      Files.copy(content, temporaryFile, StandardCopyOption.REPLACE_EXISTING);
+      // fails before replacing any existing jar when the content is not a valid archive
+      IndexedJar indexedJar = index(temporaryFile.toFile());
+      Path target = directory.resolve(name);
+      Files.move(temporaryFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      jars.put(name, new IndexedJar(indexedJar.mappedJar.movedTo(target.toFile()), indexedJar.indexing));
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+    // not closed, as analyses in flight may still use it: its jars are released once it is no longer reachable, the next
+    // analyses creating a new class loader
+    classLoader = null;
+    fingerprint = null;
+  }
+
+  /**
+   * @return class loader over the jars of the workspace, created once and reused until a jar is added
+   */
+  public synchronized SquidClassLoader classLoader() {
+    if (classLoader == null) {
+      classLoader = new MappedClassLoader(mappedJars());
+    }
+    return classLoader;
+  }
+
+  /**
+   * @return identifier of the content of the workspace, changing whenever a jar is added
+   */
+  public synchronized String fingerprint() {
+    if (fingerprint == null) {
+      Hasher hasher = Hashing.sha256().newHasher();
+      mappedJars().stream().map(MappedJar::file).forEach(file -> hasher
+        .putString(file.getName(), StandardCharsets.UTF_8)
+        .putLong(file.length())
+        .putLong(file.lastModified()));
+      fingerprint = id + "-" + hasher.hash();
+    }
+    return fingerprint;
+  }
+
+  public synchronized WorkspaceDto details() {
+    List<WorkspaceJarDto> jarDtos = new ArrayList<>();
+    if (parent != null) {
+      jarDtos.addAll(parent.details().jars);
+    }
+    jars.values().forEach(jar -> jarDtos.add(new WorkspaceJarDto(jar.mappedJar.file().getName(), id, jar.mappedJar.file().length(),
+      jar.mappedJar.classCount(), jar.indexing)));
+    return new WorkspaceDto(id, jarDtos);
+  }
+
+  private synchronized List<MappedJar> mappedJars() {
+    List<MappedJar> result = new ArrayList<>();
+    jars.values().forEach(jar -> result.add(jar.mappedJar));
+    if (parent != null) {
+      result.addAll(parent.mappedJars());
+    }
+    return result;
+  }
+
+  private static IndexedJar index(File file) {
+    ServerTiming timing = new ServerTiming();
+    MappedJar mappedJar = timing.measure("index", () -> {
+      try {
+        return new MappedJar(file);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+    return new IndexedJar(mappedJar, timing.durations().get("index"));
+  }
+
+  private static List<File> jars(Path directory) {
+    if (!Files.isDirectory(directory)) {
+      return new ArrayList<>();
+    }
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.{jar,zip}")) {
+      List<File> result = new ArrayList<>();
+      stream.forEach(path -> result.add(path.toFile()));
+      return result.stream().sorted().collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static List<File> jarsRecursively(Path directory) {
+    List<File> files = new ArrayList<>();
+    try {
+      Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path filePath, BasicFileAttributes attrs) {
+          String fileName = filePath.toString();
+          if (fileName.endsWith(".jar") || fileName.endsWith(".zip")) {
+            files.add(filePath.toFile());
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      // we already ignore errors in the visitor
+    }
+    return files;
+  }
+
+  private static class IndexedJar {
+    private final MappedJar mappedJar;
+    /**
+     * Duration of the indexing, in milliseconds
+     */
+    private final double indexing;
+
+    IndexedJar(MappedJar mappedJar, double indexing) {
+      this.mappedJar = mappedJar;
+      this.indexing = indexing;
+    }
+  }
+
+  /**
+   * Class files are read from the mapped jars, other resources falling back on the default behavior.
+   */
+  private static class MappedClassLoader extends SquidClassLoader {
+    private final List<MappedJar> mappedJars;
+
+    MappedClassLoader(List<MappedJar> mappedJars) {
+      super(mappedJars.stream().map(MappedJar::file).collect(Collectors.toList()));
+      this.mappedJars = mappedJars;
+    }
+
+    @Override
+    public InputStream getResourceAsStream(String name) {
+      for (MappedJar mappedJar : mappedJars) {
+        try {
+          InputStream inputStream = mappedJar.open(name);
+          if (inputStream != null) {
+            return inputStream;
+          }
+        } catch (IOException e) {
+          // corrupted entry: let the default lookup report it
+          break;
+        }
+      }
+      return super.getResourceAsStream(name);
+    }
+  }
+}
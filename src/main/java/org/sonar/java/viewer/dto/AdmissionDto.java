@@ -0,0 +1,53 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+/**
+ * State of the admission control, memory being in bytes
+ */
+public class AdmissionDto implements CommonDto {
+  public final long budget;
+  public final long used;
+  /**
+   * Estimated footprint of the analyses in flight
+   */
+  public final long reserved;
+  public final int inFlight;
+  public final long admitted;
+  /**
+   * Number of analyses whose exploded graph was summarized
+   */
+  public final long summarized;
+  public final long queued;
+  public final long rejected;
+  public final long cacheShrinks;
+
+  public AdmissionDto(long budget, long used, long reserved, int inFlight, long admitted, long summarized, long queued, long rejected, long cacheShrinks) {
+    this.budget = budget;
+    this.used = used;
+    this.reserved = reserved;
+    this.inFlight = inFlight;
+    this.admitted = admitted;
+    this.summarized = summarized;
+    this.queued = queued;
+    this.rejected = rejected;
+    this.cacheShrinks = cacheShrinks;
+  }
+}
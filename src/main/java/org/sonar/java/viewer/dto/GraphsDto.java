@@ -0,0 +1,56 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+import javax.annotation.Nullable;
+
+/**
+ * Graphs of the page, in DOT format, with their ids to query them. Graphs not computed in the requested stage, and
+ * ids of graphs taken from the store, are null.
+ */
+public class GraphsDto implements CommonDto {
+  public final String cfg;
+  public final String dotCFG;
+  @Nullable
+  public final String cfgGraph;
+  @Nullable
+  public final String dotEG;
+  @Nullable
+  public final String egGraph;
+  public final String dotAST;
+  public final String astGraph;
+  @Nullable
+  public final String dotCallGraph;
+  @Nullable
+  public final String callGraph;
+
+  public GraphsDto(String cfg, String dotCFG, @Nullable String cfgGraph, @Nullable String dotEG, @Nullable String egGraph, String dotAST,
+    String astGraph, @Nullable String dotCallGraph, @Nullable String callGraph) {
+    this.cfg = cfg;
+    this.dotCFG = dotCFG;
+    this.cfgGraph = cfgGraph;
+    this.dotEG = dotEG;
+    this.egGraph = egGraph;
+    this.dotAST = dotAST;
+    this.astGraph = astGraph;
+    this.dotCallGraph = dotCallGraph;
+    this.callGraph = callGraph;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+import java.util.List;
+
+public class MatchesDto implements CommonDto {
+  /**
+   * Ids of the matching nodes
+   */
+  public final List<Integer> nodes;
+  /**
+   * Matching edges, as pairs of ids of the nodes they connect
+   */
+  public final List<int[]> edges;
+
+  public MatchesDto(List<Integer> nodes, List<int[]> edges) {
+    this.nodes = nodes;
+    this.edges = edges;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+public class ParserPoolDto implements CommonDto {
+  /**
+   * Maximum number of parsers
+   */
+  public final int size;
+  /**
+   * Number of parsers created so far
+   */
+  public final int created;
+  public final long checkouts;
+  /**
+   * Number of checkouts which waited for a parser to be returned
+   */
+  public final long waits;
+  /**
+   * Durations of the waits, in milliseconds
+   */
+  public final double totalWait;
+  public final double maxWait;
+
+  public ParserPoolDto(int size, int created, long checkouts, long waits, double totalWait, double maxWait) {
+    this.size = size;
+    this.created = created;
+    this.checkouts = checkouts;
+    this.waits = waits;
+    this.totalWait = totalWait;
+    this.maxWait = maxWait;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+public class PayloadCacheDto implements CommonDto {
+  /**
+   * Size of the off-heap buffer holding the payloads, in bytes
+   */
+  public final long capacity;
+  /**
+   * Bytes of the blocks in use, including the blocks of evicted payloads still being written to responses
+   */
+  public final long used;
+  /**
+   * Bytes of the cached payloads
+   */
+  public final long payloadBytes;
+  public final int payloads;
+  public final long hits;
+  public final long misses;
+  public final long evictions;
+  /**
+   * Number of payloads not fitting in the cache, kept in the heap while written
+   */
+  public final long uncached;
+
+  public PayloadCacheDto(long capacity, long used, long payloadBytes, int payloads, long hits, long misses, long evictions, long uncached) {
+    this.capacity = capacity;
+    this.used = used;
+    this.payloadBytes = payloadBytes;
+    this.payloads = payloads;
+    this.hits = hits;
+    this.misses = misses;
+    this.evictions = evictions;
+    this.uncached = uncached;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+import java.util.List;
+import javax.annotation.Nullable;
+
+public class ProjectDto implements CommonDto {
+  public final String id;
+  @Nullable
+  public final String selected;
+  public final List<ProjectFileDto> files;
+  public final List<ProjectMethodDto> methods;
+
+  public ProjectDto(String id, @Nullable String selected, List<ProjectFileDto> files, List<ProjectMethodDto> methods) {
+    this.id = id;
+    this.selected = selected;
+    this.files = files;
+    this.methods = methods;
+  }
+}
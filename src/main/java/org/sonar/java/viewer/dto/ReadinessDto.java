@@ -0,0 +1,38 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+public class ReadinessDto implements CommonDto {
+  public final boolean ready;
+  /**
+   * Duration of the warm-up, in milliseconds
+   */
+  public final double warmUp;
+  /**
+   * Time elapsed since the start of the JVM, in milliseconds
+   */
+  public final long uptime;
+
+  public ReadinessDto(boolean ready, double warmUp, long uptime) {
+    this.ready = ready;
+    this.warmUp = warmUp;
+    this.uptime = uptime;
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+import javax.annotation.Nullable;
+
+/**
+ * One graph of the page, computed when its tab is first shown
+ */
+public class ViewDto implements CommonDto {
+  public final String dot;
+  /**
+   * Id to query the graph, null for graphs taken from the store
+   */
+  @Nullable
+  public final String graph;
+  /**
+   * Textual representation, only for the CFG
+   */
+  @Nullable
+  public final String text;
+  /**
+   * True when the exploded graph was summarized to fit in the heap budget, its nodes having no program state
+   */
+  public final boolean summarized;
+
+  public ViewDto(String dot, @Nullable String graph, @Nullable String text, boolean summarized) {
+    this.dot = dot;
+    this.graph = graph;
+    this.text = text;
+    this.summarized = summarized;
+  }
+}
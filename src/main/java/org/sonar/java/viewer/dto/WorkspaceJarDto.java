@@ -0,0 +1,36 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer.dto;
+
+public class WorkspaceJarDto implements CommonDto {
+  public final String name;
+  public final String workspace;
+  public final long size;
+  public final long classes;
+  public final double indexing;
+
+  public WorkspaceJarDto(String name, String workspace, long size, long classes, double indexing) {
+    this.name = name;
+    this.workspace = workspace;
+    this.size = size;
+    this.classes = classes;
+    this.indexing = indexing;
+  }
+}
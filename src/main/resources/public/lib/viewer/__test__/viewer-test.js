@@ -385,6 +385,21 @@ describe('viewer', function() {
       });
     });
 
+    it('should apply other color than default to the nodes of a diff', function() {
+      const nodes = [
+        {id: 0, highlighting: 'addedNode'},
+        {id: 1, highlighting: 'removedNode'},
+        {id: 2, highlighting: 'changedNode'}
+      ];
+      const input = new vis.DataSet(nodes);
+
+      viewer.setNodesColor(input);
+
+      input.forEach(function (node) {
+        expect(node.color.background).not.toEqual(DEFAULT_COLOR);
+      });
+    });
+
     it('should be able to force color even if highlighting is present', function() {
       const nodes = [
         {id: 0, highlighting: 'firstNode'},
@@ -470,6 +485,100 @@ describe('viewer', function() {
     });
   });
 
+  describe('getServerTimings', function() {
+    it('should return nothing when performance API is not available', function() {
+      expect(viewer.getServerTimings(undefined)).toEqual([]);
+      expect(viewer.getServerTimings({})).toEqual([]);
+    });
+
+    it('should return nothing when navigation does not expose server timings', function() {
+      const mockPerformance = {
+        getEntriesByType(type) {
+          return [{ name: 'http://localhost:9999/' }];
+        }
+      };
+      expect(viewer.getServerTimings(mockPerformance)).toEqual([]);
+    });
+
+    it('should return server timings of the navigation', function() {
+      let requestedType;
+      const mockPerformance = {
+        getEntriesByType(type) {
+          requestedType = type;
+          return [{ serverTiming: [{ name: 'parse', duration: 12.5, description: '' }, { name: 'se', duration: 42 }] }];
+        }
+      };
+      const output = viewer.getServerTimings(mockPerformance);
+      expect(requestedType).toBe('navigation');
+      expect(output).toEqual([{ name: 'parse', duration: 12.5 }, { name: 'se', duration: 42 }]);
+    });
+  });
+
+  describe('getTimings', function() {
+    it('should return "No data" when there is no timing', function() {
+      const output = viewer.getTimings([], {});
+      expect(output).toEqual(expect.stringContaining('No data'));
+    });
+
+    it('should generate a table with server and browser timings', function() {
+      const serverTimings = [{ name: 'parse', duration: 12.34 }];
+      const networks = {
+        eg: { timings: { parse: 1, draw: 2.26, layout: 3 } },
+        cfg: { timings: { parse: 1, draw: 2 } },
+        callgraph: { timings: {} },
+        ast: {}
+      };
+      const output = viewer.getTimings(serverTimings, networks);
+      expect(output).toBe('<table class="timings-table">'
+        + '<tr><td>parse</td><td>12.3 ms</td></tr>'
+        + '<tr><td>eg (browser)</td><td>parse: 1.0 ms, draw: 2.3 ms, layout: 3.0 ms</td></tr>'
+        + '<tr><td>cfg (browser)</td><td>parse: 1.0 ms, draw: 2.0 ms, layout: pending</td></tr>'
+        + '<tr><td>callgraph (browser)</td><td>parse: pending, draw: pending, layout: pending</td></tr>'
+        + '</table>');
+    });
+  });
+
+  describe('getProjectMethods', function() {
+    it('should group methods by file and select the selected one', function() {
+      const methods = [
+        { key: 'A.java:2:7', label: 'A#foo L#2', file: 'A.java' },
+        { key: 'A.java:5:7', label: 'A#bar L#5', file: 'A.java' },
+        { key: 'p/B.java:3:2', label: 'B#<init> L#3', file: 'p/B.java' }
+      ];
+      const output = viewer.getProjectMethods(methods, 'A.java:5:7');
+      expect(output).toBe('<optgroup label="A.java">'
+        + '<option value="A.java:2:7">A#foo L#2</option>'
+        + '<option value="A.java:5:7" selected>A#bar L#5</option>'
+        + '</optgroup>'
+        + '<optgroup label="p/B.java">'
+        + '<option value="p/B.java:3:2">B#&lt;init&gt; L#3</option>'
+        + '</optgroup>');
+    });
+
+    it('should return nothing without methods', function() {
+      expect(viewer.getProjectMethods([], null)).toBe('');
+    });
+  });
+
+  describe('getProjectFiles', function() {
+    it('should generate a table with timings of each file', function() {
+      const files = [
+        { name: 'A.java', timings: { parse: 1, index: 0.26, resolve: 3 } },
+        { name: '<B>.java', timings: {} }
+      ];
+      const output = viewer.getProjectFiles(files);
+      expect(output).toBe('<table class="timings-table">'
+        + '<tr><td>A.java</td><td>parse: 1.0 ms, index: 0.3 ms, resolve: 3.0 ms</td></tr>'
+        + '</table>');
+    });
+  });
+
+  describe('projectUrl', function() {
+    it('should encode project id and method key', function() {
+      expect(viewer.projectUrl('42', 'p/A.java:3:7')).toBe('/project/42?method=p%2FA.java%3A3%3A7');
+    });
+  });
+
   describe('mapPPByLine', function() {
     it('should return an empty map in case of empty string', function() {
       const input = '';
@@ -908,4 +1017,635 @@ describe('viewer', function() {
       };
     }
   });
+
+  describe('parseGraphQuery', function() {
+    it('should recognize symbolic values, with or without constraint', function() {
+      expect(viewer.parseGraphQuery('SV_12')).toEqual({sv: 'SV_12'});
+      expect(viewer.parseGraphQuery(' SV_12 = NULL ')).toEqual({sv: 'SV_12', constraint: 'NULL'});
+    });
+
+    it('should recognize symbols, with or without constraint', function() {
+      expect(viewer.parseGraphQuery('foo')).toEqual({symbol: 'foo'});
+      expect(viewer.parseGraphQuery('foo=NOT_NULL')).toEqual({symbol: 'foo', constraint: 'NOT_NULL'});
+    });
+
+    it('should recognize constraints alone', function() {
+      expect(viewer.parseGraphQuery('NOT_NULL')).toEqual({constraint: 'NOT_NULL'});
+      expect(viewer.parseGraphQuery('')).toEqual({});
+    });
+  });
+
+  describe('graphQueryUrl', function() {
+    it('should encode the graph id and the query', function() {
+      expect(viewer.graphQueryUrl('abc', {symbol: 'a b', constraint: 'NULL'})).toBe('/graph/abc/query?symbol=a%20b&constraint=NULL');
+    });
+  });
+
+  describe('highlightMatches', function() {
+    it('should highlight matching nodes, select matching edges and redraw graph', function() {
+      const nodes = new vis.DataSet([{id: 0}, {id: 1}, {id: 2}]);
+      const edges = new vis.DataSet([{id: 'e1', from: 0, to: 1}, {id: 'e2', from: 1, to: 2}, {id: 'e3', from: 0, to: 2}]);
+      let selectedEdges = null;
+      let redrawn = false;
+      const mockNetwork = {
+        eg: { nodes: nodes },
+        edges: edges,
+        selectEdges(ids) {
+          selectedEdges = ids;
+        },
+        redraw() {
+          redrawn = true;
+        }
+      };
+
+      const edgeIds = viewer.highlightMatches({nodes: [1], edges: [[1, 2], [2, 0]]}, mockNetwork);
+
+      expect(nodes.get(1)['color']['background']).toEqual('gold');
+      expect(nodes.get(0)['color']['background']).toEqual('#eee');
+      expect(edgeIds).toEqual(['e2']);
+      expect(selectedEdges).toEqual(['e2']);
+      expect(redrawn).toBe(true);
+    });
+  });
+
+  describe('graphSearchUrl', function() {
+    it('should encode the graph id and the searched text', function() {
+      expect(viewer.graphSearchUrl('abc', 'B3.2 foo')).toBe('/graph/abc/search?q=B3.2%20foo');
+    });
+  });
+
+  describe('getMatchesSummary', function() {
+    it('should count matching nodes and found edges', function() {
+      expect(viewer.getMatchesSummary({nodes: [1, 2], edges: [[1, 2]]}, [])).toBe('2 node(s), 0 edge(s)');
+    });
+
+    it('should mention truncated results', function() {
+      expect(viewer.getMatchesSummary({nodes: [], edges: []}, [], true)).toBe('0 node(s), 0 edge(s) <em>(truncated)</em>');
+    });
+  });
+
+  describe('getGraphRequestError', function() {
+    it('should explain that unknown graphs are no longer available', function() {
+      expect(viewer.getGraphRequestError({status: 404, responseText: 'Unknown graph: abc'})).toEqual(expect.stringContaining('no longer available'));
+    });
+
+    it('should escape error messages', function() {
+      expect(viewer.getGraphRequestError({status: 400, responseText: '<b>'})).toBe('<em>&lt;b&gt;</em>');
+    });
+  });
+
+  describe('selectMatches', function() {
+    it('should select matching nodes and edges, and focus on the best node', function() {
+      const edges = new vis.DataSet([{id: 'e1', from: 0, to: 1}, {id: 'e2', from: 1, to: 2}]);
+      let selection = null;
+      let focused = null;
+      const mockNetwork = {
+        edges: edges,
+        setSelection(value) {
+          selection = value;
+        },
+        focus(id) {
+          focused = id;
+        }
+      };
+
+      const edgeIds = viewer.selectMatches({nodes: [2, 0], edges: [[0, 1]]}, mockNetwork);
+
+      expect(edgeIds).toEqual(['e1']);
+      expect(selection).toEqual({nodes: [2, 0], edges: ['e1']});
+      expect(focused).toBe(2);
+    });
+
+    it('should not focus when no node matches', function() {
+      let focused = null;
+      const mockNetwork = {
+        edges: new vis.DataSet([]),
+        setSelection() {},
+        focus(id) {
+          focused = id;
+        }
+      };
+
+      viewer.selectMatches({nodes: [], edges: []}, mockNetwork);
+
+      expect(focused).toBeNull();
+    });
+  });
+
+  describe('graphPathsUrl', function() {
+    it('should encode the graph id and the parameters of the query', function() {
+      expect(viewer.graphPathsUrl('abc', 'path', {to: 12})).toBe('/graph/abc/path?to=12');
+      expect(viewer.graphPathsUrl('abc', 'exceptional-paths', {})).toBe('/graph/abc/exceptional-paths?');
+    });
+  });
+
+  describe('pathsToMatches', function() {
+    it('should collect the nodes and the edges of all the paths', function() {
+      const matches = viewer.pathsToMatches([[0, 1, 3], [0, 2, 3]]);
+
+      expect(matches.nodes).toEqual([0, 1, 3, 2]);
+      expect(matches.edges).toEqual([[0, 1], [1, 3], [0, 2], [2, 3]]);
+    });
+
+    it('should handle paths made of a single node', function() {
+      expect(viewer.pathsToMatches([[4]])).toEqual({nodes: [4], edges: []});
+    });
+  });
+
+  describe('heatLevel', function() {
+    it('should spread values between 1 and 5', function() {
+      expect(viewer.heatLevel(0, 10)).toBe(0);
+      expect(viewer.heatLevel(1, 10)).toBe(1);
+      expect(viewer.heatLevel(5, 10)).toBe(3);
+      expect(viewer.heatLevel(10, 10)).toBe(5);
+    });
+
+    it('should not fail without maximum', function() {
+      expect(viewer.heatLevel(3, 0)).toBe(0);
+    });
+  });
+
+  describe('sortProfileRows', function() {
+    const rows = [
+      {ppKey: 'B1.0', line: 3, nodes: 2},
+      {ppKey: 'B0.0', line: null, nodes: 5},
+      {ppKey: 'B2.1', line: 4, nodes: 1}
+    ];
+
+    it('should sort rows by the given column', function() {
+      expect(viewer.sortProfileRows(rows, 'nodes', true).map(row => row.ppKey)).toEqual(['B0.0', 'B1.0', 'B2.1']);
+      expect(viewer.sortProfileRows(rows, 'nodes', false).map(row => row.ppKey)).toEqual(['B2.1', 'B1.0', 'B0.0']);
+    });
+
+    it('should put rows without value last when sorting by decreasing values', function() {
+      expect(viewer.sortProfileRows(rows, 'line', true).map(row => row.ppKey)).toEqual(['B2.1', 'B1.0', 'B0.0']);
+    });
+
+    it('should not modify the given rows', function() {
+      viewer.sortProfileRows(rows, 'nodes', false);
+      expect(rows[0].ppKey).toBe('B1.0');
+    });
+  });
+
+  describe('getProfileTable', function() {
+    it('should mark the sorted column and color rows by number of nodes', function() {
+      const rows = [
+        {ppKey: 'B1.0', block: 1, line: 3, nodes: 1, outgoingEdges: 1, maxFanOut: 1, estimatedBytes: 512},
+        {ppKey: 'B0.0', block: 0, line: null, nodes: 4, outgoingEdges: 0, maxFanOut: 0, estimatedBytes: 2048}
+      ];
+
+      const output = viewer.getProfileTable(rows, 'nodes', true);
+
+      expect(output).toContain('<th data-sort="nodes">Nodes &#9660;</th>');
+      expect(output).toContain('<th data-sort="line">Line</th>');
+      expect(output.indexOf('B0.0')).toBeLessThan(output.indexOf('B1.0'));
+      expect(output).toContain('<tr class="heat-5"><td>B0.0</td><td></td><td>4</td><td>0</td><td>0</td><td>2.0 KB</td></tr>');
+      expect(output).toContain('<tr class="heat-2"><td>B1.0</td>');
+    });
+  });
+
+  describe('formatProfileValue', function() {
+    it('should format memory in kilobytes and hide missing values', function() {
+      expect(viewer.formatProfileValue('estimatedBytes', 1536)).toBe('1.5 KB');
+      expect(viewer.formatProfileValue('line', null)).toBe('');
+      expect(viewer.formatProfileValue('nodes', 0)).toBe('0');
+    });
+  });
+
+  describe('applyHeatToCFG', function() {
+    it('should color the blocks of the CFG', function() {
+      const nodes = new vis.DataSet([{id: 0, label: 'B0'}, {id: 1, label: 'B1'}]);
+
+      viewer.applyHeatToCFG(nodes, [{block: 0, nodes: 1, distinctStates: 1}, {block: 1, nodes: 5, distinctStates: 3}, {block: 7, nodes: 2, distinctStates: 2}]);
+
+      expect(nodes.get(0).color.background).toBe('#ffffb2');
+      expect(nodes.get(1).color.background).toBe('#bd0026');
+      expect(nodes.length).toBe(2);
+    });
+  });
+
+  describe('applyHeatToEditor', function() {
+    it('should color the lines of the editor by cumulated number of nodes', function() {
+      const classes = {};
+      const mockEditor = {
+        addLineClass(line, where, cssClass) {
+          classes[line] = cssClass;
+        }
+      };
+
+      const nodesByLine = viewer.applyHeatToEditor(mockEditor, [
+        {ppKey: 'B1.0', line: 3, nodes: 2},
+        {ppKey: 'B1.1', line: 3, nodes: 2},
+        {ppKey: 'B2.0', line: 5, nodes: 1},
+        {ppKey: 'B0.0', line: null, nodes: 8}
+      ]);
+
+      expect(nodesByLine).toEqual({3: 4, 5: 1});
+      expect(classes).toEqual({2: 'heat-5', 4: 'heat-2'});
+    });
+  });
+
+  describe('parseServerSentEvents', function() {
+    it('should parse complete events and keep the incomplete one', function() {
+      const parsed = viewer.parseServerSentEvents('event: batch\ndata: {"nodes":[]}\n\nevent: error\ndata: first\ndata: second\n\nevent: done\ndata: {"gr');
+
+      expect(parsed.events).toEqual([
+        {event: 'batch', data: '{"nodes":[]}'},
+        {event: 'error', data: 'first\nsecond'}
+      ]);
+      expect(parsed.rest).toBe('event: done\ndata: {"gr');
+    });
+
+    it('should use default event type and ignore events without data', function() {
+      const parsed = viewer.parseServerSentEvents('data: foo\n\n: comment\n\n');
+
+      expect(parsed.events).toEqual([{event: 'message', data: 'foo'}]);
+      expect(parsed.rest).toBe('');
+    });
+  });
+
+  describe('applyGraphBatch', function() {
+    it('should add colored nodes and edges to the network', function() {
+      const network = {
+        nodes: new vis.DataSet([{id: 0, label: 'B2.0'}]),
+        edges: new vis.DataSet([])
+      };
+
+      viewer.applyGraphBatch(network, {
+        nodes: [{id: 1, label: 'B1.0'}, {id: 2, label: 'B0.0', highlighting: 'exitNode'}],
+        edges: [{from: 0, to: 1}, {from: 1, to: 2}]
+      });
+
+      expect(network.nodes.length).toBe(3);
+      expect(network.nodes.get(0).color).toBeUndefined();
+      expect(network.nodes.get(1).color.background).toBe('#eee');
+      expect(network.nodes.get(2).color.background).toBe('black');
+      expect(network.edges.get('1-2')).toMatchObject({from: 1, to: 2});
+      expect(network.edges.length).toBe(2);
+    });
+  });
+
+  describe('replaceGraph', function() {
+    it('should replace the content of the data sets of the network', function() {
+      const nodes = new vis.DataSet([{id: 5, label: 'B3.0'}]);
+      const network = {
+        nodes: nodes,
+        edges: new vis.DataSet([{from: 5, to: 5}]),
+        eg: {ppMap: {}}
+      };
+
+      viewer.replaceGraph(network, {
+        nodes: [{id: 0, label: 'B1.0', details: {ppKey: 'B1.0'}}, {id: 1, label: 'B0.0'}],
+        edges: [{from: 0, to: 1}]
+      });
+
+      expect(network.nodes).toBe(nodes);
+      expect(network.nodes.getIds()).toEqual([0, 1]);
+      expect(network.edges.length).toBe(1);
+      expect(network.eg.ppMap).toEqual({'B1.0': [0]});
+    });
+  });
+
+  describe('parseDot', function() {
+    it('should parse nodes and edges with their attributes', function() {
+      const parsed = viewer.parseDot('graph ExplodedGraph {0[details="{?ppKey?:?B1.0?}",label="B1.0  IDENTIFIER L#2",highlighting="firstNode"];'
+        + '1[label="B0.0  "];0->1[label="x = [1; 2]",highlighting="exceptionEdge"];1->0[];}');
+
+      expect(parsed.nodes).toEqual([
+        {id: 0, details: '{?ppKey?:?B1.0?}', label: 'B1.0  IDENTIFIER L#2', highlighting: 'firstNode'},
+        {id: 1, label: 'B0.0  '}
+      ]);
+      expect(parsed.edges).toEqual([
+        {from: 0, to: 1, label: 'x = [1; 2]', highlighting: 'exceptionEdge', arrows: 'to'},
+        {from: 1, to: 0, arrows: 'to'}
+      ]);
+    });
+
+    it('should merge attributes of nodes declared again', function() {
+      const parsed = viewer.parseDot('graph CFG {0[label="B0"];0[highlighting="exitNode"];}');
+
+      expect(parsed.nodes).toEqual([{id: 0, label: 'B0', highlighting: 'exitNode'}]);
+      expect(parsed.edges).toEqual([]);
+    });
+
+    it('should parse empty graphs', function() {
+      expect(viewer.parseDot('graph ExplodedGraph {}')).toEqual({nodes: [], edges: []});
+    });
+  });
+
+  describe('prepareGraph', function() {
+    it('should decode details and color nodes and edges', function() {
+      const prepared = viewer.prepareGraph({
+        nodes: [{id: 0, label: 'a &quot;b&quot;', details: '{?ppKey?:?B1.0?}', highlighting: 'exitNode'}],
+        edges: [{from: 0, to: 0, highlighting: 'yieldEdge'}]
+      });
+
+      expect(prepared.nodes[0].label).toBe('a "b"');
+      expect(prepared.nodes[0].details).toEqual({ppKey: 'B1.0'});
+      expect(prepared.nodes[0].color.background).toBe('black');
+      expect(prepared.edges[0].color.color).toBe('purple');
+    });
+  });
+
+  describe('programPointClusters', function() {
+    it('should group nodes by program point', function() {
+      const nodes = new vis.DataSet([
+        {id: 0, details: {ppKey: 'B1.0'}},
+        {id: 1, details: {ppKey: 'B1.0'}},
+        {id: 2, details: {ppKey: 'B0.0'}}
+      ]);
+
+      expect(viewer.programPointClusters(nodes)).toEqual({
+        'B1.0': {label: 'B1.0', nodes: [0, 1]},
+        'B0.0': {label: 'B0.0', nodes: [2]}
+      });
+    });
+  });
+
+  describe('subtreeClusters', function() {
+    it('should group nodes under their closest class or method', function() {
+      const nodes = [
+        {id: 0, label: 'COMPILATION_UNIT'},
+        {id: 1, label: 'CLASS A', highlighting: 'classKind'},
+        {id: 2, label: 'IDENTIFIER', highlighting: 'tokenKind'},
+        {id: 3, label: 'METHOD foo', highlighting: 'methodKind'},
+        {id: 4, label: 'BLOCK'},
+        {id: 5, label: '{', highlighting: 'tokenKind'}
+      ];
+      const edges = [{from: 0, to: 1}, {from: 1, to: 2}, {from: 1, to: 3}, {from: 3, to: 4}, {from: 4, to: 5}];
+
+      expect(viewer.subtreeClusters(nodes, edges, ['classKind', 'methodKind'])).toEqual({
+        1: {label: 'CLASS A', nodes: [1, 2]},
+        3: {label: 'METHOD foo', nodes: [3, 4, 5]}
+      });
+    });
+  });
+
+  describe('clusterGraph', function() {
+    function mockNetwork(threshold, ppKeys) {
+      const clusters = [];
+      const events = [];
+      const bodyNodes = {};
+      const nodes = ppKeys.map((ppKey, id) => ({id: id, details: {ppKey: ppKey}}));
+      const edges = nodes.slice(1).map(node => ({id: `e${node.id}`, from: node.id - 1, to: node.id}));
+      nodes.forEach(node => {
+        bodyNodes[node.id] = {id: node.id, edges: edges.filter(edge => edge.from === node.id || edge.to === node.id)};
+      });
+      return {
+        nodes: new vis.DataSet(nodes),
+        edges: new vis.DataSet(edges),
+        clusteringOptions: {threshold: threshold, groups: viewer.programPointClusters},
+        clustered: clusters,
+        events: events,
+        body: {
+          nodes: bodyNodes,
+          emitter: {
+            emit(event) {
+              events.push(event);
+            }
+          },
+          modules: {
+            clustering: {
+              clusteredEdges: {e1: {}},
+              _cluster(childNodes, childEdges, options, refreshData) {
+                clusters.push({
+                  id: options.clusterNodeProperties.id,
+                  label: options.clusterNodeProperties.label,
+                  members: Object.keys(childNodes).map(Number),
+                  edges: Object.keys(childEdges),
+                  refreshData: refreshData
+                });
+              }
+            }
+          }
+        }
+      };
+    }
+
+    it('should cluster each group above the threshold, refreshing the graph once', function() {
+      const network = mockNetwork(2, ['B1.0', 'B1.0', 'B0.0']);
+
+      expect(viewer.clusterGraph(network)).toBe(2);
+      expect(network.clustered).toEqual([
+        {id: 'cluster:B1.0', label: 'B1.0\n(2 nodes)', members: [0, 1], edges: ['e2'], refreshData: false},
+        {id: 'cluster:B0.0', label: 'B0.0\n(1 nodes)', members: [2], edges: ['e2'], refreshData: false}
+      ]);
+      expect(network.clusters).toEqual(['cluster:B1.0', 'cluster:B0.0']);
+      expect(network.events).toEqual(['_dataChanged']);
+    });
+
+    it('should merge consecutive groups while there are more clusters than the threshold', function() {
+      const network = mockNetwork(2, ['B3.0', 'B2.0', 'B2.0', 'B1.0']);
+
+      expect(viewer.clusterGraph(network)).toBe(2);
+      expect(network.clustered.map(cluster => [cluster.id, cluster.label, cluster.members])).toEqual([
+        ['cluster:B3.0..B2.0', 'B3.0 \u2026 B2.0\n(3 nodes)', [0, 1, 2]],
+        ['cluster:B1.0', 'B1.0\n(1 nodes)', [3]]
+      ]);
+    });
+
+    it('should not cluster small graphs', function() {
+      const network = mockNetwork(3, ['B1.0', 'B1.0', 'B0.0']);
+
+      expect(viewer.clusterGraph(network)).toBe(0);
+      expect(network.clustered).toEqual([]);
+      expect(network.events).toEqual([]);
+    });
+  });
+
+  describe('openClustersOf', function() {
+    it('should open the clusters containing the nodes', function() {
+      const opened = [];
+      const network = {
+        clusters: ['cluster:outer'],
+        findNode(nodeId) {
+          return nodeId === 1 ? ['cluster:outer', 'cluster:inner', 1] : [nodeId];
+        },
+        isCluster(id) {
+          return typeof id === 'string' && opened.indexOf(id) < 0;
+        },
+        openCluster(id) {
+          opened.push(id);
+        }
+      };
+
+      viewer.openClustersOf(network, [1, 2]);
+
+      expect(opened).toEqual(['cluster:outer', 'cluster:inner']);
+    });
+  });
+
+  describe('nodeKeys', function() {
+    it('should identify nodes of trees by their path, without line numbers', function() {
+      const nodes = [{id: 0, label: 'CLASS L#1'}, {id: 1, label: 'METHOD L#2'}, {id: 2, label: 'METHOD L#4'}, {id: 3, label: 'BLOCK L#4'}];
+      const edges = [{from: 0, to: 1}, {from: 0, to: 2}, {from: 2, to: 3}];
+
+      expect(viewer.nodeKeys(nodes, edges)).toEqual({
+        0: 'CLASS#1',
+        1: 'CLASS#1/METHOD#1',
+        2: 'CLASS#1/METHOD#2',
+        3: 'CLASS#1/METHOD#2/BLOCK#1'
+      });
+    });
+
+    it('should identify nodes of other graphs by their rank among the nodes having the same label', function() {
+      const nodes = [{id: 0, label: 'B1.0  IDENTIFIER L#3'}, {id: 1, label: 'B0.0'}, {id: 2, label: 'B1.0  IDENTIFIER L#3'}];
+      const edges = [{from: 0, to: 1}, {from: 2, to: 1}];
+
+      expect(viewer.nodeKeys(nodes, edges)).toEqual({
+        0: 'B1.0  IDENTIFIER#1',
+        1: 'B0.0#1',
+        2: 'B1.0  IDENTIFIER#2'
+      });
+    });
+  });
+
+  describe('updateGraph', function() {
+    function mockNetwork(nodes, edges) {
+      return {
+        nodes: new vis.DataSet(nodes),
+        edges: new vis.DataSet(edges),
+        getPositions() {
+          return {0: {x: 0, y: 0}, 1: {x: 10, y: 20}, 2: {x: 30, y: 40}};
+        }
+      };
+    }
+
+    it('should only apply changed nodes and edges, keeping positions', function() {
+      const network = mockNetwork(
+        [{id: 0, label: 'A L#1'}, {id: 1, label: 'B L#2'}, {id: 2, label: 'C L#3'}],
+        [{id: 'e0', from: 0, to: 1}, {id: 'e1', from: 1, to: 2}]);
+
+      const changes = viewer.updateGraph(network, {
+        nodes: [{id: 0, label: 'A L#1'}, {id: 1, label: 'X L#2'}, {id: 2, label: 'B L#3'}, {id: 3, label: 'C L#4'}],
+        edges: [{from: 0, to: 1}, {from: 0, to: 2}, {from: 2, to: 3}]
+      });
+
+      expect(changes).toEqual({nodes: {added: 3, updated: 0, removed: 2}, edges: {added: 3, removed: 2}});
+      expect(network.nodes.get(1).label).toBe('X L#2');
+      expect(network.nodes.get(2)).toMatchObject({label: 'B L#3', x: 10, y: 20});
+      expect(network.nodes.get(3)).toMatchObject({label: 'C L#4', x: 30, y: 40});
+      expect(network.edges.length).toBe(3);
+    });
+
+    it('should update nodes in place', function() {
+      const network = mockNetwork(
+        [{id: 0, label: 'B1.0', details: {ppKey: 'B1.0', psValues: []}}, {id: 1, label: 'B0.0'}],
+        [{id: 'e0', from: 0, to: 1}]);
+      network['eg'] = {ppMap: {}};
+
+      const changes = viewer.updateGraph(network, {
+        nodes: [{id: 0, label: 'B1.0', details: {ppKey: 'B1.0', psValues: [{sv: 'SV_1'}]}}, {id: 1, label: 'B0.0'}],
+        edges: [{from: 0, to: 1}]
+      });
+
+      expect(changes).toEqual({nodes: {added: 0, updated: 1, removed: 0}, edges: {added: 0, removed: 0}});
+      expect(network.nodes.get(0).details.psValues).toEqual([{sv: 'SV_1'}]);
+      expect(network.edges.getIds()).toEqual(['e0']);
+      expect(network.eg.ppMap).toEqual({'B1.0': [0]});
+    });
+  });
+
+  describe('liveMode', function() {
+    beforeEach(function() {
+      jest.useFakeTimers();
+    });
+
+    it('should submit once after a pause in typing', function() {
+      const submissions = [];
+      const live = viewer.liveMode(function(isCurrent) {
+        submissions.push(isCurrent);
+      }, 500);
+
+      live.changed();
+      jest.runTimersToTime(300);
+      live.changed();
+      jest.runTimersToTime(300);
+      expect(submissions.length).toBe(0);
+
+      jest.runTimersToTime(200);
+      expect(submissions.length).toBe(1);
+      expect(submissions[0]()).toBe(true);
+    });
+
+    it('should tell that responses of previous revisions are outdated', function() {
+      const submissions = [];
+      const live = viewer.liveMode(function(isCurrent) {
+        submissions.push(isCurrent);
+      }, 500);
+
+      live.changed();
+      jest.runAllTimers();
+      live.changed();
+
+      expect(submissions[0]()).toBe(false);
+      jest.runAllTimers();
+      expect(submissions.length).toBe(2);
+      expect(submissions[1]()).toBe(true);
+    });
+  });
+
+  describe('lazy views', function() {
+    it('should build the url of a view of an analysis', function() {
+      expect(viewer.viewUrl('abc', 'eg')).toBe('/analysis/abc/eg');
+    });
+
+    it('should draw the parsed graph and time it', function() {
+      const data = [];
+      const network = {
+        nodes: new vis.DataSet(),
+        edges: new vis.DataSet(),
+        timings: {},
+        setData(graph) {
+          data.push(graph);
+        },
+        once(event, callback) {
+          callback();
+        }
+      };
+
+      viewer.showGraph(network, {nodes: [{id: 0, label: 'A'}, {id: 1, label: 'B'}], edges: [{from: 0, to: 1}]});
+
+      expect(network.nodes.getIds()).toEqual([0, 1]);
+      expect(network.edges.length).toBe(1);
+      expect(data).toEqual([{nodes: network.nodes, edges: network.edges}]);
+      expect(Object.keys(network.timings)).toEqual(['draw', 'layout']);
+      expect(network.clusters).toEqual([]);
+    });
+
+    it('should report the failure to load a view', function() {
+      const post = $.post;
+      const errors = [];
+      $.post = jest.fn(() => $.Deferred().reject({status: 400, responseText: 'Unknown view'}).promise());
+      try {
+        viewer.loadView('abc', 'none', {timings: {}}, function() {
+          throw new Error('not loaded');
+        }, function(xhr) {
+          errors.push(xhr.responseText);
+        });
+      } finally {
+        $.post = post;
+      }
+      expect(errors).toEqual(['Unknown view']);
+    });
+
+    it('should post the source of the analysis along with the request of a view', function() {
+      const post = $.post;
+      const source = {javaCode: 'class A {}', workspace: 'default'};
+      $.post = jest.fn(() => $.Deferred().reject({status: 400, responseText: 'Source does not match analysis: abc'}).promise());
+      try {
+        viewer.loadView('abc', 'ast', {timings: {}}, function() {
+          throw new Error('not loaded');
+        }, function() {}, source);
+        expect($.post).toHaveBeenCalledWith('/analysis/abc/ast', source, null, 'json');
+      } finally {
+        $.post = post;
+      }
+    });
+
+    it('should show the time to fetch a view', function() {
+      const output = viewer.getTimings([], {ast: {timings: {fetch: 5, parse: 1, draw: 2, layout: 3}}});
+      expect(output).toEqual(expect.stringContaining('<td>ast (browser)</td><td>fetch: 5.0 ms, parse: 1.0 ms, draw: 2.0 ms, layout: 3.0 ms</td>'));
+    });
+  });
 });
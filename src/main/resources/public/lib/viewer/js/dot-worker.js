@@ -0,0 +1,15 @@
+// Parses a graph in DOT format out of the main thread, see parseDotInWorker in viewer.js
+importScripts('viewer.js');
+
+self.onmessage = function (event) {
+  const parsedData = prepareGraph(parseDot(event.data));
+  const nodes = parsedData.nodes;
+  const edges = parsedData.edges;
+  for (let i = 0; i < Math.max(nodes.length, edges.length); i += DOT_WORKER_BATCH_SIZE) {
+    self.postMessage({
+      nodes: nodes.slice(i, i + DOT_WORKER_BATCH_SIZE),
+      edges: edges.slice(i, i + DOT_WORKER_BATCH_SIZE)
+    });
+  }
+  self.postMessage({ done: true });
+};
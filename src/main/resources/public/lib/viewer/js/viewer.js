@@ -1,30 +1,46 @@
-function loadDot(DOTstring, targetContainer, hierarchical, detailsPanels) {
-  const parsedData = vis.network.convertDot(DOTstring);
+// graphs are parsed by workers loaded next to this script
+const DOT_WORKER_URL = typeof document !== 'undefined' && document.currentScript
+  ? document.currentScript.src.replace(/viewer\.js$/, 'dot-worker.js')
+  : null;
+const DOT_WORKER_BATCH_SIZE = 2000;
 
+/**
+ * @param clustering optional, with the number of nodes above which nodes are clustered, and the function giving the
+ * groups of nodes to cluster
+ */
+function loadDot(DOTstring, targetContainer, hierarchical, detailsPanels, clustering) {
+  const timings = {};
+  const start = now();
+
+  // data sets are only bound to the network once filled, to draw the graph at once
   const data = {
-    nodes: new vis.DataSet(parsedData.nodes),
-    edges: new vis.DataSet(parsedData.edges)
+    nodes: new vis.DataSet(),
+    edges: new vis.DataSet()
   };
 
-  updateDetails(data.nodes);
-  updateDetails(data.edges);
-
-  setNodesColor(data.nodes);
-  setEdgesColor(data.edges);
-
-  let network = new vis.Network(targetContainer, data);
+  let network = new vis.Network(targetContainer, {});
+  network['nodes'] = data.nodes;
+  network['edges'] = data.edges;
+  network['timings'] = timings;
+  // not named 'clustering', which holds the cluster engine of vis
+  network['clusteringOptions'] = clustering;
   changeLayout(network, hierarchical);
 
+  network.on('doubleClick', function(params) {
+    if (params.nodes.length === 1 && network.isCluster(params.nodes[0])) {
+      network.openCluster(params.nodes[0]);
+    }
+  });
+
   if (detailsPanels) {
     // by default only show info panel
     detailsPanels['info'].show();
     detailsPanels['node'].hide();
     detailsPanels['edge'].hide();
 
-    const ppMap = getPPMap(data.nodes);
     // enrich network with mapping between PP and nodes
     network['eg'] = {
-      'ppMap' : ppMap,
+      'ppMap' : {},
       'nodes' : data.nodes
     };
 
@@ -33,9 +49,155 @@ function loadDot(DOTstring, targetContainer, hierarchical, detailsPanels) {
     });
   }
 
+  if (!DOTstring) {
+    // the graph is computed when first shown, see loadView
+    network.setData(data);
+    return network;
+  }
+  parseDotInWorker(DOTstring, function (parsedData) {
+    timings['parse'] = now() - start;
+    showGraph(network, parsedData);
+  });
+
   return network;
 }
 
+function showGraph(network, parsedData) {
+  const timings = network['timings'];
+  const drawStart = now();
+
+  replaceGraph(network, parsedData);
+  network.setData({ nodes: network['nodes'], edges: network['edges'] });
+  // before the layout is computed, in the next batches of the stabilization
+  clusterGraph(network);
+
+  timings['draw'] = now() - drawStart;
+  network.once('stabilizationIterationsDone', function() {
+    timings['layout'] = now() - drawStart;
+  });
+}
+
+function viewUrl(analysisId, view) {
+  return `/analysis/${encodeURIComponent(analysisId)}/${encodeURIComponent(view)}`;
+}
+
+/**
+ * Graph computed by the server when first requested, drawn in a network created with an empty DOT
+ * @param onLoaded called with the view, once its graph is parsed and drawn
+ * @param source code and workspace of the analysis, for the server to analyze them again once the analysis is evicted
+ */
+function loadView(analysisId, view, network, onLoaded, onError, source) {
+  const start = now();
+  $.post(viewUrl(analysisId, view), source || {}, null, 'json')
+    .done(function (result) {
+      const timings = network['timings'];
+      timings['fetch'] = now() - start;
+      const parseStart = now();
+      parseDotInWorker(result.dot, function (parsedData) {
+        timings['parse'] = now() - parseStart;
+        showGraph(network, parsedData);
+        onLoaded(result);
+      });
+    })
+    .fail(onError);
+}
+
+/**
+ * Nodes and edges are parsed, decoded and colored out of the main thread, and received by batches
+ */
+function parseDotInWorker(DOTstring, onParsed) {
+  if (typeof Worker === 'undefined' || !DOT_WORKER_URL) {
+    onParsed(prepareGraph(vis.network.convertDot(DOTstring)));
+    return;
+  }
+  const nodes = [];
+  const edges = [];
+  const worker = new Worker(DOT_WORKER_URL);
+  worker.onmessage = function (event) {
+    if (event.data.done) {
+      worker.terminate();
+      onParsed({ nodes: nodes, edges: edges });
+      return;
+    }
+    Array.prototype.push.apply(nodes, event.data.nodes);
+    Array.prototype.push.apply(edges, event.data.edges);
+  };
+  worker.onerror = function (event) {
+    // fall back on the parser of vis
+    event.preventDefault();
+    worker.terminate();
+    onParsed(prepareGraph(vis.network.convertDot(DOTstring)));
+  };
+  worker.postMessage(DOTstring);
+}
+
+/**
+ * Parse the DOT produced by the server: one statement per node or edge, with quoted attribute values.
+ * Same result as vis.network.convertDot, which can not be loaded in a worker.
+ */
+function parseDot(DOTstring) {
+  const nodes = [];
+  const nodeIndexes = {};
+  const edges = [];
+  const end = DOTstring.lastIndexOf('}');
+  let i = DOTstring.indexOf('{') + 1;
+  while (i < end) {
+    const open = DOTstring.indexOf('[', i);
+    if (open < 0 || open > end) {
+      break;
+    }
+    const item = {};
+    let j = open + 1;
+    while (DOTstring[j] !== ']') {
+      const equals = DOTstring.indexOf('=', j);
+      const valueEnd = DOTstring.indexOf('"', equals + 2);
+      item[DOTstring.substring(j, equals).trim()] = DOTstring.substring(equals + 2, valueEnd);
+      j = DOTstring[valueEnd + 1] === ',' ? valueEnd + 2 : valueEnd + 1;
+    }
+    const statement = DOTstring.substring(i, open);
+    const arrow = statement.indexOf('->');
+    if (arrow < 0) {
+      item['id'] = dotId(statement);
+      const index = nodeIndexes[item['id']];
+      if (index === undefined) {
+        nodeIndexes[item['id']] = nodes.length;
+        nodes.push(item);
+      } else {
+        // attributes of a node declared again are merged
+        Object.assign(nodes[index], item);
+      }
+    } else {
+      item['from'] = dotId(statement.substring(0, arrow));
+      item['to'] = dotId(statement.substring(arrow + 2));
+      item['arrows'] = 'to';
+      edges.push(item);
+    }
+    i = DOTstring.indexOf(';', j) + 1;
+  }
+  return { nodes: nodes, edges: edges };
+}
+
+function dotId(text) {
+  const id = text.trim();
+  const number = Number(id);
+  return isNaN(number) ? id : number;
+}
+
+/**
+ * Decode details and set colors of nodes and edges, as plain objects
+ */
+function prepareGraph(parsedData) {
+  parsedData.nodes.forEach(function (node) {
+    decodeDetails(node);
+    colorNode(node, node.highlighting);
+  });
+  parsedData.edges.forEach(function (edge) {
+    decodeDetails(edge);
+    colorEdge(edge);
+  });
+  return parsedData;
+}
+
 function clickAction(params, data, network, detailsPanels) {
   // reset any custom color from selection
   setNodesColor(data.nodes);
@@ -76,23 +238,27 @@ function clickAction(params, data, network, detailsPanels) {
 
 function updateDetails(collection) {
   collection.forEach(function (item) {
-    let changed = false;
-    const label = item['label'];
-    if (label) {
-      item['label'] = unescapeSpecialChars(item['label']);
-      changed = true;
-    }
-    const details = item['details'];
-    if (details) {
-      item['details'] = JSON.parse(details.replace(/\?/g, '"'));
-      changed = true;
-    }
-    if (changed) {
+    if (decodeDetails(item)) {
       collection.update(item);
     }
   });
 }
 
+function decodeDetails(item) {
+  let changed = false;
+  const label = item['label'];
+  if (label) {
+    item['label'] = unescapeSpecialChars(item['label']);
+    changed = true;
+  }
+  const details = item['details'];
+  if (details) {
+    item['details'] = JSON.parse(details.replace(/\?/g, '"'));
+    changed = true;
+  }
+  return changed;
+}
+
 function unescapeSpecialChars(text) {
   let result = text;
   result = result.replace(/&quest;/g, '?');
@@ -293,102 +459,124 @@ function inArray(value, array) {
 
 function setNodesColor(nodes, selectedNodesIds, forcedHighlighting) {
   nodes.forEach(function (node) {
-    // common properties
-    node['color'] = {
-      background: '#eee',
-      border: 'gray',
-      highlight: {
-        background: 'yellow',
-        border: 'gold'
-      }
-    };
-    node['font'] = {
-      size: 12,
-      face: 'monospace',
-      color: '#333',
-      align: 'left'
-    };
-
-    const highlighting = inArray(node.id, selectedNodesIds) ? forcedHighlighting : node.highlighting;
-
-    let newBackgroundColor, newBorderColor, newFontColor;
-    switch(highlighting) {
-      case 'firstNode':
-        newBackgroundColor = 'palegreen';
-        newBorderColor = 'limegreen';
-        break;
-      case 'exitNode':
-        newBackgroundColor = 'black';
-        newBorderColor = 'dimgray';
-        newFontColor = 'white';
-        break;
-      case 'lostNode':
-        newBackgroundColor = 'red';
-        newBorderColor = 'firebrick';
-        newFontColor = 'white';
-        break;
-      case 'tokenKind':
-        newBackgroundColor = 'black';
-        newBorderColor = 'dimgray';
-        newFontColor = 'white';
-        node['shape'] = 'box';
-        break;
-      case 'classKind':
-        newBackgroundColor = 'pink';
-        newBorderColor = 'red';
-        break;
-      case 'methodKind':
-        newBackgroundColor = 'skyblue';
-        newBorderColor = 'blue';
-        break;
-      case 'samePP':
-        newBackgroundColor = 'pink';
-        newBorderColor = 'mediumvioletred';
-        newFontColor = 'black';
-        break;
-    }
-    if (newBackgroundColor) {
-      node['color']['background'] = newBackgroundColor;
-    }
-    if (newBorderColor) {
-      node['color']['border'] = newBorderColor;
-    }
-    if (newFontColor) {
-      node['font']['color'] = newFontColor;
-    }
+    colorNode(node, inArray(node.id, selectedNodesIds) ? forcedHighlighting : node.highlighting);
     nodes.update(node);
   });
 }
 
-function setEdgesColor(edges) {
-  edges.forEach(function (edge) {
-    // common properties
-    edge['color'] = {
-      color: 'gray',
-      highlight: 'yellow'
-    };
-    edge['font'] = {
-      size: 10,
-      color: 'gray'
-    };
-
-    switch(edge.highlighting) {
-      case 'exceptionEdge':
-        edge['color']['color'] = 'red';
-        edge['font']['color'] = 'red';
-        break;
-      case 'yieldEdge':
-        edge['color']['color'] = 'purple';
-        edge['font']['color'] = 'purple';
-        break;
-      default:
-        // do nothing
+function colorNode(node, highlighting) {
+  // common properties
+  node['color'] = {
+    background: '#eee',
+    border: 'gray',
+    highlight: {
+      background: 'yellow',
+      border: 'gold'
     }
+  };
+  node['font'] = {
+    size: 12,
+    face: 'monospace',
+    color: '#333',
+    align: 'left'
+  };
+
+  let newBackgroundColor, newBorderColor, newFontColor;
+  switch(highlighting) {
+    case 'firstNode':
+      newBackgroundColor = 'palegreen';
+      newBorderColor = 'limegreen';
+      break;
+    case 'exitNode':
+      newBackgroundColor = 'black';
+      newBorderColor = 'dimgray';
+      newFontColor = 'white';
+      break;
+    case 'lostNode':
+      newBackgroundColor = 'red';
+      newBorderColor = 'firebrick';
+      newFontColor = 'white';
+      break;
+    case 'addedNode':
+      newBackgroundColor = 'palegreen';
+      newBorderColor = 'green';
+      break;
+    case 'removedNode':
+      newBackgroundColor = 'mistyrose';
+      newBorderColor = 'red';
+      break;
+    case 'changedNode':
+      newBackgroundColor = 'lightyellow';
+      newBorderColor = 'orange';
+      break;
+    case 'tokenKind':
+      newBackgroundColor = 'black';
+      newBorderColor = 'dimgray';
+      newFontColor = 'white';
+      node['shape'] = 'box';
+      break;
+    case 'classKind':
+      newBackgroundColor = 'pink';
+      newBorderColor = 'red';
+      break;
+    case 'methodKind':
+      newBackgroundColor = 'skyblue';
+      newBorderColor = 'blue';
+      break;
+    case 'samePP':
+      newBackgroundColor = 'pink';
+      newBorderColor = 'mediumvioletred';
+      newFontColor = 'black';
+      break;
+    case 'queryMatch':
+      newBackgroundColor = 'gold';
+      newBorderColor = 'darkorange';
+      newFontColor = 'black';
+      break;
+  }
+  if (newBackgroundColor) {
+    node['color']['background'] = newBackgroundColor;
+  }
+  if (newBorderColor) {
+    node['color']['border'] = newBorderColor;
+  }
+  if (newFontColor) {
+    node['font']['color'] = newFontColor;
+  }
+}
 
+function setEdgesColor(edges) {
+  edges.forEach(function (edge) {
+    colorEdge(edge);
     edges.update(edge);
   });
 }
 
+function colorEdge(edge) {
+  // common properties
+  edge['color'] = {
+    color: 'gray',
+    highlight: 'yellow'
+  };
+  edge['font'] = {
+    size: 10,
+    color: 'gray'
+  };
+
+  switch(edge.highlighting) {
+    case 'exceptionEdge':
+      edge['color']['color'] = 'red';
+      edge['font']['color'] = 'red';
+      break;
+    case 'yieldEdge':
+      edge['color']['color'] = 'purple';
+      edge['font']['color'] = 'purple';
+      break;
+    default:
+      // do nothing
+  }
+}
+
 function getPPMap(nodes) {
   let result = {};
   nodes.forEach(function (node) {
@@ -468,6 +656,860 @@ function handleNewPP(editor, network) {
   highlightAllNodesAtSamePP(ppKey, nodeIdsWithSamePP, network['eg']['nodes'], network);
 }
 
+function parseGraphQuery(text) {
+  // 'SV_12', 'SV_12=NULL', 'x', 'x=NOT_NULL' or 'NULL'
+  const query = {};
+  const parts = text.split('=');
+  const term = parts[0].trim();
+  if (parts.length > 1) {
+    query['constraint'] = parts[1].trim();
+  }
+  if (/^SV_\w+$/.test(term)) {
+    query['sv'] = term;
+  } else if (parts.length === 1 && /^[A-Z][A-Z_]*$/.test(term)) {
+    query['constraint'] = term;
+  } else if (term) {
+    query['symbol'] = term;
+  }
+  return query;
+}
+
+function graphQueryUrl(graphId, query) {
+  const parameters = [];
+  for (let name in query) {
+    parameters.push(`${name}=${encodeURIComponent(query[name])}`);
+  }
+  return `/graph/${encodeURIComponent(graphId)}/query?${parameters.join('&')}`;
+}
+
+function graphSearchUrl(graphId, text) {
+  return `/graph/${encodeURIComponent(graphId)}/search?q=${encodeURIComponent(text)}`;
+}
+
+function graphPathsUrl(graphId, query, parameters) {
+  const encoded = [];
+  for (let name in parameters) {
+    encoded.push(`${name}=${encodeURIComponent(parameters[name])}`);
+  }
+  return `/graph/${encodeURIComponent(graphId)}/${query}?${encoded.join('&')}`;
+}
+
+function queryGraph(graphId, query, network, resultContainer) {
+  showMatches(graphQueryUrl(graphId, query), network, resultContainer, highlightMatches);
+}
+
+function searchGraph(graphId, text, network, resultContainer) {
+  showMatches(graphSearchUrl(graphId, text), network, resultContainer, selectMatches);
+}
+
+function queryPaths(graphId, query, parameters, network, resultContainer) {
+  showMatches(graphPathsUrl(graphId, query, parameters), network, resultContainer, highlightMatches);
+}
+
+function showMatches(url, network, resultContainer, show) {
+  $.getJSON(url)
+    .done(function (result) {
+      // paths are shown as the nodes and edges they go through
+      const matches = result.paths ? pathsToMatches(result.paths) : result;
+      const edgeIds = show(matches, network);
+      resultContainer.html(getMatchesSummary(matches, edgeIds, result.truncated));
+    })
+    .fail(function (xhr) {
+      resultContainer.html(getGraphRequestError(xhr));
+    });
+}
+
+function pathsToMatches(paths) {
+  const nodes = [];
+  const edges = [];
+  const seen = {};
+  paths.forEach(function (path) {
+    for (let i = 0; i < path.length; i++) {
+      if (!seen[path[i]]) {
+        seen[path[i]] = true;
+        nodes.push(path[i]);
+      }
+      if (i > 0) {
+        edges.push([path[i - 1], path[i]]);
+      }
+    }
+  });
+  return { nodes: nodes, edges: edges };
+}
+
+function getMatchesSummary(matches, edgeIds, truncated) {
+  const summary = `${matches.nodes.length} node(s), ${edgeIds.length} edge(s)`;
+  return truncated ? `${summary} <em>(truncated)</em>` : summary;
+}
+
+function getGraphRequestError(xhr) {
+  const message = xhr.status === 404 ? 'Graph no longer available, submit the code again' : xhr.responseText;
+  return `<em>${escapeHtml(message)}</em>`;
+}
+
+function matchingEdgeIds(edges, matchingEdges) {
+  const expected = {};
+  matchingEdges.forEach(function (edge) {
+    expected[`${edge[0]}->${edge[1]}`] = true;
+  });
+  const result = [];
+  edges.forEach(function (edge) {
+    if (expected[`${edge.from}->${edge.to}`]) {
+      result.push(edge.id);
+    }
+  });
+  return result;
+}
+
+function highlightMatches(matches, network) {
+  openClustersOf(network, matches.nodes);
+  const edgeIds = matchingEdgeIds(network['edges'], matches.edges);
+  setNodesColor(network['eg']['nodes'], matches.nodes, 'queryMatch');
+  network.selectEdges(edgeIds);
+  network.redraw();
+  return edgeIds;
+}
+
+function selectMatches(matches, network) {
+  // matches are ranked: the best one is focused
+  openClustersOf(network, matches.nodes);
+  const edgeIds = matchingEdgeIds(network['edges'], matches.edges);
+  network.setSelection({ nodes: matches.nodes, edges: edgeIds }, { highlightEdges: false });
+  if (matches.nodes.length > 0) {
+    network.focus(matches.nodes[0], { animation: true });
+  }
+  return edgeIds;
+}
+
+// from no node (gray) to the program points having the most nodes (dark red)
+const HEAT_COLORS = ['#eee', '#ffffb2', '#fecc5c', '#fd8d3c', '#f03b20', '#bd0026'];
+
+const PROFILE_COLUMNS = [
+  { key: 'ppKey', title: 'Program point' },
+  { key: 'line', title: 'Line' },
+  { key: 'nodes', title: 'Nodes' },
+  { key: 'outgoingEdges', title: 'Outgoing edges' },
+  { key: 'maxFanOut', title: 'Max fan-out' },
+  { key: 'estimatedBytes', title: 'Estimated memory' }
+];
+
+function loadProfile(graphId, container, cfgNetwork, editor) {
+  $.getJSON(`/graph/${encodeURIComponent(graphId)}/profile`)
+    .done(function (profile) {
+      showProfile(profile, container, 'nodes', true);
+      applyHeatToCFG(cfgNetwork['nodes'], profile.blocks);
+      applyHeatToEditor(editor, profile.programPoints);
+    })
+    .fail(function (xhr) {
+      container.html(getGraphRequestError(xhr));
+    });
+}
+
+function showProfile(profile, container, sortKey, descending) {
+  let result = `<p>${profile.nodes} node(s), ${profile.edges} edge(s)</p>`;
+  result += getProfileTable(profile.programPoints, sortKey, descending);
+  result += getBlocksProfileTable(profile.blocks);
+  container.html(result);
+  container.find('th[data-sort]').on('click', function () {
+    const key = $(this).attr('data-sort');
+    showProfile(profile, container, key, key === sortKey ? !descending : true);
+  });
+}
+
+function sortProfileRows(rows, key, descending) {
+  return rows.slice().sort(function (row1, row2) {
+    // rows without value (as program points without line) come last
+    const value1 = row1[key] === null || row1[key] === undefined ? -Infinity : row1[key];
+    const value2 = row2[key] === null || row2[key] === undefined ? -Infinity : row2[key];
+    let result = 0;
+    if (value1 < value2) {
+      result = -1;
+    } else if (value1 > value2) {
+      result = 1;
+    }
+    return descending ? -result : result;
+  });
+}
+
+function getProfileTable(rows, sortKey, descending) {
+  let result = '<tr>';
+  PROFILE_COLUMNS.forEach(function (column) {
+    let arrow = '';
+    if (column.key === sortKey) {
+      arrow = descending ? ' &#9660;' : ' &#9650;';
+    }
+    result += `<th data-sort="${column.key}">${column.title}${arrow}</th>`;
+  });
+  result += '</tr>';
+  const maxNodes = Math.max(0, ...rows.map(row => row.nodes));
+  sortProfileRows(rows, sortKey, descending).forEach(function (row) {
+    let cells = '';
+    PROFILE_COLUMNS.forEach(function (column) {
+      cells += tableCell(formatProfileValue(column.key, row[column.key]));
+    });
+    result += `<tr class="heat-${heatLevel(row.nodes, maxNodes)}">${cells}</tr>`;
+  });
+  return table(result, 'profile-table');
+}
+
+function getBlocksProfileTable(blocks) {
+  let result = '<tr><th>Block</th><th>Nodes</th><th>Distinct program states</th></tr>';
+  blocks.forEach(function (block) {
+    result += tableRow(tableCell(`B${block.block}`) + tableCell(block.nodes) + tableCell(block.distinctStates));
+  });
+  return table(result, 'profile-table');
+}
+
+function formatProfileValue(key, value) {
+  if (value === null || value === undefined) {
+    return '';
+  }
+  if (key === 'estimatedBytes') {
+    return `${(value / 1024).toFixed(1)} KB`;
+  }
+  return `${value}`;
+}
+
+function heatLevel(value, max) {
+  if (!value || !max) {
+    return 0;
+  }
+  return Math.max(1, Math.ceil((HEAT_COLORS.length - 1) * value / max));
+}
+
+function applyHeatToCFG(nodes, blocks) {
+  const maxNodes = Math.max(0, ...blocks.map(block => block.nodes));
+  blocks.forEach(function (block) {
+    const node = nodes.get(block.block);
+    if (node) {
+      node['color'] = { background: HEAT_COLORS[heatLevel(block.nodes, maxNodes)], border: 'gray' };
+      nodes.update(node);
+    }
+  });
+}
+
+function applyHeatToEditor(editor, programPoints) {
+  const nodesByLine = {};
+  programPoints.forEach(function (programPoint) {
+    if (programPoint.line) {
+      nodesByLine[programPoint.line] = (nodesByLine[programPoint.line] || 0) + programPoint.nodes;
+    }
+  });
+  let maxNodes = 0;
+  for (let line in nodesByLine) {
+    maxNodes = Math.max(maxNodes, nodesByLine[line]);
+  }
+  for (let line in nodesByLine) {
+    // lines of the editor start at 0
+    editor.addLineClass(line - 1, 'background', `heat-${heatLevel(nodesByLine[line], maxNodes)}`);
+  }
+  return nodesByLine;
+}
+
+function streamGraph(url, formData, network, onDone, onError) {
+  let buffer = '';
+  const decoder = new TextDecoder();
+
+  function handleEvents() {
+    const parsed = parseServerSentEvents(buffer);
+    buffer = parsed.rest;
+    parsed.events.forEach(function (event) {
+      switch(event.event) {
+        case 'batch':
+          applyGraphBatch(network, JSON.parse(event.data));
+          break;
+        case 'done':
+          onDone(JSON.parse(event.data));
+          break;
+        case 'error':
+          onError(event.data);
+          break;
+      }
+    });
+  }
+
+  return fetch(url, { method: 'POST', body: new URLSearchParams(formData) })
+    .then(function (response) {
+      if (!response.ok) {
+        return response.text().then(function (text) {
+          onError(text || response.statusText);
+        });
+      }
+      const reader = response.body.getReader();
+      function read() {
+        return reader.read().then(function (chunk) {
+          if (chunk.done) {
+            return;
+          }
+          buffer += decoder.decode(chunk.value, { stream: true });
+          handleEvents();
+          return read();
+        });
+      }
+      return read();
+    })
+    .catch(function (error) {
+      onError(error.message);
+    });
+}
+
+function parseServerSentEvents(text) {
+  const events = [];
+  const blocks = text.split('\n\n');
+  // last block is not complete yet
+  const rest = blocks.pop();
+  blocks.forEach(function (block) {
+    let event = 'message';
+    const data = [];
+    block.split('\n').forEach(function (line) {
+      if (line.startsWith('event:')) {
+        event = line.substring('event:'.length).trim();
+      } else if (line.startsWith('data:')) {
+        data.push(line.substring('data:'.length).replace(/^ /, ''));
+      }
+    });
+    if (data.length > 0) {
+      events.push({ event: event, data: data.join('\n') });
+    }
+  });
+  return { events: events, rest: rest };
+}
+
+function applyGraphBatch(network, batch) {
+  // only the new items are colored, the ones already drawn are left untouched
+  batch.nodes.forEach(function (node) {
+    colorNode(node, node.highlighting);
+  });
+  const edges = batch.edges.map(function (edge) {
+    const result = { id: `${edge.from}-${edge.to}`, from: edge.from, to: edge.to, arrows: 'to' };
+    colorEdge(result);
+    return result;
+  });
+  network['nodes'].update(batch.nodes);
+  network['edges'].update(edges);
+}
+
+/**
+ * @param parsedData nodes and edges already decoded and colored
+ */
+function replaceGraph(network, parsedData) {
+  // data sets are kept, as they are shared with the handlers of the network
+  network['nodes'].clear();
+  network['edges'].clear();
+  network['nodes'].add(parsedData.nodes);
+  network['edges'].add(parsedData.edges);
+  if (network['eg']) {
+    network['eg']['ppMap'] = getPPMap(network['nodes']);
+  }
+}
+
+/**
+ * Keys identifying the nodes of a graph from one version of the code to the next one: labels without line numbers,
+ * preceded by the key of the parent for trees, and followed by the rank of the node among the ones having the same key
+ * @return the keys by node id
+ */
+function nodeKeys(nodes, edges) {
+  const nodesById = {};
+  nodes.forEach(function (node) {
+    nodesById[node.id] = node;
+  });
+  const children = {};
+  const hasParent = {};
+  let tree = true;
+  edges.forEach(function (edge) {
+    if (hasParent[edge.to]) {
+      tree = false;
+    }
+    hasParent[edge.to] = true;
+    if (!children[edge.from]) {
+      children[edge.from] = [];
+    }
+    children[edge.from].push(edge.to);
+  });
+
+  const keys = {};
+  const ranks = {};
+  function setKey(nodeId, prefix) {
+    const node = nodesById[nodeId];
+    const key = prefix + (node ? keyLabel(node.label) : '');
+    ranks[key] = (ranks[key] || 0) + 1;
+    keys[nodeId] = `${key}#${ranks[key]}`;
+  }
+  if (!tree) {
+    nodes.forEach(function (node) {
+      setKey(node.id, '');
+    });
+    return keys;
+  }
+  // siblings are ranked in the order of the edges
+  const queue = [];
+  nodes.forEach(function (node) {
+    if (!hasParent[node.id]) {
+      setKey(node.id, '');
+      queue.push(node.id);
+    }
+  });
+  for (let i = 0; i < queue.length; i++) {
+    (children[queue[i]] || []).forEach(function (child) {
+      if (keys[child] === undefined) {
+        setKey(child, `${keys[queue[i]]}/`);
+        queue.push(child);
+      }
+    });
+  }
+  return keys;
+}
+
+function keyLabel(label) {
+  return (label || '').replace(/ L#\d+/g, '').trim();
+}
+
+function edgeKeys(edges, keys) {
+  const result = [];
+  const ranks = {};
+  edges.forEach(function (edge) {
+    const key = `${keys[edge.from]}->${keys[edge.to]}:${edge.label || ''}`;
+    ranks[key] = (ranks[key] || 0) + 1;
+    result.push(`${key}#${ranks[key]}`);
+  });
+  return result;
+}
+
+function sameContent(item, other) {
+  return item.label === other.label
+    && item.highlighting === other.highlighting
+    && JSON.stringify(item.details) === JSON.stringify(other.details);
+}
+
+/**
+ * Apply to the data sets of the network only the differences with the new version of the graph. Nodes are matched by
+ * key: the ones having a new id are added again at the position of their previous version.
+ * @param parsedData nodes and edges already decoded and colored
+ * @return the number of changed nodes and edges
+ */
+function updateGraph(network, parsedData) {
+  const oldNodes = network['nodes'].get();
+  const oldEdges = network['edges'].get();
+  const oldKeys = nodeKeys(oldNodes, oldEdges);
+  const newKeys = nodeKeys(parsedData.nodes, parsedData.edges);
+  const positions = network.getPositions();
+
+  const oldNodesByKey = {};
+  oldNodes.forEach(function (node) {
+    oldNodesByKey[oldKeys[node.id]] = node;
+  });
+  const keptNodeIds = {};
+  const removedNodeIds = [];
+  const updatedNodes = [];
+  const addedNodes = [];
+  parsedData.nodes.forEach(function (node) {
+    const oldNode = oldNodesByKey[newKeys[node.id]];
+    if (!oldNode) {
+      addedNodes.push(node);
+      return;
+    }
+    keptNodeIds[oldNode.id] = true;
+    if (oldNode.id !== node.id) {
+      removedNodeIds.push(oldNode.id);
+      const position = positions[oldNode.id];
+      if (position) {
+        node['x'] = position.x;
+        node['y'] = position.y;
+      }
+      addedNodes.push(node);
+    } else if (!sameContent(oldNode, node)) {
+      updatedNodes.push(node);
+    }
+  });
+  oldNodes.forEach(function (node) {
+    if (!keptNodeIds[node.id]) {
+      removedNodeIds.push(node.id);
+    }
+  });
+
+  const oldEdgesByKey = {};
+  edgeKeys(oldEdges, oldKeys).forEach(function (key, i) {
+    oldEdgesByKey[key] = oldEdges[i];
+  });
+  const keptEdgeIds = {};
+  const addedEdges = [];
+  edgeKeys(parsedData.edges, newKeys).forEach(function (key, i) {
+    const edge = parsedData.edges[i];
+    const oldEdge = oldEdgesByKey[key];
+    if (oldEdge && oldEdge.from === edge.from && oldEdge.to === edge.to && sameContent(oldEdge, edge)) {
+      keptEdgeIds[oldEdge.id] = true;
+    } else {
+      addedEdges.push(edge);
+    }
+  });
+  const removedEdgeIds = oldEdges.filter(edge => !keptEdgeIds[edge.id]).map(edge => edge.id);
+
+  network['edges'].remove(removedEdgeIds);
+  network['nodes'].remove(removedNodeIds);
+  network['nodes'].update(updatedNodes);
+  network['nodes'].add(addedNodes);
+  network['edges'].add(addedEdges);
+  if (network['eg']) {
+    network['eg']['ppMap'] = getPPMap(network['nodes']);
+  }
+  return {
+    nodes: { added: addedNodes.length, updated: updatedNodes.length, removed: removedNodeIds.length },
+    edges: { added: addedEdges.length, removed: removedEdgeIds.length }
+  };
+}
+
+/**
+ * Graphs of a new version of the code are fetched and applied to the networks of the page, without reloading it.
+ * Graphs missing from the response, not computed at the requested stage, are left untouched.
+ * @param isCurrent optional, tells if the response is still expected: outdated responses are ignored
+ */
+function regenerateGraphs(formData, networks, onDone, onError, isCurrent) {
+  const current = isCurrent || function () {
+    return true;
+  };
+  $.ajax({ url: '/graphs', method: 'POST', data: formData, dataType: 'json' })
+    .done(function (graphs) {
+      if (!current()) {
+        return;
+      }
+      const dots = { eg: graphs.dotEG, cfg: graphs.dotCFG, ast: graphs.dotAST, callgraph: graphs.dotCallGraph };
+      const names = Object.keys(dots).filter(name => networks[name] && dots[name]);
+      const changes = {};
+      let pending = names.length;
+      if (pending === 0) {
+        onDone(graphs, changes);
+      }
+      names.forEach(function (name) {
+        parseDotInWorker(dots[name], function (parsedData) {
+          if (!current()) {
+            return;
+          }
+          const network = networks[name];
+          unclusterGraph(network);
+          changes[name] = updateGraph(network, parsedData);
+          clusterGraph(network);
+          pending--;
+          if (pending === 0) {
+            onDone(graphs, changes);
+          }
+        });
+      });
+    })
+    .fail(function (xhr) {
+      if (current()) {
+        onError(xhr);
+      }
+    });
+}
+
+const LIVE_MODE_DELAY = 500;
+
+/**
+ * Live mode: the code is submitted after a pause in typing, in two stages. Graphs not requiring the symbolic execution
+ * are received first, and responses for previous revisions of the code are ignored.
+ */
+function liveMode(submit, delay) {
+  let revision = 0;
+  let timer = null;
+  return {
+    changed: function () {
+      // responses for the previous revision are now outdated
+      revision++;
+      clearTimeout(timer);
+      const submittedRevision = revision;
+      timer = setTimeout(function () {
+        submit(function () {
+          return submittedRevision === revision;
+        });
+      }, delay === undefined ? LIVE_MODE_DELAY : delay);
+    }
+  };
+}
+
+const CLUSTER_COLOR = {
+  background: 'lavender',
+  border: 'slateblue',
+  highlight: {
+    background: 'yellow',
+    border: 'gold'
+  }
+};
+
+/**
+ * Only clusters are drawn for big graphs, whatever their number of nodes: a cluster is opened by double click. Groups
+ * are merged while the clusters and the nodes out of any group would be more than the threshold.
+ * @return the number of clusters
+ */
+function clusterGraph(network) {
+  const clustering = network['clusteringOptions'];
+  network['clusters'] = [];
+  if (!clustering || network['nodes'].length <= clustering.threshold) {
+    return 0;
+  }
+  const groups = clustering.groups(network['nodes'], network['edges']);
+  let groupedCount = 0;
+  const list = Object.keys(groups).map(function (key) {
+    const group = groups[key];
+    groupedCount += group.nodes.length;
+    return { firstKey: key, lastKey: key, firstLabel: group.label.trim(), lastLabel: group.label.trim(), nodes: group.nodes };
+  });
+  const maxCount = Math.max(clustering.threshold - (network['nodes'].length - groupedCount), 1);
+  mergeGroups(list, maxCount).forEach(function (group) {
+    const merged = group.firstKey !== group.lastKey;
+    const clusterId = merged ? `cluster:${group.firstKey}..${group.lastKey}` : `cluster:${group.firstKey}`;
+    const label = merged ? `${group.firstLabel} \u2026 ${group.lastLabel}` : group.firstLabel;
+    clusterNodes(network, group.nodes, {
+      id: clusterId,
+      label: `${label}\n(${group.nodes.length} nodes)`,
+      shape: 'box',
+      borderWidth: 2,
+      color: CLUSTER_COLOR,
+      font: { size: 12, face: 'monospace', color: '#333' },
+      allowSingleNodeCluster: true
+    });
+    network['clusters'].push(clusterId);
+  });
+  if (network['clusters'].length > 0) {
+    network.body.emitter.emit('_dataChanged');
+  }
+  return network['clusters'].length;
+}
+
+/**
+ * Consecutive groups are merged by pairs, until there are at most the given number of groups
+ */
+function mergeGroups(groups, maxCount) {
+  let result = groups;
+  while (result.length > maxCount) {
+    const merged = [];
+    for (let i = 0; i < result.length; i += 2) {
+      const group = result[i];
+      const next = result[i + 1];
+      merged.push(!next ? group : {
+        firstKey: group.firstKey,
+        lastKey: next.lastKey,
+        firstLabel: group.firstLabel,
+        lastLabel: next.lastLabel,
+        nodes: group.nodes.concat(next.nodes)
+      });
+    }
+    result = merged;
+  }
+  return result;
+}
+
+/**
+ * The nodes and edges of the cluster are given to the cluster engine of vis 4.20, instead of calling network.cluster
+ * which goes through all the nodes of the graph for each cluster. The graph is refreshed once all clusters are made.
+ */
+function clusterNodes(network, nodeIds, clusterNodeProperties) {
+  const engine = network.body.modules.clustering;
+  const childNodes = {};
+  const childEdges = {};
+  nodeIds.forEach(function (nodeId) {
+    const node = network.body.nodes[nodeId];
+    childNodes[nodeId] = node;
+    node.edges.forEach(function (edge) {
+      if (engine.clusteredEdges[edge.id] === undefined) {
+        childEdges[edge.id] = edge;
+      }
+    });
+  });
+  engine._cluster(childNodes, childEdges, { clusterNodeProperties: clusterNodeProperties, clusterEdgeProperties: {} }, false);
+}
+
+function unclusterGraph(network) {
+  const clusters = network['clusters'] || [];
+  clusters.forEach(function (clusterId) {
+    if (network.isCluster(clusterId)) {
+      network.openCluster(clusterId, undefined, false);
+    }
+  });
+  if (clusters.length > 0) {
+    network.body.emitter.emit('_dataChanged');
+  }
+  network['clusters'] = [];
+}
+
+/**
+ * Clusters containing the given nodes are opened, so that they can be selected
+ */
+function openClustersOf(network, nodeIds) {
+  if (!network['clusters'] || network['clusters'].length === 0) {
+    return;
+  }
+  nodeIds.forEach(function (nodeId) {
+    // path from the outermost cluster to the node
+    network.findNode(nodeId).slice(0, -1).forEach(function (clusterId) {
+      if (network.isCluster(clusterId)) {
+        network.openCluster(clusterId);
+      }
+    });
+  });
+}
+
+/**
+ * Nodes of the exploded graph are grouped by program point
+ */
+function programPointClusters(nodes) {
+  const ppMap = getPPMap(nodes);
+  const result = {};
+  for (let ppKey in ppMap) {
+    result[ppKey] = { label: ppKey, nodes: ppMap[ppKey] };
+  }
+  return result;
+}
+
+/**
+ * Nodes of a tree are grouped under their closest ancestor having one of the given highlightings
+ */
+function subtreeClusters(nodes, edges, highlightings) {
+  const nodesById = {};
+  nodes.forEach(function (node) {
+    nodesById[node.id] = node;
+  });
+  const children = {};
+  const hasParent = {};
+  edges.forEach(function (edge) {
+    if (!children[edge.from]) {
+      children[edge.from] = [];
+    }
+    children[edge.from].push(edge.to);
+    hasParent[edge.to] = true;
+  });
+  const stack = [];
+  nodes.forEach(function (node) {
+    if (!hasParent[node.id]) {
+      stack.push({ id: node.id, group: null });
+    }
+  });
+  const result = {};
+  const visited = {};
+  while (stack.length > 0) {
+    const item = stack.pop();
+    if (visited[item.id]) {
+      continue;
+    }
+    visited[item.id] = true;
+    const node = nodesById[item.id];
+    let group = item.group;
+    if (node && inArray(node.highlighting, highlightings)) {
+      group = item.id;
+      result[group] = { label: node.label, nodes: [] };
+    }
+    if (group !== null) {
+      result[group].nodes.push(item.id);
+    }
+    (children[item.id] || []).forEach(function (child) {
+      stack.push({ id: child, group: group });
+    });
+  }
+  return result;
+}
+
+function loadProject(project, methodsSelect, filesContainer) {
+  methodsSelect.html(getProjectMethods(project.methods, project.selected));
+  methodsSelect.on('change', function() {
+    window.location = projectUrl(project.id, this.value);
+  });
+  filesContainer.html(getProjectFiles(project.files));
+}
+
+function projectUrl(projectId, methodKey) {
+  return `/project/${encodeURIComponent(projectId)}?method=${encodeURIComponent(methodKey)}`;
+}
+
+function getProjectMethods(methods, selected) {
+  let result = '';
+  let currentFile = null;
+  methods.forEach(function (method) {
+    if (method.file !== currentFile) {
+      if (currentFile !== null) {
+        result += '</optgroup>';
+      }
+      currentFile = method.file;
+      result += `<optgroup label="${escapeHtml(currentFile)}">`;
+    }
+    const selectedAttribute = method.key === selected ? ' selected' : '';
+    result += `<option value="${escapeHtml(method.key)}"${selectedAttribute}>${escapeHtml(method.label)}</option>`;
+  });
+  if (currentFile !== null) {
+    result += '</optgroup>';
+  }
+  return result;
+}
+
+function getProjectFiles(files) {
+  let result = '';
+  files.forEach(function (file) {
+    const timings = [];
+    for (let stage in file.timings) {
+      timings.push(`${stage}: ${formatDuration(file.timings[stage])}`);
+    }
+    result += tableLine(escapeHtml(file.name), timings.join(', '));
+  });
+  return table(result, 'timings-table');
+}
+
+function escapeHtml(text) {
+  return text
+    .replace(/&/g, '&amp;')
+    .replace(/</g, '&lt;')
+    .replace(/>/g, '&gt;')
+    .replace(/"/g, '&quot;');
+}
+
+function now() {
+  if (typeof performance !== 'undefined') {
+    return performance.now();
+  }
+  return Date.now();
+}
+
+function getServerTimings(perf) {
+  if (!perf || !perf.getEntriesByType) {
+    return [];
+  }
+  // 'Server-Timing' header of the page, as exposed by the browser
+  const navigations = perf.getEntriesByType('navigation');
+  if (navigations.length === 0 || !navigations[0].serverTiming) {
+    return [];
+  }
+  return navigations[0].serverTiming.map(function (timing) {
+    return { name: timing.name, duration: timing.duration };
+  });
+}
+
+function getTimings(serverTimings, networks) {
+  let result = '';
+  serverTimings.forEach(function (timing) {
+    result += tableLine(timing.name, formatDuration(timing.duration));
+  });
+  for (let name in networks) {
+    const timings = networks[name]['timings'];
+    if (timings) {
+      // graphs are parsed asynchronously
+      const fetched = timings['fetch'] === undefined ? '' : `fetch: ${formatDuration(timings['fetch'])}, `;
+      const parse = formatPendingDuration(timings['parse']);
+      const draw = formatPendingDuration(timings['draw']);
+      const layout = formatPendingDuration(timings['layout']);
+      result += tableLine(`${name} (browser)`, `${fetched}parse: ${parse}, draw: ${draw}, layout: ${layout}`);
+    }
+  }
+  if (!result) {
+    return '<em>No data...</em>';
+  }
+  return table(result, 'timings-table');
+}
+
+function formatDuration(duration) {
+  return `${duration.toFixed(1)} ms`;
+}
+
+function formatPendingDuration(duration) {
+  return duration === undefined ? 'pending' : formatDuration(duration);
+}
+
 function changeLayout(network, hierarchical) {
   let options = { 'layout' : { 'hierarchical' : false } };
   if (hierarchical) {
@@ -497,10 +1539,48 @@ try {
     setNodesColor,
     setEdgesColor,
     changeLayout,
+    getServerTimings,
+    getTimings,
+    showGraph,
+    viewUrl,
+    loadView,
+    getProjectMethods,
+    getProjectFiles,
+    projectUrl,
+    escapeHtml,
     mapPPByLine,
     getPPMap,
     highlightAllNodesAtSamePP,
-    handleNewPP
+    handleNewPP,
+    parseGraphQuery,
+    graphQueryUrl,
+    highlightMatches,
+    graphSearchUrl,
+    getMatchesSummary,
+    getGraphRequestError,
+    selectMatches,
+    graphPathsUrl,
+    pathsToMatches,
+    sortProfileRows,
+    getProfileTable,
+    getBlocksProfileTable,
+    formatProfileValue,
+    heatLevel,
+    applyHeatToCFG,
+    applyHeatToEditor,
+    parseServerSentEvents,
+    applyGraphBatch,
+    replaceGraph,
+    parseDot,
+    prepareGraph,
+    clusterGraph,
+    unclusterGraph,
+    openClustersOf,
+    programPointClusters,
+    subtreeClusters,
+    nodeKeys,
+    updateGraph,
+    liveMode
   };
 } catch(moduleNotDefined) {
   // NOP
@@ -0,0 +1,26 @@
+package org.foo;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+class Exceptions {
+  Object read(InputStream stream, boolean strict) throws IOException {
+    Object result = null;
+    try {
+      int b = stream.read();
+      if (b < 0 && strict) {
+        throw new IllegalStateException("empty");
+      }
+      result = b;
+    } catch (IllegalStateException e) {
+      if (strict) {
+        throw new IOException(e);
+      }
+    } finally {
+      stream.close();
+    }
+    synchronized (this) {
+      return result == null ? "none" : result.toString();
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package org.foo;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+class Lambdas<T> {
+  private Function<T, String> mapper;
+
+  List<String> map(List<T> items, boolean skipNulls) {
+    if (mapper == null) {
+      mapper = Object::toString;
+    }
+    List<String> result = items.stream()
+      .filter(item -> !skipNulls || item != null)
+      .map(item -> Optional.ofNullable(item).map(mapper).orElse("null"))
+      .collect(Collectors.toList());
+    Runnable check = () -> {
+      if (result.isEmpty()) {
+        throw new IllegalArgumentException();
+      }
+    };
+    check.run();
+    return result;
+  }
+}
@@ -0,0 +1,26 @@
+package org.foo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class Loops {
+  int sum(List<Integer> values, int limit) {
+    int result = 0;
+    for (int i = 0; i < values.size() && i < limit; i++) {
+      Integer value = values.get(i);
+      if (value == null) {
+        continue;
+      }
+      result += value;
+    }
+    List<String> labels = new ArrayList<>();
+    while (result > 100) {
+      labels.add("over " + result);
+      result /= 2;
+    }
+    do {
+      result--;
+    } while (result > 10 && !labels.isEmpty());
+    return result;
+  }
+}
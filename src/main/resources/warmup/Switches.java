@@ -0,0 +1,26 @@
+package org.foo;
+
+import java.util.Map;
+import java.util.Objects;
+
+class Switches {
+  String describe(int kind, Map<String, Object> values, String key) {
+    String label;
+    switch (kind) {
+      case 0:
+        label = "zero";
+        break;
+      case 1:
+      case 2:
+        label = Objects.requireNonNull(key);
+        break;
+      default:
+        Object value = values.get(key);
+        label = value instanceof String ? (String) value : null;
+    }
+    if (label != null && label.isEmpty()) {
+      label = null;
+    }
+    return label == null ? key.trim() : label.toUpperCase();
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.ast;
+
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenFingerprintTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  int foo(int a) {\n"
+    + "    int b = a + 1;\n"
+    + "    return b;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void whitespaces_and_comments_within_lines_are_ignored() {
+    String other = "class A { /* comment */\n"
+      + "  int foo(int a)   {\n"
+      + "    int   b = a + /* one */ 1; // increment\n"
+      + "    return b;\n"
+      + "  }\n"
+      + "}";
+
+    assertThat(fingerprint(other)).isEqualTo(fingerprint(SOURCE));
+  }
+
+  @Test
+  public void lines_are_kept() {
+    assertThat(fingerprint(SOURCE.replace("int b = a + 1;", "int b = a\n + 1;"))).isNotEqualTo(fingerprint(SOURCE));
+    assertThat(fingerprint("// comment\n" + SOURCE)).isNotEqualTo(fingerprint(SOURCE));
+  }
+
+  @Test
+  public void names_and_literals_are_kept() {
+    assertThat(fingerprint(SOURCE.replace("a", "value"))).isNotEqualTo(fingerprint(SOURCE));
+    assertThat(fingerprint(SOURCE.replace("foo", "bar"))).isNotEqualTo(fingerprint(SOURCE));
+    assertThat(fingerprint(SOURCE.replace("class A", "class B"))).isNotEqualTo(fingerprint(SOURCE));
+    assertThat(fingerprint(SOURCE.replace("+ 1", "+ 2"))).isNotEqualTo(fingerprint(SOURCE));
+  }
+
+  private static String fingerprint(String source) {
+    return TokenFingerprint.of(new Viewer.Base(source).cut);
+  }
+}
@@ -0,0 +1,58 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.callgraph;
+
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CallGraphDotGraphTest {
+
+  @Test
+  public void methods_are_grouped_by_class() {
+    String code = "class A {\n"
+      + "  void foo(Object o) {\n"
+      + "    bar();\n"
+      + "    bar();\n"
+      + "    o.toString();\n"
+      + "  }\n"
+      + "  void bar() {\n"
+      + "    B.qix(1);\n"
+      + "  }\n"
+      + "}\n"
+      + "class B {\n"
+      + "  static void qix(int i) {}\n"
+      + "}";
+    Viewer.Base base = new Viewer.Base(code);
+
+    CallGraphDotGraph callGraphDotGraph = new CallGraphDotGraph(base.cut);
+
+    assertThat(callGraphDotGraph.toDot()).isEqualTo("graph CallGraph {"
+      + "4[label=\"A\",highlighting=\"classKind\"];"
+      + "0[label=\"foo(Object) L#2\",highlighting=\"methodKind\"];4->0[];"
+      + "1[label=\"bar() L#7\",highlighting=\"methodKind\"];4->1[];"
+      + "5[label=\"B\",highlighting=\"classKind\"];"
+      + "2[label=\"qix(int) L#12\",highlighting=\"methodKind\"];5->2[];"
+      + "6[label=\"java.lang.Object\",highlighting=\"classKind\"];"
+      + "3[label=\"toString()\"];6->3[];"
+      + "0->1[label=\"2 calls\"];0->3[label=\"call\"];1->2[label=\"call\"];}");
+  }
+}
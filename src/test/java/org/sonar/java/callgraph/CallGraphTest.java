@@ -0,0 +1,72 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.callgraph;
+
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CallGraphTest {
+
+  private static final String SOURCE = "abstract class A {\n"
+    + "  void foo() {\n"
+    + "    bar();\n"
+    + "    foo();\n"
+    + "    bar();\n"
+    + "  }\n"
+    + "  void bar() {\n"
+    + "    new Runnable() {\n"
+    + "      public void run() {\n"
+    + "        qix();\n"
+    + "      }\n"
+    + "    };\n"
+    + "  }\n"
+    + "  abstract void qix();\n"
+    + "}";
+
+  private final CallGraph callGraph = CallGraph.of(new Viewer.Base(SOURCE).cut);
+
+  @Test
+  public void declared_methods_come_first() {
+    assertThat(callGraph.declaredMethodsCount()).isEqualTo(3);
+    assertThat(callGraph.methodsCount()).isEqualTo(4);
+    assertThat(callGraph.method(0).name()).isEqualTo("foo");
+    assertThat(callGraph.method(1).name()).isEqualTo("bar");
+    assertThat(callGraph.method(2).name()).isEqualTo("run");
+    // declared without body
+    assertThat(callGraph.method(3).name()).isEqualTo("qix");
+    assertThat(callGraph.declaration(0).symbol()).isSameAs(callGraph.method(0));
+  }
+
+  @Test
+  public void invocations_of_the_same_method_are_counted() {
+    assertThat(callGraph.callees(0)).containsExactly(0, 1);
+    assertThat(callGraph.calls(0)).containsExactly(1, 2);
+  }
+
+  @Test
+  public void invocations_in_anonymous_classes_belong_to_their_methods() {
+    assertThat(callGraph.callees(1)).isEmpty();
+    assertThat(callGraph.callees(2)).containsExactly(3);
+    assertThat(callGraph.callees(3)).isEmpty();
+    assertThat(callGraph.calls(3)).isEmpty();
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGDiffDotGraphTest {
+
+  private static final String BEFORE = "class A {\n"
+    + "  Object foo(Object o) {\n"
+    + "    if (o == null) {\n"
+    + "      return null;\n"
+    + "    }\n"
+    + "    return o;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void no_difference_between_same_sources() {
+    EGDiffDotGraph diff = new EGDiffDotGraph(egDotGraph(BEFORE), egDotGraph(BEFORE));
+
+    assertThat(diff.toDot()).isEqualTo("graph ExplodedGraphDiff {}");
+  }
+
+  @Test
+  public void moved_lines_are_not_differences() {
+    EGDiffDotGraph diff = new EGDiffDotGraph(egDotGraph(BEFORE), egDotGraph("\n\n" + BEFORE));
+
+    assertThat(diff.toDot()).isEqualTo("graph ExplodedGraphDiff {}");
+  }
+
+  @Test
+  public void added_and_removed_nodes_are_annotated() {
+    String after = "class A {\n"
+      + "  Object foo(Object o) {\n"
+      + "    if (o == null) {\n"
+      + "      throw new IllegalArgumentException();\n"
+      + "    }\n"
+      + "    return o;\n"
+      + "  }\n"
+      + "}";
+    String dot = new EGDiffDotGraph(egDotGraph(BEFORE), egDotGraph(after)).toDot();
+
+    assertThat(dot).contains("highlighting=\"addedNode\"", "label=\"+ ", "NEW_CLASS");
+    assertThat(dot).contains("highlighting=\"removedNode\"", "label=\"- ", "NULL_LITERAL");
+  }
+
+  @Test
+  public void nodes_with_other_states_at_same_program_point_are_changed() {
+    String before = "class A {\n"
+      + "  Object foo(Object o) {\n"
+      + "    Object x = null;\n"
+      + "    return x;\n"
+      + "  }\n"
+      + "}";
+    String dot = new EGDiffDotGraph(egDotGraph(before), egDotGraph(before.replace("Object x = null;", "Object x = o;"))).toDot();
+
+    assertThat(dot).contains("highlighting=\"changedNode\"", "label=\"~ ");
+    Matcher changedLabels = Pattern.compile("label=\"~ ([^\"]*)\"").matcher(dot);
+    while (changedLabels.find()) {
+      // the node of the old version paired with the changed node is not shown as removed
+      assertThat(dot).doesNotContain("label=\"- " + changedLabels.group(1) + "\"");
+    }
+  }
+
+  private static EGDotGraph egDotGraph(String source) {
+    return new EGDotGraph(new Viewer.Base(source));
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGDotGraphTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  Object foo(Object o) {\n"
+    + "    if (o == null) {\n"
+    + "      return bar(o);\n"
+    + "    }\n"
+    + "    return o;\n"
+    + "  }\n"
+    + "  Object bar(Object o) {\n"
+    + "    return o;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void summarized_graph_has_the_same_nodes_without_program_states() {
+    String dot = new EGDotGraph(new Viewer.Base(SOURCE)).toDot();
+    EGDotGraph graph = new EGDotGraph(new Viewer.Base(SOURCE));
+    graph.summarize();
+    String summary = graph.toDot();
+
+    assertThat(graph.isSummarized()).isTrue();
+    assertThat(dot).contains("psValues", "learnedConstraints");
+    assertThat(summary).startsWith("graph ExplodedGraph {").contains("ppKey").doesNotContain("psValues", "psStack", "learnedConstraints");
+    assertThat(summary.length()).isLessThan(dot.length());
+    assertThat(graph.nodeCount()).isEqualTo(graph.nodes().size()).isPositive();
+  }
+}
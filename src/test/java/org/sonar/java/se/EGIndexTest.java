@@ -0,0 +1,98 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.Viewer;
+import org.sonar.java.viewer.dto.MatchesDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGIndexTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  Object foo(Object o) {\n"
+    + "    if (o == null) {\n"
+    + "      return null;\n"
+    + "    }\n"
+    + "    return o;\n"
+    + "  }\n"
+    + "}";
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final EGDotGraph graph = new EGDotGraph(new Viewer.Base(SOURCE));
+
+  @Test
+  public void symbols_with_constraints_are_found_in_nodes_and_learning_edges() {
+    MatchesDto matches = graph.index().query(null, "o", "NULL");
+
+    assertThat(matches.nodes).isNotEmpty();
+    assertThat(matches.edges).isNotEmpty();
+    assertThat(graph.index().query(null, "o", null).nodes).containsAll(matches.nodes);
+    assertThat(graph.index().query(null, "o", "NOT_NULL").nodes).doesNotContainAnyElementsOf(matches.nodes);
+  }
+
+  @Test
+  public void edges_are_identified_by_the_nodes_they_connect() {
+    int nodesCount = graph.nodes().size();
+
+    MatchesDto matches = graph.index().query(null, null, "NULL");
+
+    assertThat(matches.edges).isNotEmpty();
+    for (int[] edge : matches.edges) {
+      assertThat(edge).hasSize(2);
+      assertThat(edge[0]).isBetween(0, nodesCount - 1);
+      assertThat(edge[1]).isBetween(0, nodesCount - 1);
+    }
+  }
+
+  @Test
+  public void symbolic_values_are_found_in_all_the_nodes_having_them() {
+    MatchesDto matches = graph.index().query("SV_NULL", null, "NULL");
+
+    assertThat(matches.nodes).hasSize(graph.nodes().size());
+    assertThat(graph.index().query("SV_NULL", null, "NOT_NULL").nodes).isEmpty();
+  }
+
+  @Test
+  public void unknown_criteria_match_nothing() {
+    MatchesDto matches = graph.index().query(null, "unknown", null);
+
+    assertThat(matches.nodes).isEmpty();
+    assertThat(matches.edges).isEmpty();
+  }
+
+  @Test
+  public void index_is_built_once() {
+    assertThat(graph.index()).isSameAs(graph.index());
+  }
+
+  @Test
+  public void at_least_one_criterion_is_required() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("A symbolic value, a symbol or a constraint is required.");
+
+    graph.index().query(null, null, null);
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.Viewer;
+import org.sonar.java.viewer.dto.MatchesDto;
+import org.sonar.java.viewer.dto.PathsDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGPathsTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  /**
+   * 0 -> 1 -> 2 -> 4, 0 -> 3 -> 4, 1 -> 3 -> 1, lost node 5 -> 4, 2 -> 6, with 4 as exceptional exit
+   */
+  private final EGPaths paths = new EGPaths(7, edges(0, 1, 1, 2, 2, 4, 0, 3, 3, 4, 1, 3, 3, 1, 5, 4, 2, 6), exits(4));
+
+  @Test
+  public void shortest_path_starts_from_a_node_without_parents() {
+    assertThat(paths.shortestPath(2).paths).containsExactly(new int[] {0, 1, 2});
+    assertThat(paths.shortestPath(4).paths).containsExactly(new int[] {5, 4});
+    assertThat(paths.shortestPath(0).paths).containsExactly(new int[] {0});
+  }
+
+  @Test
+  public void exceptional_paths_do_not_have_cycles() {
+    PathsDto result = paths.exceptionalPaths(10, 100);
+
+    assertThat(result.paths).containsExactly(
+      new int[] {0, 1, 2, 4},
+      new int[] {0, 1, 3, 4},
+      new int[] {0, 3, 4},
+      new int[] {0, 3, 1, 2, 4},
+      new int[] {5, 4});
+    assertThat(result.truncated).isFalse();
+  }
+
+  @Test
+  public void exceptional_paths_are_bounded() {
+    PathsDto result = paths.exceptionalPaths(2, 100);
+    assertThat(result.paths).hasSize(2);
+    assertThat(result.truncated).isTrue();
+
+    result = paths.exceptionalPaths(10, 3);
+    assertThat(result.paths).containsExactly(new int[] {0, 3, 4}, new int[] {5, 4});
+    assertThat(result.truncated).isTrue();
+  }
+
+  @Test
+  public void ancestors_come_with_the_edges_between_them() {
+    MatchesDto ancestors = paths.ancestors(2);
+
+    assertThat(ancestors.nodes).containsExactly(0, 1, 3);
+    assertThat(ancestors.edges).containsExactly(new int[] {0, 1}, new int[] {0, 3}, new int[] {1, 2}, new int[] {1, 3}, new int[] {3, 1});
+    assertThat(paths.ancestors(0).nodes).isEmpty();
+  }
+
+  @Test
+  public void paths_of_an_exploded_graph() {
+    String source = "class A {\n"
+      + "  void foo(Object o) {\n"
+      + "    if (o == null) {\n"
+      + "      throw new IllegalArgumentException();\n"
+      + "    }\n"
+      + "    o.toString();\n"
+      + "  }\n"
+      + "}";
+    EGDotGraph graph = new EGDotGraph(new Viewer.Base(source));
+    int lastNode = graph.nodes().size() - 1;
+
+    PathsDto exceptionalPaths = graph.paths().exceptionalPaths(10, 1000);
+    assertThat(exceptionalPaths.paths).isNotEmpty();
+    List<int[]> shortestPath = graph.paths().shortestPath(lastNode).paths;
+    assertThat(shortestPath).hasSize(1);
+    assertThat(shortestPath.get(0)[shortestPath.get(0).length - 1]).isEqualTo(lastNode);
+    assertThat(graph.paths()).isSameAs(graph.paths());
+  }
+
+  @Test
+  public void nodes_must_exist() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("Unknown node: 7");
+
+    paths.ancestors(7);
+  }
+
+  private static List<int[]> edges(int... ids) {
+    int[][] edges = new int[ids.length / 2][];
+    for (int i = 0; i < edges.length; i++) {
+      edges[i] = new int[] {ids[2 * i], ids[2 * i + 1]};
+    }
+    return Arrays.asList(edges);
+  }
+
+  private static BitSet exits(int... ids) {
+    BitSet exits = new BitSet();
+    Arrays.stream(ids).forEach(exits::set);
+    return exits;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.junit.Test;
+import org.sonar.java.se.dto.BlockProfileDto;
+import org.sonar.java.se.dto.EGProfileDto;
+import org.sonar.java.se.dto.ProgramPointProfileDto;
+import org.sonar.java.viewer.Viewer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGProfileTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  int foo(boolean a, boolean b) {\n"
+    + "    int i = 0;\n"
+    + "    if (a) {\n"
+    + "      i++;\n"
+    + "    }\n"
+    + "    if (b) {\n"
+    + "      i++;\n"
+    + "    }\n"
+    + "    return i;\n"
+    + "  }\n"
+    + "}";
+
+  private final EGDotGraph graph = new EGDotGraph(new Viewer.Base(SOURCE));
+
+  @Test
+  public void nodes_and_edges_are_attributed_to_program_points() {
+    EGProfileDto profile = graph.profile();
+
+    assertThat(profile.nodes).isEqualTo(graph.nodes().size());
+    assertThat(profile.programPoints.stream().mapToInt(pp -> pp.nodes).sum()).isEqualTo(profile.nodes);
+    assertThat(profile.programPoints.stream().mapToInt(pp -> pp.outgoingEdges).sum()).isEqualTo(profile.edges);
+    assertThat(profile.blocks.stream().mapToInt(block -> block.nodes).sum()).isEqualTo(profile.nodes);
+  }
+
+  @Test
+  public void program_points_are_sorted_by_decreasing_number_of_nodes() {
+    EGProfileDto profile = graph.profile();
+
+    for (int i = 1; i < profile.programPoints.size(); i++) {
+      assertThat(profile.programPoints.get(i - 1).nodes).isGreaterThanOrEqualTo(profile.programPoints.get(i).nodes);
+    }
+    for (ProgramPointProfileDto programPoint : profile.programPoints) {
+      assertThat(programPoint.ppKey).startsWith("B" + programPoint.block + ".");
+      assertThat(programPoint.maxFanOut).isLessThanOrEqualTo(programPoint.outgoingEdges);
+      assertThat(programPoint.estimatedBytes).isPositive();
+    }
+  }
+
+  @Test
+  public void states_are_multiplied_after_successive_conditions() {
+    EGProfileDto profile = graph.profile();
+
+    // the return statement is reached with the 4 combinations of 'a' and 'b'
+    ProgramPointProfileDto returnStatement = profile.programPoints.stream()
+      .filter(pp -> pp.line != null && pp.line == 10)
+      .findFirst()
+      .orElseThrow(IllegalStateException::new);
+    assertThat(returnStatement.nodes).isGreaterThan(1);
+    for (BlockProfileDto block : profile.blocks) {
+      assertThat(block.distinctStates).isBetween(1, block.nodes);
+    }
+  }
+}
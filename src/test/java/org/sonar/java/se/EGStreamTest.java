@@ -0,0 +1,90 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Test;
+import org.sonar.java.viewer.Viewer;
+import org.sonar.java.viewer.dto.BatchEdgeDto;
+import org.sonar.java.viewer.dto.BatchNodeDto;
+import org.sonar.java.viewer.dto.GraphBatchDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EGStreamTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  int foo(boolean a) {\n"
+    + "    int i = 0;\n"
+    + "    if (a) {\n"
+    + "      i++;\n"
+    + "    }\n"
+    + "    return i;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void nodes_and_edges_are_collected_while_exploring() {
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    EGStream stream = new EGStream(EGDotGraph.firstBlockId(base));
+    EGDotGraph graph = new EGDotGraph(base, stream);
+
+    GraphBatchDto batch = stream.nextBatch();
+    assertThat(batch.isEmpty()).isFalse();
+    assertThat(batch.nodes.size()).isLessThanOrEqualTo(graph.nodes().size());
+
+    Set<Integer> ids = new HashSet<>();
+    for (int i = 0; i < batch.nodes.size(); i++) {
+      BatchNodeDto node = batch.nodes.get(i);
+      // numbered in order of discovery
+      assertThat(node.id).isEqualTo(i);
+      assertThat(node.label).startsWith("B");
+      ids.add(node.id);
+    }
+    assertThat(batch.nodes.get(0).highlighting).isEqualTo("firstNode");
+    assertThat(batch.nodes.stream().anyMatch(node -> "exitNode".equals(node.highlighting))).isTrue();
+
+    Set<Long> edges = new HashSet<>();
+    for (BatchEdgeDto edge : batch.edges) {
+      assertThat(ids).contains(edge.from, edge.to);
+      assertThat(edges.add(((long) edge.from << 32) | edge.to)).isTrue();
+    }
+  }
+
+  @Test
+  public void batches_only_contain_new_items() {
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    EGStream stream = new EGStream(EGDotGraph.firstBlockId(base));
+    new EGDotGraph(base, stream);
+
+    assertThat(stream.nextBatch().isEmpty()).isFalse();
+    assertThat(stream.nextBatch().isEmpty()).isTrue();
+  }
+
+  @Test
+  public void nothing_is_collected_without_exploration() {
+    EGStream stream = new EGStream(1);
+
+    GraphBatchDto batch = stream.nextBatch();
+    assertThat(batch.nodes).isEmpty();
+    assertThat(batch.edges).isEmpty();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.se;
+
+import org.junit.Test;
+import org.sonar.java.se.dto.HappyPathMethodYieldDto;
+import org.sonar.java.se.xproc.MethodBehavior;
+import org.sonar.java.viewer.Viewer;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileBehaviorsTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  void foo(boolean b) {\n"
+    + "    Object o = bar(b);\n"
+    + "    o.toString();\n"
+    + "  }\n"
+    + "\n"
+    + "  public Object bar(boolean b) {\n"
+    + "    return b ? null : qix();\n"
+    + "  }\n"
+    + "\n"
+    + "  private Object qix() {\n"
+    + "    return new Object();\n"
+    + "  }\n"
+    + "\n"
+    + "  private int even(int i) {\n"
+    + "    return i == 0 ? 0 : odd(i - 1);\n"
+    + "  }\n"
+    + "\n"
+    + "  private int odd(int i) {\n"
+    + "    return i == 0 ? 1 : even(i - 1);\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void components_are_ordered_from_the_callees_to_the_callers() {
+    // 0 -> 1 -> 2 <-> 3, 4 -> 2, 5 -> 5
+    int[][] callees = {{1}, {2}, {3}, {2}, {2}, {5}};
+
+    List<int[]> components = FileBehaviors.stronglyConnectedComponents(callees);
+
+    assertThat(components).hasSize(5);
+    assertThat(components.get(0)).containsOnly(2, 3);
+    assertThat(components.get(1)).containsExactly(1);
+    assertThat(components.get(2)).containsExactly(0);
+    assertThat(components.get(3)).containsExactly(4);
+    assertThat(components.get(4)).containsExactly(5);
+  }
+
+  @Test
+  public void long_call_chains_do_not_overflow_the_stack() {
+    int[][] callees = new int[100_000][];
+    for (int i = 0; i < callees.length - 1; i++) {
+      callees[i] = new int[] {i + 1};
+    }
+    callees[callees.length - 1] = new int[] {0};
+
+    List<int[]> components = FileBehaviors.stronglyConnectedComponents(callees);
+
+    assertThat(components).hasSize(1);
+    assertThat(components.get(0)).hasSize(callees.length);
+  }
+
+  @Test
+  public void behaviors_of_all_the_methods_of_the_file_are_computed() {
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    EGDotGraph graph = new EGDotGraph(base);
+
+    ClassTree classTree = (ClassTree) base.cut.types().get(0);
+    for (int i = 1; i < classTree.members().size(); i++) {
+      MethodTree method = (MethodTree) classTree.members().get(i);
+      MethodBehavior behavior = graph.methodBehavior(method.symbol());
+      assertThat(behavior).isNotNull();
+      assertThat(behavior.isComplete()).isTrue();
+      assertThat(behavior.yields()).isNotEmpty();
+    }
+  }
+
+  @Test
+  public void method_to_analyze_is_only_explored_once() {
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    EGDotGraph graph = new EGDotGraph(base);
+
+    assertThat(graph.methodBehavior(base.firstMethodOrConstructor.symbol())).isNull();
+  }
+
+  @Test
+  public void yields_of_methods_which_can_be_overridden_are_shown_in_node_details() {
+    // 'bar' is public: the engine does not use its yields when exploring 'foo'
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    EGDotGraph graph = new EGDotGraph(base);
+    MethodTree bar = (MethodTree) ((ClassTree) base.cut.types().get(0)).members().get(1);
+
+    List<List<String>> results = graph.methodBehavior(bar.symbol()).yields().stream()
+      .map(EGDotNode::yield)
+      .filter(HappyPathMethodYieldDto.class::isInstance)
+      .map(yield -> ((HappyPathMethodYieldDto) yield).result)
+      .collect(Collectors.toList());
+    assertThat(results).contains(Collections.singletonList("NULL"), Collections.singletonList("NOT_NULL"));
+    assertThat(graph.toDot()).contains("?methodName?:?bar?");
+  }
+}
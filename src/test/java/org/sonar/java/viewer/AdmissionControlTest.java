@@ -0,0 +1,191 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.dto.AdmissionDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AdmissionControlTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private static final long MB = 1024 * 1024;
+
+  private final AtomicLong heapUsage = new AtomicLong(0);
+  private final AtomicInteger shrinks = new AtomicInteger();
+
+  private AdmissionControl admissionControl(long budget, long queueTimeoutMillis) {
+    AdmissionControl control = new AdmissionControl(budget, heapUsage::get, queueTimeoutMillis);
+    control.addCacheShrinker(shrinks::incrementAndGet);
+    return control;
+  }
+
+  @Test
+  public void executions_within_the_budget_are_admitted() {
+    AdmissionControl control = admissionControl(100 * MB, 0);
+
+    try (AdmissionControl.Ticket ticket = control.admit()) {
+      assertThat(ticket.isSummary()).isFalse();
+      AdmissionDto stats = control.stats();
+      assertThat(stats.inFlight).isEqualTo(1);
+      assertThat(stats.reserved).isEqualTo(AdmissionControl.DEFAULT_ESTIMATE);
+    }
+
+    AdmissionDto stats = control.stats();
+    assertThat(stats.inFlight).isZero();
+    assertThat(stats.reserved).isZero();
+    assertThat(stats.admitted).isEqualTo(1);
+    assertThat(shrinks.get()).isZero();
+  }
+
+  @Test
+  public void caches_are_shrunk_then_graphs_summarized_when_the_budget_is_exceeded() {
+    AdmissionControl control = admissionControl(100 * MB, 0);
+    heapUsage.set(100 * MB - AdmissionControl.DEFAULT_ESTIMATE / 2);
+
+    try (AdmissionControl.Ticket ticket = control.admit()) {
+      assertThat(ticket.isSummary()).isTrue();
+      assertThat(ticket.fits(10 * MB)).isFalse();
+      assertThat(control.stats().reserved).isEqualTo(10 * MB / AdmissionControl.SUMMARY_RATIO);
+    }
+    assertThat(shrinks.get()).isEqualTo(1);
+    assertThat(control.stats().summarized).isEqualTo(1);
+  }
+
+  @Test
+  public void caches_are_shrunk_without_holding_the_lock_of_the_admission() {
+    AdmissionControl control = new AdmissionControl(100 * MB, heapUsage::get, 0);
+    AtomicInteger shrinksHoldingLock = new AtomicInteger();
+    control.addCacheShrinker(() -> {
+      if (Thread.holdsLock(control)) {
+        shrinksHoldingLock.incrementAndGet();
+      }
+    });
+    heapUsage.set(100 * MB - AdmissionControl.DEFAULT_ESTIMATE / 2);
+
+    control.admit().close();
+    heapUsage.set(0);
+    try (AdmissionControl.Ticket ticket = control.admit()) {
+      assertThat(ticket.fits(200 * MB)).isFalse();
+    }
+    assertThat(control.stats().cacheShrinks).isEqualTo(2);
+    assertThat(shrinksHoldingLock.get()).isZero();
+  }
+
+  @Test
+  public void graphs_too_big_for_the_budget_are_summarized() {
+    AdmissionControl control = admissionControl(100 * MB, 0);
+
+    try (AdmissionControl.Ticket ticket = control.admit()) {
+      assertThat(ticket.fits(50 * MB)).isTrue();
+      assertThat(control.stats().reserved).isEqualTo(50 * MB);
+
+      assertThat(ticket.fits(200 * MB)).isFalse();
+      assertThat(ticket.isSummary()).isTrue();
+      assertThat(control.stats().reserved).isEqualTo(50 * MB);
+    }
+    assertThat(shrinks.get()).isEqualTo(1);
+    assertThat(control.stats().reserved).isZero();
+  }
+
+  @Test
+  public void graphs_which_cannot_be_summarized_are_rejected_when_too_big() {
+    AdmissionControl control = admissionControl(100 * MB, 0);
+
+    try (AdmissionControl.Ticket ticket = control.admit()) {
+      ticket.require(50 * MB);
+      assertThat(control.stats().reserved).isEqualTo(50 * MB);
+
+      ticket.require(200 * MB);
+      throw new AssertionError("Expected rejection");
+    } catch (AdmissionControl.RejectedException e) {
+      assertThat(e.getMessage()).isEqualTo("Heap budget exceeded: 200 MB required by the analysis, 100 MB available out of 100 MB. Retry later.");
+    }
+    assertThat(shrinks.get()).isEqualTo(1);
+    assertThat(control.stats().rejected).isEqualTo(1);
+    assertThat(control.stats().reserved).isZero();
+  }
+
+  @Test
+  public void executions_wait_for_the_ones_in_flight() throws Exception {
+    AdmissionControl control = admissionControl(AdmissionControl.DEFAULT_ESTIMATE, TimeUnit.SECONDS.toMillis(30));
+    AdmissionControl.Ticket first = control.admit();
+    first.fits(AdmissionControl.DEFAULT_ESTIMATE);
+
+    CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> {
+      try (AdmissionControl.Ticket ticket = control.admit()) {
+        return ticket.isSummary();
+      }
+    });
+    while (control.stats().queued == 0) {
+      Thread.sleep(1);
+    }
+    assertThat(second.isDone()).isFalse();
+    first.close();
+
+    assertThat(second.get()).isFalse();
+    assertThat(control.stats().admitted).isEqualTo(2);
+  }
+
+  @Test
+  public void executions_are_rejected_after_the_queue_timeout() {
+    AdmissionControl control = admissionControl(100 * MB, 10);
+    heapUsage.set(100 * MB);
+
+    try {
+      control.admit();
+      throw new AssertionError("Expected rejection");
+    } catch (AdmissionControl.RejectedException e) {
+      assertThat(e.getMessage()).isEqualTo("Heap budget exceeded: 100 MB used and 0 MB reserved by 0 analyses, out of 100 MB. Retry later.");
+    }
+    AdmissionDto stats = control.stats();
+    assertThat(stats.rejected).isEqualTo(1);
+    assertThat(stats.queued).isEqualTo(1);
+    assertThat(stats.admitted).isZero();
+  }
+
+  @Test
+  public void tickets_are_released_once() {
+    AdmissionControl control = admissionControl(100 * MB, 0);
+    AdmissionControl.Ticket ticket = control.admit();
+    ticket.close();
+    ticket.close();
+
+    assertThat(control.stats().inFlight).isZero();
+    assertThat(control.stats().reserved).isZero();
+  }
+
+  @Test
+  public void budget_is_a_part_of_the_heap() {
+    AdmissionDto stats = AdmissionControl.forHeap(0.5, 0).stats();
+
+    assertThat(stats.budget).isPositive().isLessThan(Runtime.getRuntime().maxMemory());
+    assertThat(stats.used).isGreaterThanOrEqualTo(0);
+  }
+}
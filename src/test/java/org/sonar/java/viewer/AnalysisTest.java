@@ -0,0 +1,161 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.gson.Gson;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.dto.ViewDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private static final String SOURCE = "class A { int foo(boolean b) { return b ? 1 : 2; } }";
+
+  private final PayloadCache cache = new PayloadCache(1024 * 1024);
+  private final List<ViewDto> computed = new ArrayList<>();
+
+  @Test
+  public void syntax_tree_view_does_not_require_the_semantic() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    ServerTiming timing = new ServerTiming();
+
+    ViewDto view = view(analysis, Analysis.AST_VIEW, timing);
+
+    assertThat(view.dot).startsWith("graph AST {");
+    assertThat(view.graph).isNotEmpty();
+    assertThat(view.text).isNull();
+    assertThat(timing.durations().keySet()).containsExactly("parse", "astDot", "cache");
+  }
+
+  @Test
+  public void syntax_tree_view_does_not_share_the_tree_given_a_semantic() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    analysis.base(new ServerTiming());
+    ServerTiming timing = new ServerTiming();
+
+    ViewDto view = view(analysis, Analysis.AST_VIEW, timing);
+
+    assertThat(view.dot).isEqualTo(Viewer.getValues(SOURCE).get("dotAST"));
+    assertThat(timing.durations().keySet()).containsExactly("parse", "astDot", "cache");
+  }
+
+  @Test
+  public void views_are_the_graphs_of_the_page() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    Map<String, String> values = Viewer.getValues(SOURCE);
+
+    ViewDto cfg = view(analysis, Analysis.CFG_VIEW, new ServerTiming());
+    assertThat(cfg.text).isEqualTo(values.get("cfg"));
+    assertThat(cfg.dot).isEqualTo(values.get("dotCFG"));
+    assertThat(view(analysis, Analysis.EG_VIEW, new ServerTiming()).dot).isEqualTo(values.get("dotEG"));
+    assertThat(view(analysis, Analysis.CALL_GRAPH_VIEW, new ServerTiming()).dot).isEqualTo(values.get("dotCallGraph"));
+  }
+
+  @Test
+  public void artifacts_are_computed_once() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    assertThat(analysis.isCached(Analysis.EG_VIEW)).isFalse();
+
+    ServerTiming first = new ServerTiming();
+    ViewDto view = view(analysis, Analysis.EG_VIEW, first);
+    assertThat(first.durations().keySet()).containsExactly("parse", "classpath", "semantic", "cfg", "se", "egDot", "cache");
+
+    ServerTiming second = new ServerTiming();
+    assertThat(view(analysis, Analysis.EG_VIEW, second).dot).isEqualTo(view.dot);
+    assertThat(analysis.isCached(Analysis.EG_VIEW)).isTrue();
+    assertThat(computed).hasSize(1);
+    view(analysis, Analysis.CFG_VIEW, second);
+    assertThat(second.durations().keySet()).containsExactly("cfgText", "cfgDot", "cache");
+  }
+
+  @Test
+  public void evicted_views_are_computed_again() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    ViewDto view = view(analysis, Analysis.CFG_VIEW, new ServerTiming());
+
+    cache.invalidateAll();
+    assertThat(analysis.isCached(Analysis.CFG_VIEW)).isFalse();
+
+    ServerTiming timing = new ServerTiming();
+    assertThat(view(analysis, Analysis.CFG_VIEW, timing).dot).isEqualTo(view.dot);
+    assertThat(timing.durations().keySet()).containsExactly("cfgText", "cfgDot", "cache");
+    assertThat(computed).hasSize(2);
+  }
+
+  @Test
+  public void released_artifacts_are_computed_again() {
+    Analysis analysis = new Analysis(SOURCE, Workspace.defaultWorkspace(), cache);
+    ViewDto view = view(analysis, Analysis.CFG_VIEW, new ServerTiming());
+
+    analysis.releaseArtifacts();
+    cache.invalidateAll();
+
+    ServerTiming timing = new ServerTiming();
+    assertThat(view(analysis, Analysis.CFG_VIEW, timing).dot).isEqualTo(view.dot);
+    assertThat(timing.durations().keySet()).containsExactly("parse", "classpath", "semantic", "cfg", "cfgText", "cfgDot", "cache");
+  }
+
+  @Test
+  public void id_depends_on_source_and_workspace() {
+    assertThat(Analysis.id(SOURCE, Workspace.defaultWorkspace())).isEqualTo(new Analysis(SOURCE, Workspace.defaultWorkspace(), cache).id);
+    assertThat(Analysis.id(SOURCE, Workspace.defaultWorkspace())).isNotEqualTo(Analysis.id("class B {}", Workspace.defaultWorkspace()));
+  }
+
+  @Test
+  public void unknown_view() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("Unknown view: 'none', expected one of [ast, cfg, eg, callgraph]");
+
+    new Analysis(SOURCE, Workspace.defaultWorkspace(), cache).view("none", new ServerTiming(), computed::add);
+  }
+
+  @Test
+  public void equivalent_code_shares_the_store_keys_of_its_views() {
+    Workspace workspace = Workspace.defaultWorkspace();
+    Analysis analysis = new Analysis(SOURCE, workspace, cache);
+    Analysis commented = new Analysis(SOURCE.replace("{ return", "{ /* comment */ return"), workspace, cache);
+    Analysis moved = new Analysis(SOURCE.replace("{ return", "{\n return"), workspace, cache);
+
+    assertThat(commented.storeKey(Analysis.EG_VIEW, new ServerTiming())).isEqualTo(analysis.storeKey(Analysis.EG_VIEW, new ServerTiming()));
+    assertThat(moved.storeKey(Analysis.EG_VIEW, new ServerTiming())).isNotEqualTo(analysis.storeKey(Analysis.EG_VIEW, new ServerTiming()));
+    assertThat(analysis.storeKey(Analysis.CFG_VIEW, new ServerTiming())).isNotEqualTo(analysis.storeKey(Analysis.EG_VIEW, new ServerTiming()));
+    assertThat(analysis.storeKey(Analysis.AST_VIEW, new ServerTiming())).isNull();
+  }
+
+  private ViewDto view(Analysis analysis, String view, ServerTiming timing) {
+    try (PayloadCache.Payload payload = analysis.view(view, timing, computed::add)) {
+      ByteBuffer json = ByteBuffer.allocate(payload.length());
+      payload.buffers().forEach(json::put);
+      json.flip();
+      return new Gson().fromJson(StandardCharsets.UTF_8.decode(json).toString(), ViewDto.class);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BinaryGraphWriterTest {
+
+  @Test
+  public void records_are_length_prefixed() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    BinaryGraphWriter writer = new BinaryGraphWriter(output);
+
+    writer.start("CFG", Collections.emptyMap(), Collections.emptyMap());
+    writer.node(1, ImmutableMap.of("label", "B1", "count", 2L, "visited", true, "ratio", 0.5, "stack", new JsonParser().parse("[]")));
+    writer.edge(1, 0, Collections.emptyMap());
+    writer.end();
+
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+    assertThat(readBytes(input, 4)).isEqualTo("SGVB");
+    assertThat(input.readByte()).isEqualTo(BinaryGraphWriter.VERSION);
+    assertThat(readString(input)).isEqualTo("CFG");
+
+    int nodeLength = input.readInt();
+    assertThat(input.available()).isGreaterThan(nodeLength);
+    assertThat(input.readByte()).isEqualTo(BinaryGraphWriter.NODE);
+    assertThat(input.readInt()).isEqualTo(1);
+    assertThat(input.readShort()).isEqualTo((short) 5);
+    assertThat(readString(input)).isEqualTo("label");
+    assertThat(input.readByte()).isEqualTo((byte) GraphWriter.AttributeType.STRING.ordinal());
+    assertThat(readString(input)).isEqualTo("B1");
+    assertThat(readString(input)).isEqualTo("count");
+    assertThat(input.readByte()).isEqualTo((byte) GraphWriter.AttributeType.LONG.ordinal());
+    assertThat(input.readLong()).isEqualTo(2L);
+    assertThat(readString(input)).isEqualTo("visited");
+    assertThat(input.readByte()).isEqualTo((byte) GraphWriter.AttributeType.BOOLEAN.ordinal());
+    assertThat(input.readBoolean()).isTrue();
+    assertThat(readString(input)).isEqualTo("ratio");
+    assertThat(input.readByte()).isEqualTo((byte) GraphWriter.AttributeType.DOUBLE.ordinal());
+    assertThat(input.readDouble()).isEqualTo(0.5);
+    assertThat(readString(input)).isEqualTo("stack");
+    assertThat(input.readByte()).isEqualTo((byte) GraphWriter.AttributeType.JSON.ordinal());
+    assertThat(readString(input)).isEqualTo("[]");
+
+    // edges can be skipped using their length
+    int edgeLength = input.readInt();
+    assertThat(edgeLength).isEqualTo(1 + 4 + 4 + 2);
+    assertThat(input.skipBytes(edgeLength)).isEqualTo(edgeLength);
+    assertThat(input.readInt()).isZero();
+    assertThat(input.available()).isZero();
+  }
+
+  private static String readString(DataInputStream input) throws Exception {
+    return readBytes(input, input.readInt());
+  }
+
+  private static String readBytes(DataInputStream input, int length) throws Exception {
+    byte[] bytes = new byte[length];
+    input.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,253 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import org.junit.Test;
+import org.sonar.java.cfg.CFGDotGraph;
+import org.sonar.java.viewer.dto.CommonDto;
+
+import javax.annotation.CheckForNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class DotGraphTest {
+
+  private static final String SOURCE = "class A {\n"
+    + "  Object foo(Object o) {\n"
+    + "    if (o == null) {\n"
+    + "      return null;\n"
+    + "    }\n"
+    + "    return o;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void details_are_written_as_typed_attributes() throws Exception {
+    RecordingWriter writer = new RecordingWriter(true);
+
+    new TestGraph().write(writer);
+
+    assertThat(writer.nodeAttributes).containsExactly(
+      entry("label", GraphWriter.AttributeType.STRING),
+      entry("ppKey", GraphWriter.AttributeType.STRING),
+      entry("count", GraphWriter.AttributeType.DOUBLE),
+      entry("visited", GraphWriter.AttributeType.BOOLEAN),
+      entry("stack", GraphWriter.AttributeType.JSON),
+      entry("highlighting", GraphWriter.AttributeType.STRING));
+    assertThat(writer.edgeAttributes).containsExactly(entry("label", GraphWriter.AttributeType.STRING));
+    assertThat(writer.calls).containsExactly(
+      "start Test",
+      "node 0 {label=B1.0, ppKey=B1.0, count=2, visited=true, stack=[\"SV_1\"]}",
+      "node 1 {label=B0.0\nEXIT, highlighting=exitNode, ppKey=B0.0, count=0.5, visited=false, stack=[]}",
+      "edge 0 1 {label=TRUE}",
+      "end");
+  }
+
+  @Test
+  public void attributes_are_not_declared_to_writers_which_do_not_need_them() throws Exception {
+    RecordingWriter writer = new RecordingWriter(false);
+
+    new TestGraph().write(writer);
+
+    assertThat(writer.nodeAttributes).isEmpty();
+    assertThat(writer.edgeAttributes).isEmpty();
+    assertThat(writer.calls).hasSize(5);
+  }
+
+  @Test
+  public void writing_does_not_change_dot_output() throws Exception {
+    Viewer.Base base = new Viewer.Base(SOURCE);
+    CFGDotGraph cfgDotGraph = new CFGDotGraph(base.cfgFirstMethodOrConstructor);
+    String dot = new CFGDotGraph(base.cfgFirstMethodOrConstructor).toDot();
+
+    cfgDotGraph.write(new RecordingWriter(true));
+    assertThat(cfgDotGraph.toDot()).isEqualTo(dot);
+  }
+
+  @Test
+  public void elements_are_converted_in_order_of_declaration() {
+    assertThat(new TestGraph().toDot()).isEqualTo("graph Test {"
+      + "0[details=\"{?ppKey?:?B1.0?,?count?:2.0,?visited?:true,?stack?:[?SV_1?]}\",label=\"B1.0\"];"
+      + "1[details=\"{?ppKey?:?B0.0?,?count?:0.5,?visited?:false,?stack?:[]}\",label=\"B0.0\",highlighting=\"exitNode\"];"
+      + "1[label=\"EXIT\"];"
+      + "0->1[label=\"TRUE\"];"
+      + "}");
+  }
+
+  @Test
+  public void graph_is_built_once() {
+    TestGraph graph = new TestGraph();
+    String dot = graph.toDot();
+
+    assertThat(graph.toDot()).isEqualTo(dot);
+    graph.textIndex();
+    assertThat(graph.toDot()).isEqualTo(dot);
+    assertThat(graph.builds).isEqualTo(1);
+  }
+
+  @Test
+  public void ids_are_not_formatted() {
+    DotGraph graph = new DotGraph() {
+      @Override
+      public String name() {
+        return "Large";
+      }
+
+      @Override
+      public void build() {
+        addNode(new TestNode(1000, "B1000", null, null));
+        addNode(new TestNode(1234567, "B1000", null, null));
+        addEdge(new TestEdge(1000, 1234567, null));
+      }
+    };
+
+    assertThat(graph.toDot()).isEqualTo("graph Large {1000[label=\"B1000\"];1234567[label=\"B1000\"];1000->1234567[];}");
+  }
+
+  private static class RecordingWriter implements GraphWriter {
+    private final boolean declaresAttributes;
+    private final List<String> calls = new ArrayList<>();
+    private Map<String, AttributeType> nodeAttributes;
+    private Map<String, AttributeType> edgeAttributes;
+
+    RecordingWriter(boolean declaresAttributes) {
+      this.declaresAttributes = declaresAttributes;
+    }
+
+    @Override
+    public boolean declaresAttributes() {
+      return declaresAttributes;
+    }
+
+    @Override
+    public void start(String name, Map<String, AttributeType> nodeAttributes, Map<String, AttributeType> edgeAttributes) throws IOException {
+      this.nodeAttributes = nodeAttributes;
+      this.edgeAttributes = edgeAttributes;
+      calls.add("start " + name);
+    }
+
+    @Override
+    public void node(int id, Map<String, Object> attributes) throws IOException {
+      calls.add("node " + id + " " + attributes);
+    }
+
+    @Override
+    public void edge(int from, int to, Map<String, Object> attributes) throws IOException {
+      calls.add("edge " + from + " " + to + " " + attributes);
+    }
+
+    @Override
+    public void end() throws IOException {
+      calls.add("end");
+    }
+  }
+
+  private static class TestGraph extends DotGraph {
+    private int builds = 0;
+
+    @Override
+    public String name() {
+      return "Test";
+    }
+
+    @Override
+    public void build() {
+      builds++;
+      addNode(new TestNode(0, "B1.0", null, new TestDetails("B1.0", 2, true, "SV_1")));
+      addNode(new TestNode(1, "B0.0", Highlighting.EXIT_NODE, new TestDetails("B0.0", 0.5, false)));
+      // redeclared node, as tokens of syntax trees
+      addNode(new TestNode(1, "EXIT", null, null));
+      addEdge(new TestEdge(0, 1, "TRUE"));
+    }
+  }
+
+  private static class TestNode extends DotGraph.Node {
+    private final String label;
+    private final DotGraph.Highlighting highlighting;
+    private final CommonDto details;
+
+    TestNode(int id, String label, @CheckForNull DotGraph.Highlighting highlighting, @CheckForNull CommonDto details) {
+      super(id);
+      this.label = label;
+      this.highlighting = highlighting;
+      this.details = details;
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public DotGraph.Highlighting highlighting() {
+      return highlighting;
+    }
+
+    @Override
+    public CommonDto details() {
+      return details;
+    }
+  }
+
+  private static class TestEdge extends DotGraph.Edge {
+    private final String label;
+
+    TestEdge(int from, int to, String label) {
+      super(from, to);
+      this.label = label;
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public DotGraph.Highlighting highlighting() {
+      return null;
+    }
+
+    @Override
+    public CommonDto details() {
+      return null;
+    }
+  }
+
+  private static class TestDetails implements CommonDto {
+    public final String ppKey;
+    public final double count;
+    public final boolean visited;
+    public final List<String> stack;
+
+    TestDetails(String ppKey, double count, boolean visited, String... stack) {
+      this.ppKey = ppKey;
+      this.count = count;
+      this.visited = visited;
+      this.stack = Arrays.asList(stack);
+    }
+  }
+}
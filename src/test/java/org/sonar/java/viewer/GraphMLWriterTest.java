@@ -0,0 +1,73 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonParser;
+import org.junit.Test;
+import org.sonar.java.se.EGDotGraph;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GraphMLWriterTest {
+
+  @Test
+  public void attributes_are_declared_as_typed_keys() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    GraphMLWriter writer = new GraphMLWriter(output);
+
+    writer.start("CFG",
+      ImmutableMap.of("label", GraphWriter.AttributeType.STRING, "count", GraphWriter.AttributeType.LONG, "stack", GraphWriter.AttributeType.JSON),
+      ImmutableMap.of("label", GraphWriter.AttributeType.STRING));
+    writer.node(1, ImmutableMap.of("label", "B1 <start>", "count", 2L, "stack", new JsonParser().parse("[\"SV_1\"]")));
+    writer.node(0, Collections.emptyMap());
+    writer.edge(1, 0, ImmutableMap.of("label", "EXIT"));
+    writer.end();
+
+    assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+      + "<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns\">"
+      + "<key id=\"n0\" for=\"node\" attr.name=\"label\" attr.type=\"string\"/>"
+      + "<key id=\"n1\" for=\"node\" attr.name=\"count\" attr.type=\"long\"/>"
+      + "<key id=\"n2\" for=\"node\" attr.name=\"stack\" attr.type=\"string\"/>"
+      + "<key id=\"e0\" for=\"edge\" attr.name=\"label\" attr.type=\"string\"/>"
+      + "<graph id=\"CFG\" edgedefault=\"directed\">"
+      + "<node id=\"n1\"><data key=\"n0\">B1 &lt;start&gt;</data><data key=\"n1\">2</data><data key=\"n2\">[\"SV_1\"]</data></node>"
+      + "<node id=\"n0\"></node>"
+      + "<edge source=\"n1\" target=\"n0\"><data key=\"e0\">EXIT</data></edge>"
+      + "</graph></graphml>");
+  }
+
+  @Test
+  public void graphs_are_written_with_their_details() throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    Viewer.Base base = new Viewer.Base("class A { Object foo(Object o) { return o; } }");
+
+    new EGDotGraph(base).write(new GraphMLWriter(output));
+
+    assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8))
+      .contains("attr.name=\"ppKey\" attr.type=\"string\"")
+      .contains("attr.name=\"psConstraints\" attr.type=\"string\"")
+      .endsWith("</graph></graphml>");
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void small_latencies_are_exact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 100; micros++) {
+      histogram.record(micros);
+    }
+
+    assertThat(histogram.count()).isEqualTo(100);
+    assertThat(histogram.percentile(50)).isEqualTo(50);
+    assertThat(histogram.percentile(99)).isEqualTo(99);
+    assertThat(histogram.percentile(100)).isEqualTo(100);
+    assertThat(histogram.mean()).isEqualTo(50.5);
+  }
+
+  @Test
+  public void percentiles_have_a_bounded_relative_error_over_the_whole_range() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long micros = 1; micros <= 100_000; micros++) {
+      histogram.record(micros);
+    }
+    histogram.record(60_000_000);
+
+    assertThat((double) histogram.percentile(50)).isCloseTo(50_000, within(50_000 * 0.016));
+    assertThat((double) histogram.percentile(99)).isCloseTo(99_000, within(99_000 * 0.016));
+    assertThat((double) histogram.percentile(99.9)).isCloseTo(99_900, within(99_900 * 0.016));
+    assertThat(histogram.percentile(100)).isEqualTo(60_000_000);
+    assertThat(histogram.max()).isEqualTo(60_000_000);
+  }
+
+  @Test
+  public void percentiles_are_not_above_the_maximum() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(1000);
+
+    assertThat(histogram.percentile(99.9)).isEqualTo(1000);
+    histogram.record(Long.MAX_VALUE);
+    assertThat(histogram.percentile(100)).isEqualTo(Long.MAX_VALUE);
+  }
+
+  @Test
+  public void empty_histogram() {
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    assertThat(histogram.count()).isZero();
+    assertThat(histogram.mean()).isZero();
+    assertThat(histogram.percentile(99)).isZero();
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class LoadTestTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void requests_of_the_mix_are_replayed_and_reported() throws Exception {
+    List<String> paths = new CopyOnWriteArrayList<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", exchange -> {
+      String path = exchange.getRequestURI().getPath();
+      paths.add(exchange.getRequestMethod() + " " + path);
+      if (path.startsWith("/lib/")) {
+        respond(exchange, 404, "Not found", null);
+      } else if (path.startsWith("/analysis/")) {
+        respond(exchange, 200, "{}", "se;dur=2.000, egDot;dur=1.000");
+      } else {
+        respond(exchange, 200, "<script>var analysis = 'abc';</script>", "parse;dur=1.500, render;dur=0.500");
+      }
+    });
+    server.start();
+    try {
+      String url = "http://localhost:" + server.getAddress().getPort();
+      LoadTest.Report report = new LoadTest(url, Arrays.asList("class A {}", "class B {}"), 2, 300, LoadTest.parseMix("post=2,static=1")).run();
+
+      long posts = report.latencies(LoadTest.POST).count();
+      assertThat(posts).isPositive();
+      assertThat(report.errors(LoadTest.POST)).isZero();
+      assertThat(report.latencies(LoadTest.VIEW).count()).isEqualTo(2 * posts);
+      assertThat(report.errors(LoadTest.STATIC)).isEqualTo(report.latencies(LoadTest.STATIC).count());
+      assertThat(report.latencies(LoadTest.GET).count()).isZero();
+      assertThat(report.latencies(LoadTest.ALL).count()).isEqualTo(paths.size());
+      assertThat(report.throughput(LoadTest.ALL)).isPositive();
+      assertThat(paths).contains("POST /", "GET /analysis/abc/cfg", "GET /analysis/abc/eg");
+
+      Map<String, Double> stages = report.meanStageDurations();
+      assertThat(stages.keySet()).containsExactly("egDot", "parse", "render", "se");
+      assertThat(stages.get("parse")).isEqualTo(1.5);
+      assertThat(report.format()).contains("p99.9 ms", "post", "view", "static", "all", "parse");
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void sources_are_read_from_a_directory() throws Exception {
+    assertThat(LoadTest.readSources(Paths.get("src/main/resources/warmup"))).hasSize(WarmUp.corpus().size());
+  }
+
+  @Test
+  public void mix_is_parsed() {
+    assertThat(LoadTest.parseMix("get=1, post=4,static=0")).containsExactly(
+      entry("get", 1), entry("post", 4), entry("static", 0));
+  }
+
+  @Test
+  public void unknown_kind_of_request() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("Unknown kind of request: 'put', expected 'get', 'post' or 'static'");
+
+    new LoadTest("http://localhost:9999", Collections.singletonList("class A {}"), 1, 100, LoadTest.parseMix("put=1"));
+  }
+
+  private static void respond(HttpExchange exchange, int status, String body, @Nullable String serverTiming) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    if (serverTiming != null) {
+      exchange.getResponseHeaders().add(ServerTiming.HEADER, serverTiming);
+    }
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream output = exchange.getResponseBody()) {
+      output.write(bytes);
+    }
+  }
+}
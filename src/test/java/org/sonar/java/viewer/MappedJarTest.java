@@ -0,0 +1,120 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedJarTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private static final String CONTENT = "some content, some content, some content, some content";
+
+  @Test
+  public void stored_and_deflated_entries_are_read_from_mapping() throws Exception {
+    MappedJar mappedJar = new MappedJar(jar(temporaryFolder.newFile("test.jar")));
+
+    assertThat(mappedJar.entries()).containsOnly("p/A.class", "p/stored.txt", "p/deflated.txt");
+    assertThat(mappedJar.classCount()).isEqualTo(1);
+    assertThat(read(mappedJar.open("p/stored.txt"))).isEqualTo(CONTENT);
+    assertThat(read(mappedJar.open("p/deflated.txt"))).isEqualTo(CONTENT);
+    assertThat(mappedJar.open("p/unknown.txt")).isNull();
+  }
+
+  @Test
+  public void moved_jar_keeps_its_index() throws Exception {
+    File file = jar(temporaryFolder.newFile("test.jar"));
+    MappedJar mappedJar = new MappedJar(file);
+    File target = new File(temporaryFolder.getRoot(), "moved.jar");
+    assertThat(file.renameTo(target)).isTrue();
+
+    MappedJar movedJar = mappedJar.movedTo(target);
+    assertThat(movedJar.file()).isEqualTo(target);
+    assertThat(read(movedJar.open("p/deflated.txt"))).isEqualTo(CONTENT);
+  }
+
+  @Test
+  public void invalid_jar_is_rejected() throws Exception {
+    File file = temporaryFolder.newFile("invalid.jar");
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("not a jar".getBytes(StandardCharsets.UTF_8));
+    }
+
+    exception.expect(IOException.class);
+    exception.expectMessage("Not a jar file");
+    new MappedJar(file);
+  }
+
+  static File jar(File file) throws IOException {
+    byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+    try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+      out.putNextEntry(new ZipEntry("p/"));
+      out.closeEntry();
+      out.putNextEntry(new ZipEntry("p/A.class"));
+      out.write(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+      out.closeEntry();
+
+      ZipEntry stored = new ZipEntry("p/stored.txt");
+      stored.setMethod(ZipEntry.STORED);
+      stored.setSize(bytes.length);
+      CRC32 crc = new CRC32();
+      crc.update(bytes);
+      stored.setCrc(crc.getValue());
+      out.putNextEntry(stored);
+      out.write(bytes);
+      out.closeEntry();
+
+      out.putNextEntry(new ZipEntry("p/deflated.txt"));
+      out.write(bytes);
+      out.closeEntry();
+    }
+    return file;
+  }
+
+  static String read(InputStream inputStream) throws IOException {
+    try (InputStream in = inputStream) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import com.sonar.sslr.api.typed.ActionParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.mockito.Mockito;
+import org.sonar.java.ast.ASTDotGraph;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.viewer.dto.ParserPoolDto;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ParserPoolTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void concurrent_parsing_gives_the_same_trees_as_sequential_parsing() throws Exception {
+    List<String> sources = IntStream.range(0, 200)
+      .mapToObj(i -> "class A" + i + " {\n  int foo" + i + "(int a) {\n    if (a > " + i + ") {\n      return a * " + i + ";\n    }\n"
+        + (i % 2 == 0 ? "    for (int j = 0; j < a; j++) { a += j; }\n" : "    while (a < " + i + ") { a++; }\n")
+        + "    return a;\n  }\n}")
+      .collect(Collectors.toList());
+    ParserPool sequentialPool = new ParserPool(1, JavaParser::createParser);
+    List<String> expected = sources.stream().map(source -> new ASTDotGraph(sequentialPool.parse(source)).toDot()).collect(Collectors.toList());
+
+    AtomicInteger createdParsers = new AtomicInteger();
+    ParserPool pool = new ParserPool(3, () -> {
+      createdParsers.incrementAndGet();
+      return JavaParser.createParser();
+    });
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> trees = new ArrayList<>();
+      sources.forEach(source -> trees.add(executor.submit(() -> new ASTDotGraph(pool.parse(source)).toDot())));
+      for (int i = 0; i < sources.size(); i++) {
+        assertThat(trees.get(i).get()).isEqualTo(expected.get(i));
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    ParserPoolDto stats = pool.stats();
+    assertThat(createdParsers.get()).isLessThanOrEqualTo(3);
+    assertThat(stats.created).isEqualTo(createdParsers.get());
+    assertThat(stats.checkouts).isEqualTo(200);
+    assertThat(stats.size).isEqualTo(3);
+  }
+
+  @Test
+  public void parsers_are_reused() {
+    AtomicInteger createdParsers = new AtomicInteger();
+    ParserPool pool = new ParserPool(2, () -> {
+      createdParsers.incrementAndGet();
+      return JavaParser.createParser();
+    });
+
+    pool.parse("class A {}");
+    pool.parse("class B {}");
+
+    assertThat(createdParsers.get()).isEqualTo(1);
+    assertThat(pool.stats().waits).isZero();
+  }
+
+  @Test
+  public void parser_is_returned_after_a_parse_error() {
+    ParserPool pool = new ParserPool(1, JavaParser::createParser);
+    assertThatThrownBy(() -> pool.parse("class A {")).isInstanceOf(RuntimeException.class);
+
+    assertThat(pool.parse("class A {}").types()).hasSize(1);
+    assertThat(pool.stats().created).isEqualTo(1);
+  }
+
+  @Test
+  public void checkouts_wait_for_a_parser_to_be_returned() throws Exception {
+    CountDownLatch parsing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompilationUnitTree cut = (CompilationUnitTree) JavaParser.createParser().parse("class A {}");
+    @SuppressWarnings("unchecked")
+    ActionParser<Tree> parser = Mockito.mock(ActionParser.class);
+    Mockito.when(parser.parse(Mockito.anyString())).thenAnswer(invocation -> {
+      parsing.countDown();
+      release.await();
+      return cut;
+    });
+    ParserPool pool = new ParserPool(1, () -> parser);
+
+    Thread first = new Thread(() -> pool.parse("first"));
+    first.start();
+    parsing.await();
+    Thread second = new Thread(() -> pool.parse("second"));
+    second.start();
+    while (second.getState() != Thread.State.WAITING) {
+      Thread.sleep(1);
+    }
+    release.countDown();
+    first.join();
+    second.join();
+
+    ParserPoolDto stats = pool.stats();
+    assertThat(stats.created).isEqualTo(1);
+    assertThat(stats.checkouts).isEqualTo(2);
+    assertThat(stats.waits).isEqualTo(1);
+    assertThat(stats.maxWait).isPositive().isLessThanOrEqualTo(stats.totalWait);
+  }
+
+  @Test
+  public void size_must_be_positive() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("Size of the parser pool must be positive: 0");
+
+    new ParserPool(0, JavaParser::createParser);
+  }
+}
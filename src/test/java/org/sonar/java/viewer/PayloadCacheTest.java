@@ -0,0 +1,140 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.sonar.java.viewer.dto.PayloadCacheDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PayloadCacheTest {
+
+  private static final int BLOCK_SIZE = 16;
+
+  private final PayloadCache cache = new PayloadCache(4 * BLOCK_SIZE, BLOCK_SIZE);
+
+  @Test
+  public void payloads_are_split_in_blocks() {
+    // characters encoded in 2, 3 and 4 bytes, crossing the boundaries of the blocks
+    String content = "digraph G { \u00e9 \u2192 \ud83d\ude00 }";
+    try (PayloadCache.Payload payload = cache.put("key", content)) {
+      assertThat(payload.isCached()).isTrue();
+      assertThat(payload.length()).isEqualTo(content.getBytes(StandardCharsets.UTF_8).length);
+      assertThat(payload.buffers()).hasSize(2);
+      assertThat(payload.buffers().get(0).isDirect()).isTrue();
+      assertThat(read(payload)).isEqualTo(content);
+    }
+    try (PayloadCache.Payload payload = cache.acquire("key")) {
+      assertThat(read(payload)).isEqualTo(content);
+      // buffers are positioned at their start on each call
+      assertThat(read(payload)).isEqualTo(content);
+    }
+    assertThat(cache.acquire("other")).isNull();
+
+    PayloadCacheDto stats = cache.stats();
+    assertThat(stats.capacity).isEqualTo(64);
+    assertThat(stats.used).isEqualTo(32);
+    assertThat(stats.payloadBytes).isEqualTo(content.getBytes(StandardCharsets.UTF_8).length);
+    assertThat(stats.payloads).isEqualTo(1);
+    assertThat(stats.hits).isEqualTo(1);
+    assertThat(stats.misses).isEqualTo(1);
+  }
+
+  @Test
+  public void least_recently_used_payloads_are_evicted() {
+    cache.put("a", repeat('a', 32)).close();
+    cache.put("b", repeat('b', 16)).close();
+    cache.acquire("a").close();
+
+    cache.put("c", repeat('c', 32)).close();
+
+    assertThat(cache.contains("a")).isTrue();
+    assertThat(cache.contains("b")).isFalse();
+    assertThat(read(cache.acquire("c"))).isEqualTo(repeat('c', 32));
+    assertThat(cache.stats().evictions).isEqualTo(1);
+    assertThat(cache.stats().used).isEqualTo(64);
+  }
+
+  @Test
+  public void blocks_of_payloads_being_read_are_not_reused() {
+    PayloadCache.Payload reading = cache.put("a", repeat('a', 64));
+
+    PayloadCache.Payload uncached = cache.put("b", repeat('b', 16));
+    assertThat(uncached.isCached()).isFalse();
+    assertThat(read(uncached)).isEqualTo(repeat('b', 16));
+    assertThat(cache.contains("a")).isFalse();
+    assertThat(read(reading)).isEqualTo(repeat('a', 64));
+
+    reading.close();
+    reading.close();
+    assertThat(cache.stats().used).isZero();
+    try (PayloadCache.Payload payload = cache.put("b", repeat('b', 16))) {
+      assertThat(payload.isCached()).isTrue();
+    }
+  }
+
+  @Test
+  public void replaced_payloads_are_released() {
+    cache.put("a", repeat('a', 48)).close();
+    cache.put("a", repeat('b', 48)).close();
+
+    assertThat(read(cache.acquire("a"))).isEqualTo(repeat('b', 48));
+    assertThat(cache.stats().used).isEqualTo(48);
+
+    cache.invalidateAll();
+    assertThat(cache.stats().used).isZero();
+    assertThat(cache.stats().payloads).isZero();
+  }
+
+  @Test
+  public void payloads_larger_than_the_cache_are_not_cached() {
+    try (PayloadCache.Payload payload = cache.put("large", repeat('x', 100))) {
+      assertThat(payload.isCached()).isFalse();
+      assertThat(read(payload)).isEqualTo(repeat('x', 100));
+    }
+    assertThat(cache.contains("large")).isFalse();
+    assertThat(cache.stats().uncached).isEqualTo(1);
+  }
+
+  @Test
+  public void capacity_holds_at_least_one_block() {
+    assertThatThrownBy(() -> new PayloadCache(8, BLOCK_SIZE))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessage("Capacity must hold at least one block: 8");
+  }
+
+  private static String read(PayloadCache.Payload payload) {
+    ByteBuffer content = ByteBuffer.allocate(payload.length());
+    payload.buffers().forEach(content::put);
+    content.flip();
+    return StandardCharsets.UTF_8.decode(content).toString();
+  }
+
+  private static String repeat(char c, int count) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      result.append(c);
+    }
+    return result.toString();
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.dto.ProjectDto;
+import org.sonar.plugins.java.api.semantic.Symbol;
+import org.sonar.plugins.java.api.tree.ExpressionStatementTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private static final String FILE_A = "package p;\n"
+    + "class A {\n"
+    + "  void foo(B b) {\n"
+    + "    b.bar();\n"
+    + "  }\n"
+    + "}";
+  private static final String FILE_B = "package p;\n"
+    + "class B {\n"
+    + "  abstract static class Inner {\n"
+    + "    abstract void qix();\n"
+    + "  }\n"
+    + "  Object bar() {\n"
+    + "    return null;\n"
+    + "  }\n"
+    + "}";
+
+  @Test
+  public void types_from_sibling_files_are_resolved() {
+    Project project = new Project(sources(), new ServerTiming());
+
+    Viewer.Base base = project.base("p/A.java:3:7", new ServerTiming());
+    MethodInvocationTree methodInvocation = (MethodInvocationTree) ((ExpressionStatementTree) base.firstMethodOrConstructor.block().body().get(0)).expression();
+    Symbol symbol = methodInvocation.symbol();
+    assertThat(symbol.isUnknown()).isFalse();
+    assertThat(symbol.owner().type().is("p.B")).isTrue();
+  }
+
+  @Test
+  public void methods_with_body_of_all_files_can_be_selected() {
+    Project project = new Project(sources(), new ServerTiming());
+
+    ProjectDto details = project.details(project.method("p/B.java:6:9"));
+    assertThat(details.selected).isEqualTo("p/B.java:6:9");
+    assertThat(details.methods).extracting(method -> method.label).containsExactly("A#foo L#3", "B#bar L#6");
+    assertThat(details.methods).extracting(method -> method.file).containsExactly("p/A.java", "p/B.java");
+
+    assertThat(project.base("p/B.java:6:9", new ServerTiming()).firstMethodOrConstructor.simpleName().name()).isEqualTo("bar");
+    // first method when none is selected
+    assertThat(project.method(null).key).isEqualTo("p/A.java:3:7");
+    assertThat(project.method("unknown")).isNull();
+    assertThat(project.method("p/B.java:6")).isNull();
+  }
+
+  @Test
+  public void methods_declared_on_the_same_line_can_be_selected() {
+    Map<String, String> sources = new LinkedHashMap<>();
+    sources.put("p/C.java", "package p;\n"
+      + "class C {\n"
+      + "  void foo() { } void bar() { }\n"
+      + "}");
+    Project project = new Project(sources, new ServerTiming());
+
+    assertThat(project.details(null).methods).extracting(method -> method.key).containsExactly("p/C.java:3:7", "p/C.java:3:22");
+    assertThat(project.base("p/C.java:3:22", new ServerTiming()).firstMethodOrConstructor.simpleName().name()).isEqualTo("bar");
+  }
+
+  @Test
+  public void parsing_indexing_and_resolution_are_timed_per_file() {
+    ServerTiming timing = new ServerTiming();
+    Project project = new Project(sources(), timing);
+
+    assertThat(timing.durations().keySet()).containsExactly("parse", "classpath", "semantic");
+    ProjectDto details = project.details(null);
+    assertThat(details.selected).isNull();
+    assertThat(details.files).extracting(file -> file.name).containsExactly("p/A.java", "p/B.java");
+    assertThat(details.files.get(0).timings.keySet()).containsExactly("parse", "index", "resolve");
+  }
+
+  @Test
+  public void values_can_be_computed_for_a_selected_method() {
+    Project project = new Project(sources(), new ServerTiming());
+    Map<String, String> values = Viewer.getValues(project.base("p/A.java:3:7", new ServerTiming()), new ServerTiming());
+
+    assertThat(values.get("dotEG")).isNotEmpty();
+    assertThat(values.get("errorMessage")).isEmpty();
+  }
+
+  @Test
+  public void project_without_file_is_rejected() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("No java file provided.");
+
+    new Project(new LinkedHashMap<>(), new ServerTiming());
+  }
+
+  @Test
+  public void read_java_files_and_zip_archives() throws Exception {
+    Map<String, String> single = Project.readSources("A.java", new ByteArrayInputStream(FILE_A.getBytes(StandardCharsets.UTF_8)));
+    assertThat(single).containsOnlyKeys("A.java");
+    assertThat(single.get("A.java")).isEqualTo(FILE_A);
+
+    assertThat(Project.readSources("README.md", new ByteArrayInputStream(new byte[0]))).isEmpty();
+
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(zip)) {
+      zipOutputStream.putNextEntry(new ZipEntry("p/"));
+      zipOutputStream.putNextEntry(new ZipEntry("p/A.java"));
+      zipOutputStream.write(FILE_A.getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.putNextEntry(new ZipEntry("p/B.java"));
+      zipOutputStream.write(FILE_B.getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.putNextEntry(new ZipEntry("p/notes.txt"));
+    }
+    Map<String, String> fromZip = Project.readSources("project.zip", new ByteArrayInputStream(zip.toByteArray()));
+    assertThat(fromZip).containsOnlyKeys("p/A.java", "p/B.java");
+    assertThat(fromZip.get("p/B.java")).isEqualTo(FILE_B);
+  }
+
+  private static Map<String, String> sources() {
+    Map<String, String> sources = new LinkedHashMap<>();
+    sources.put("p/A.java", FILE_A);
+    sources.put("p/B.java", FILE_B);
+    return sources;
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResultStoreTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void results_are_kept_across_restarts() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ResultStore store = new ResultStore(directory, "4.14", 1024);
+    for (int i = 0; i < 100; i++) {
+      store.put("key" + i, ("payload " + i).getBytes(StandardCharsets.UTF_8));
+    }
+    assertThat(temporaryFolder.getRoot().list()).hasSize(4);
+
+    ResultStore reopenedStore = new ResultStore(directory, "4.14", 1024);
+    assertThat(reopenedStore.size()).isEqualTo(100);
+    assertThat(content(reopenedStore.get("key42"))).isEqualTo("payload 42");
+    assertThat(reopenedStore.get("unknown")).isNull();
+  }
+
+  @Test
+  public void stored_payload_is_a_read_only_view() throws Exception {
+    ResultStore store = new ResultStore(temporaryFolder.getRoot().toPath(), "4.14", 1024);
+    store.put("key", "payload".getBytes(StandardCharsets.UTF_8));
+
+    ByteBuffer payload = store.get("key");
+    assertThat(payload.isReadOnly()).isTrue();
+    assertThat(payload.isDirect()).isTrue();
+    assertThat(content(payload)).isEqualTo("payload");
+  }
+
+  @Test
+  public void stale_results_are_dropped_by_compaction() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ResultStore store = new ResultStore(directory, "4.14", 1024);
+    for (int i = 0; i < 20; i++) {
+      store.put("key" + (i % 5), ("payload " + i).getBytes(StandardCharsets.UTF_8));
+    }
+    assertThat(store.size()).isEqualTo(5);
+    assertThat(store.staleBytes()).isGreaterThan(0);
+
+    // more than half of the content is stale: compacted when opening
+    ResultStore reopenedStore = new ResultStore(directory, "4.14", 1024);
+    assertThat(reopenedStore.staleBytes()).isZero();
+    assertThat(content(reopenedStore.get("key3"))).isEqualTo("payload 18");
+
+    // results of another version of SonarJava are stale
+    ResultStore upgradedStore = new ResultStore(directory, "4.15", 1024);
+    assertThat(upgradedStore.size()).isZero();
+    assertThat(temporaryFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void least_recently_used_results_are_dropped_when_store_is_full() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ResultStore store = new ResultStore(directory, "4.14", 1024, 4 * 1024);
+    store.put("kept", "payload kept".getBytes(StandardCharsets.UTF_8));
+    for (int i = 0; i < 500; i++) {
+      store.put("key" + i, ("payload " + i).getBytes(StandardCharsets.UTF_8));
+      // recently read results are kept
+      assertThat(store.get("kept")).isNotNull();
+      assertThat(store.segmentCount()).isLessThanOrEqualTo(4);
+      assertThat(temporaryFolder.getRoot().list().length).isLessThanOrEqualTo(4);
+    }
+    assertThat(store.get("key0")).isNull();
+    assertThat(content(store.get("key499"))).isEqualTo("payload 499");
+    assertThat(content(store.get("kept"))).isEqualTo("payload kept");
+
+    // a store reopened with a lower maximum size is compacted
+    ResultStore reopenedStore = new ResultStore(directory, "4.14", 1024, 2 * 1024);
+    assertThat(reopenedStore.segmentCount()).isLessThanOrEqualTo(2);
+    assertThat(content(reopenedStore.get("key499"))).isEqualTo("payload 499");
+  }
+
+  @Test
+  public void full_store_is_compacted_one_segment_at_a_time() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ResultStore store = new ResultStore(directory, "4.14", 1024, 4 * 1024);
+    ByteBuffer firstPayload = null;
+    for (int i = 0; i < 500; i++) {
+      Set<String> deletedSegments = new HashSet<>(Arrays.asList(temporaryFolder.getRoot().list()));
+      store.put("key" + i, ("payload " + i).getBytes(StandardCharsets.UTF_8));
+      if (firstPayload == null) {
+        firstPayload = store.get("key0");
+      }
+      deletedSegments.removeAll(Arrays.asList(temporaryFolder.getRoot().list()));
+      assertThat(deletedSegments.size()).isLessThanOrEqualTo(1);
+    }
+    // records moved by the compaction are still found, and payloads previously returned remain readable
+    assertThat(content(store.get("key499"))).isEqualTo("payload 499");
+    assertThat(content(firstPayload)).isEqualTo("payload 0");
+  }
+
+  @Test
+  public void partially_written_record_is_ignored() throws Exception {
+    Path directory = temporaryFolder.getRoot().toPath();
+    ResultStore store = new ResultStore(directory, "4.14", 1024);
+    store.put("key1", "payload 1".getBytes(StandardCharsets.UTF_8));
+    store.put("key2", "payload 2".getBytes(StandardCharsets.UTF_8));
+    File segment = temporaryFolder.getRoot().listFiles()[0];
+    // corrupt the last byte of the second payload
+    try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+      int offset = new String(Files.readAllBytes(segment.toPath()), StandardCharsets.ISO_8859_1).indexOf("payload 2") + 8;
+      file.seek(offset);
+      file.write('X');
+    }
+
+    ResultStore reopenedStore = new ResultStore(directory, "4.14", 1024);
+    assertThat(reopenedStore.size()).isEqualTo(1);
+    reopenedStore.put("key3", "payload 3".getBytes(StandardCharsets.UTF_8));
+    assertThat(content(new ResultStore(directory, "4.14", 1024).get("key3"))).isEqualTo("payload 3");
+  }
+
+  @Test
+  public void version_of_sonar_java_is_read_from_its_jar() {
+    assertThat(ResultStore.sonarJavaVersion()).isNotEqualTo("unknown");
+  }
+
+  private static String content(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
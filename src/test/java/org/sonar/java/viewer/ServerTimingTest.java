@@ -0,0 +1,67 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.util.Map;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class ServerTimingTest {
+
+  @Test
+  public void stages_are_kept_in_order_and_cumulated() {
+    ServerTiming timing = new ServerTiming();
+    timing.add("parse", 1_500_000);
+    timing.add("se", 42_000_000);
+    timing.add("parse", 500_000);
+
+    Map<String, Double> durations = timing.durations();
+    assertThat(durations.keySet()).containsExactly("parse", "se");
+    assertThat(durations.get("parse")).isEqualTo(2.0);
+    assertThat(durations.get("se")).isEqualTo(42.0);
+  }
+
+  @Test
+  public void header_value() {
+    ServerTiming timing = new ServerTiming();
+    assertThat(timing.toHeader()).isEmpty();
+
+    timing.add("parse", 1_234_567);
+    timing.add("se", 10_000_000);
+    assertThat(timing.toHeader()).isEqualTo("parse;dur=1.235, se;dur=10.000");
+  }
+
+  @Test
+  public void measure_returns_result_and_records_stage_even_on_failure() {
+    ServerTiming timing = new ServerTiming();
+    assertThat(timing.measure("compute", () -> 42)).isEqualTo(42);
+    try {
+      timing.measure("fail", (Runnable) () -> {
+        throw new IllegalStateException();
+      });
+      fail("IllegalStateException expected");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    assertThat(timing.durations().keySet()).containsExactly("compute", "fail");
+  }
+}
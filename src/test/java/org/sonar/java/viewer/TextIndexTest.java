@@ -0,0 +1,171 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import javax.annotation.CheckForNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.java.viewer.dto.CommonDto;
+import org.sonar.java.viewer.dto.MatchesDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TextIndexTest {
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  private final TestGraph graph = new TestGraph();
+
+  @Test
+  public void exact_tokens_come_before_prefixes_and_substrings() {
+    MatchesDto matches = graph.textIndex().search("B1.0", 10);
+
+    assertThat(matches.nodes).containsExactly(1, 0, 2);
+    assertThat(matches.edges).isEmpty();
+  }
+
+  @Test
+  public void search_is_not_case_sensitive_and_includes_details() {
+    assertThat(graph.textIndex().search("illegalstateexception", 10).nodes).containsExactly(2);
+    assertThat(graph.textIndex().search("  java.lang  ", 10).nodes).containsExactly(2);
+  }
+
+  @Test
+  public void edges_are_identified_by_the_nodes_they_connect() {
+    MatchesDto matches = graph.textIndex().search("SV_1", 10);
+
+    assertThat(matches.nodes).isEmpty();
+    assertThat(matches.edges).hasSize(1);
+    assertThat(matches.edges.get(0)).containsExactly(0, 1);
+  }
+
+  @Test
+  public void properties_of_nodes_declared_several_times_are_merged() {
+    assertThat(graph.textIndex().search("second", 10).nodes).containsExactly(1);
+    assertThat(graph.textIndex().search("B1.0", 10).nodes).containsOnlyOnce(1);
+  }
+
+  @Test
+  public void short_texts_are_searched_in_all_nodes() {
+    assertThat(graph.textIndex().search("b1", 10).nodes).containsExactly(0, 1, 2);
+    assertThat(graph.textIndex().search("zz", 10).nodes).isEmpty();
+  }
+
+  @Test
+  public void results_are_limited() {
+    assertThat(graph.textIndex().search("B1.0", 2).nodes).containsExactly(1, 0);
+  }
+
+  @Test
+  public void index_is_built_once_and_does_not_change_dot_output() {
+    String dot = new TestGraph().toDot();
+
+    assertThat(graph.textIndex()).isSameAs(graph.textIndex());
+    assertThat(graph.toDot()).isEqualTo(dot);
+  }
+
+  @Test
+  public void text_is_required() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("A text to search is required.");
+
+    graph.textIndex().search(" ", 10);
+  }
+
+  private static class TestGraph extends DotGraph {
+
+    @Override
+    public String name() {
+      return "Test";
+    }
+
+    @Override
+    public void build() {
+      addNode(new TestNode(0, "B1.0x", null));
+      addNode(new TestNode(1, "B1.0  IDENTIFIER", null));
+      addNode(new TestNode(1, "second", null));
+      addNode(new TestNode(2, "B2.0", new TestDetails("AB1.0", "java.lang.IllegalStateException")));
+      addEdge(new TestEdge(0, 1, "SV_1->NULL"));
+      addEdge(new TestEdge(1, 2, null));
+    }
+  }
+
+  private static class TestNode extends DotGraph.Node {
+    private final String label;
+    private final CommonDto details;
+
+    TestNode(int id, String label, @CheckForNull CommonDto details) {
+      super(id);
+      this.label = label;
+      this.details = details;
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public DotGraph.Highlighting highlighting() {
+      return null;
+    }
+
+    @Override
+    public CommonDto details() {
+      return details;
+    }
+  }
+
+  private static class TestEdge extends DotGraph.Edge {
+    private final String label;
+
+    TestEdge(int from, int to, @CheckForNull String label) {
+      super(from, to);
+      this.label = label;
+    }
+
+    @Override
+    public String label() {
+      return label;
+    }
+
+    @Override
+    public DotGraph.Highlighting highlighting() {
+      return null;
+    }
+
+    @Override
+    public CommonDto details() {
+      return null;
+    }
+  }
+
+  private static class TestDetails implements CommonDto {
+    public final String ppKey;
+    public final String exception;
+
+    TestDetails(String ppKey, String exception) {
+      this.ppKey = ppKey;
+      this.exception = exception;
+    }
+  }
+}
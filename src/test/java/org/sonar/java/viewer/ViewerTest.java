@@ -19,13 +19,16 @@
  */
 package org.sonar.java.viewer;
 
+import com.google.gson.Gson;
 import java.io.File;
 import java.io.FileInputStream;
 import java.lang.reflect.Constructor;
 import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -38,6 +41,10 @@ import org.apache.http.util.EntityUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.java.se.EGDotGraph;
+import org.sonar.java.viewer.dto.GraphsDto;
+import org.sonar.java.viewer.dto.ViewDto;
 import org.sonar.plugins.java.api.semantic.Symbol;
 import org.sonar.plugins.java.api.tree.ExpressionStatementTree;
 import org.sonar.plugins.java.api.tree.MethodInvocationTree;
@@ -50,6 +57,9 @@ public class ViewerTest {
   @Rule
   public final ExpectedException exception = ExpectedException.none();
 
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Test
   public void private_constructor() throws Exception {
     Constructor<Viewer> constructor = Viewer.class.getDeclaredConstructor();
@@ -82,6 +92,34 @@ public class ViewerTest {
     assertThat(symbol.owner().type().is("com.google.common.base.Strings")).isTrue();
   }
 
+  @Test
+  public void stored_graphs_are_only_reused_for_code_with_same_lines() throws Exception {
+    ResultStore store = new ResultStore(temporaryFolder.getRoot().toPath(), "test", 1024 * 1024);
+    String source = "class A {\n"
+      + "  Object foo(Object o) {\n"
+      + "    if (o == null) {\n"
+      + "      return null;\n"
+      + "    }\n"
+      + "    return o;\n"
+      + "  }\n"
+      + "}";
+    // equivalent code, only differing by line breaks
+    String movedSource = source.replace("if (o == null) {", "if (o == null)\n    {");
+    Map<String, String> values = Viewer.getValues(new Viewer.Base(source), Workspace.defaultWorkspace(), "all", new ServerTiming(), store);
+
+    Map<String, String> movedValues = Viewer.getValues(new Viewer.Base(movedSource), Workspace.defaultWorkspace(), "all", new ServerTiming(), store);
+    Map<String, String> expectedMovedValues = Viewer.getValues(movedSource);
+    assertThat(movedValues.get("cfg")).isEqualTo(expectedMovedValues.get("cfg"));
+    assertThat(movedValues.get("dotCFG")).isEqualTo(expectedMovedValues.get("dotCFG"));
+    assertThat(movedValues.get("dotEG")).isEqualTo(expectedMovedValues.get("dotEG")).isNotEqualTo(values.get("dotEG"));
+
+    ServerTiming timing = new ServerTiming();
+    Map<String, String> storedValues = Viewer.getValues(new Viewer.Base(source), Workspace.defaultWorkspace(), "all", timing, store);
+    assertThat(timing.durations()).doesNotContainKey("se");
+    assertThat(storedValues.get("dotEG")).isEqualTo(values.get("dotEG"));
+    assertThat(storedValues.get("cfg")).isEqualTo(values.get("cfg"));
+  }
+
   @Test
   public void code_with_method_provide_everything_but_error_messages() {
     String source = "class A {"
@@ -99,11 +137,45 @@ public class ViewerTest {
     assertThat(values.get("dotAST")).isNotEmpty();
     assertThat(values.get("dotCFG")).isNotEmpty();
     assertThat(values.get("dotEG")).isNotEmpty();
+    assertThat(values.get("astGraph")).isNotEmpty();
+    assertThat(values.get("cfgGraph")).isNotEmpty();
+    assertThat(values.get("egGraph")).isNotEmpty();
+    assertThat(values.get("dotCallGraph")).isNotEmpty();
+    assertThat(values.get("callGraph")).isNotEmpty();
 
     assertThat(values.get("errorMessage")).isEmpty();
     assertThat(values.get("errorStackTrace")).isEmpty();
   }
 
+  @Test
+  public void values_computation_is_timed() {
+    ServerTiming timing = new ServerTiming();
+    Viewer.getValues("class A { void foo() {} }", timing);
+
+    assertThat(timing.durations().keySet()).containsExactly("parse", "classpath", "semantic", "cfg", "cfgText", "astDot", "cfgDot", "callGraphDot", "se", "egDot");
+  }
+
+  @Test
+  public void both_versions_are_analyzed_for_diff() {
+    ServerTiming timing = new ServerTiming();
+    String diff = Viewer.getDiff("class A { void foo() {} }", "class A { void foo() { bar(); } }", Workspace.defaultWorkspace(), timing);
+
+    assertThat(diff).startsWith("graph ExplodedGraphDiff {").contains("addedNode");
+    assertThat(timing.durations().keySet()).contains("before", "after", "diff");
+  }
+
+  @Test
+  public void ticket_of_a_stream_is_released_once_the_exploration_is_done() {
+    AdmissionControl admission = new AdmissionControl(100 * 1024 * 1024, () -> 0, 0);
+    CompletableFuture<EGDotGraph> graph = new CompletableFuture<>();
+
+    Viewer.release(admission.admit(), graph);
+    assertThat(admission.stats().inFlight).isEqualTo(1);
+
+    graph.complete(null);
+    assertThat(admission.stats().inFlight).isZero();
+  }
+
   @Test
   public void values_with_error() {
     String message = "my exception message";
@@ -129,6 +201,8 @@ public class ViewerTest {
     try(CloseableHttpClient client = HttpClients.createMinimal()) {
       CloseableHttpResponse resp = client.execute(new HttpGet(uri));
       assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      // graphs are computed when shown
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("parse;dur=", "render;dur=").doesNotContain("semantic;dur=", "egDot;dur=");
       assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo(IOUtils.toString(new FileInputStream(new File("src/test/resources/viewer_result1.html"))));
 
       // post with no data, answer with default code.
@@ -154,6 +228,201 @@ public class ViewerTest {
       resp = client.execute(httpPost);
       assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
       assertThat(EntityUtils.toString(resp.getEntity())).contains("<p>java.lang.NullPointerException: Unable to find a method/constructor in first class.<br/>");
+
+      // graphs of the page
+      String analysis = Analysis.id("class B{void meth() {}}", Workspace.defaultWorkspace());
+      Map<String, String> values = Viewer.getValues("class B{void meth() {}}");
+      resp = client.execute(new HttpGet(uri + "analysis/" + analysis + "/cfg"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("semantic;dur=", "cfgDot;dur=").doesNotContain("parse;dur=", "egDot;dur=");
+      ViewDto view = new Gson().fromJson(EntityUtils.toString(resp.getEntity()), ViewDto.class);
+      assertThat(view.text).isEqualTo(values.get("cfg"));
+      assertThat(view.dot).isEqualTo(values.get("dotCFG"));
+      assertThat(view.graph).isEqualTo(values.get("cfgGraph"));
+
+      resp = client.execute(new HttpGet(uri + "analysis/" + analysis + "/eg"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("se;dur=", "egDot;dur=").doesNotContain("semantic;dur=");
+      view = new Gson().fromJson(EntityUtils.toString(resp.getEntity()), ViewDto.class);
+      assertThat(view.dot).isEqualTo(values.get("dotEG"));
+      assertThat(view.graph).isEqualTo(values.get("egGraph"));
+      assertThat(view.text).isNull();
+
+      resp = client.execute(new HttpGet(uri + "analysis/" + analysis + "/none"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unknown view: 'none', expected one of [ast, cfg, eg, callgraph].");
+
+      resp = client.execute(new HttpGet(uri + "analysis/unknown/cfg"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(404);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unknown analysis: unknown");
+
+      // analysis made again from the source of the page
+      String otherAnalysis = Analysis.id("class C{void meth() {}}", Workspace.defaultWorkspace());
+      httpPost = new HttpPost(uri + "analysis/" + otherAnalysis + "/ast");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class C{void meth() {}}"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(new Gson().fromJson(EntityUtils.toString(resp.getEntity()), ViewDto.class).dot).isEqualTo(Viewer.getValues("class C{void meth() {}}").get("dotAST"));
+
+      httpPost = new HttpPost(uri + "analysis/unknown/ast");
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Source does not match analysis: unknown");
+
+      // graphs only, to update the page in place
+      httpPost = new HttpPost(uri + "graphs");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class B{void meth() {}}"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      // the semantic model of the analysis of the page is reused
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("egDot;dur=").doesNotContain("parse;dur=", "semantic;dur=");
+      GraphsDto graphs = new Gson().fromJson(EntityUtils.toString(resp.getEntity()), GraphsDto.class);
+      assertThat(graphs.cfg).isEqualTo(values.get("cfg"));
+      assertThat(graphs.dotEG).isEqualTo(values.get("dotEG"));
+      assertThat(graphs.egGraph).isEqualTo(values.get("egGraph"));
+      assertThat(graphs.dotAST).isEqualTo(values.get("dotAST"));
+      assertThat(graphs.dotCallGraph).isEqualTo(values.get("dotCallGraph"));
+
+      // syntax stage, without symbolic execution
+      httpPost = new HttpPost(uri + "graphs");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class B{void meth() {}}"));
+      postParameters.add(new BasicNameValuePair("stage", "syntax"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("astDot;dur=", "cfgDot;dur=").doesNotContain("egDot;dur=");
+      graphs = new Gson().fromJson(EntityUtils.toString(resp.getEntity()), GraphsDto.class);
+      assertThat(graphs.cfg).isEqualTo(values.get("cfg"));
+      assertThat(graphs.dotCFG).isEqualTo(values.get("dotCFG"));
+      assertThat(graphs.dotAST).isEqualTo(values.get("dotAST"));
+      assertThat(graphs.dotEG).isNull();
+      assertThat(graphs.egGraph).isNull();
+      assertThat(graphs.dotCallGraph).isNull();
+
+      // stages of new code share the semantic model computed by the first one
+      httpPost = new HttpPost(uri + "graphs");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class D{void meth() {}}"));
+      postParameters.add(new BasicNameValuePair("stage", "syntax"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("parse;dur=", "semantic;dur=");
+      httpPost = new HttpPost(uri + "graphs");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class D{void meth() {}}"));
+      postParameters.add(new BasicNameValuePair("stage", "exploration"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      // graphs of the syntax stage are not computed again
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("egDot;dur=", "callGraphDot;dur=")
+        .doesNotContain("parse;dur=", "semantic;dur=", "cfgText;dur=", "cfgDot;dur=", "astDot;dur=");
+      graphs = new Gson().fromJson(EntityUtils.toString(resp.getEntity()), GraphsDto.class);
+      assertThat(graphs.dotEG).isEqualTo(Viewer.getValues("class D{void meth() {}}").get("dotEG"));
+      assertThat(graphs.dotCallGraph).isNotEmpty();
+      assertThat(graphs.cfg).isNull();
+      assertThat(graphs.dotCFG).isNull();
+      assertThat(graphs.dotAST).isNull();
+
+      httpPost = new HttpPost(uri + "graphs?stage=none");
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unknown stage: 'none', expected 'all', 'syntax' or 'exploration'.");
+
+      httpPost = new HttpPost(uri + "graphs");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class B{}"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unable to find a method/constructor in first class.");
+
+      // query the exploded graph of the page
+      String graphId = Viewer.getValues("class A {void fun() {}}").get("egGraph");
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/query?constraint=TRUE"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("index;dur=", "query;dur=");
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("{\"nodes\":[0],\"edges\":[]}");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/query"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("A symbolic value, a symbol or a constraint is required.");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/search?q=b0.0"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("index;dur=", "search;dur=");
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("{\"nodes\":[0],\"edges\":[]}");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/search?q=B0.0&limit=none"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      EntityUtils.consume(resp.getEntity());
+
+      // paths in the exploded graph of the page
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/path?to=0"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("index;dur=", "paths;dur=");
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("{\"paths\":[[0]],\"truncated\":false}");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/ancestors?of=0"));
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("{\"nodes\":[],\"edges\":[]}");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/exceptional-paths"));
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("{\"paths\":[],\"truncated\":false}");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/profile"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader(ServerTiming.HEADER).getValue()).contains("profile;dur=");
+      assertThat(EntityUtils.toString(resp.getEntity())).startsWith("{\"nodes\":1,\"edges\":0,\"programPoints\":[{\"ppKey\":\"B0.0\"");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/path"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Parameter 'to' is required.");
+
+      // export of the exploded graph of the page
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/export"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader("Content-Type").getValue()).startsWith(GraphMLWriter.CONTENT_TYPE);
+      assertThat(EntityUtils.toString(resp.getEntity())).contains("<graph id=\"ExplodedGraph\" edgedefault=\"directed\"><node id=\"n0\">");
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/export?format=binary"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      byte[] exported = EntityUtils.toByteArray(resp.getEntity());
+      assertThat(new String(exported, 0, 4, StandardCharsets.US_ASCII)).isEqualTo("SGVB");
+      assertThat(exported[4]).isEqualTo(BinaryGraphWriter.VERSION);
+
+      resp = client.execute(new HttpGet(uri + "graph/" + graphId + "/export?format=dot"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(400);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unknown format: 'dot', expected 'graphml' or 'binary'.");
+
+      // exploded graph streamed while explored
+      httpPost = new HttpPost(uri + "stream");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class A {void fun() {}}"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(200);
+      assertThat(resp.getFirstHeader("Content-Type").getValue()).startsWith("text/event-stream");
+      String events = EntityUtils.toString(resp.getEntity());
+      assertThat(events).contains("event: done\ndata: {\"graph\":\"" + graphId + "\",\"dot\":\"graph ExplodedGraph {");
+      assertThat(events).startsWith("event: batch\ndata: {\"nodes\":[{\"id\":0,");
+
+      httpPost = new HttpPost(uri + "stream");
+      postParameters = new ArrayList<>();
+      postParameters.add(new BasicNameValuePair("javaCode", "class B{}"));
+      httpPost.setEntity(new UrlEncodedFormEntity(postParameters, "UTF-8"));
+      resp = client.execute(httpPost);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("event: error\ndata: Unable to find a method/constructor in first class.\n\n");
+
+      resp = client.execute(new HttpGet(uri + "graph/unknown/query?constraint=TRUE"));
+      assertThat(resp.getStatusLine().getStatusCode()).isEqualTo(404);
+      assertThat(EntityUtils.toString(resp.getEntity())).isEqualTo("Unknown graph: unknown");
     }
 
   }
@@ -190,6 +459,10 @@ public class ViewerTest {
     assertThat(dotEG).contains("?methodName?:?bar?");
     assertThat(dotEG).contains("?methodYields?:[{?result?:[?NOT_NULL?,?TRUE?],?resultIndex?:-1,?params?:[]}]");
 
+    assertThat(values.get("dotCallGraph")).isEqualTo("graph CallGraph {3[label=\"A\",highlighting=\"classKind\"];"
+      + "0[label=\"foo(boolean) L#1\",highlighting=\"methodKind\"];3->0[];1[label=\"bar() L#1\",highlighting=\"methodKind\"];3->1[];"
+      + "2[label=\"throwing() L#1\",highlighting=\"methodKind\"];3->2[];0->1[label=\"call\"];0->2[label=\"call\"];}");
+
     assertThat(values.get("errorMessage")).isEmpty();
     assertThat(values.get("errorStackTrace")).isEmpty();
   }
@@ -0,0 +1,61 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WarmUpTest {
+
+  @Test
+  public void corpus_is_analyzed_before_being_done() {
+    WarmUp warmUp = new WarmUp("class A { void foo() {} }", 1);
+    assertThat(warmUp.isDone()).isFalse();
+
+    warmUp.run();
+    assertThat(warmUp.isDone()).isTrue();
+    assertThat(warmUp.duration()).isGreaterThan(0);
+  }
+
+  @Test
+  public void no_warm_up_without_rounds() {
+    WarmUp warmUp = new WarmUp("class A { void foo() {} }", 0);
+
+    warmUp.run();
+    assertThat(warmUp.isDone()).isTrue();
+    assertThat(warmUp.duration()).isZero();
+  }
+
+  @Test
+  public void warm_up_is_done_despite_a_source_without_method() {
+    WarmUp warmUp = new WarmUp("class A { }", 1);
+
+    warmUp.run();
+    assertThat(warmUp.isDone()).isTrue();
+  }
+
+  @Test
+  public void corpus_sources_are_valid() {
+    for (String name : new String[] {"Loops", "Exceptions", "Switches", "Lambdas"}) {
+      assertThat(Viewer.getValues(Viewer.fileContent("/warmup/" + name + ".java")).get("errorMessage")).isEmpty();
+    }
+  }
+}
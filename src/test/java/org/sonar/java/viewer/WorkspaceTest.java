@@ -0,0 +1,120 @@
+/*
+ * SonarQube SourgeGraph Viewer
+ * Copyright (C) 2017-2017 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.java.viewer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.java.bytecode.loader.SquidClassLoader;
+import org.sonar.java.viewer.dto.WorkspaceDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WorkspaceTest {
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Rule
+  public final ExpectedException exception = ExpectedException.none();
+
+  @Test
+  public void uploaded_jars_are_indexed_and_shared() throws Exception {
+    Workspace workspace = Workspace.get(UUID.randomUUID().toString());
+    assertThat(Workspace.get(workspace.id)).isSameAs(workspace);
+    SquidClassLoader initialClassLoader = workspace.classLoader();
+    assertThat(workspace.classLoader()).isSameAs(initialClassLoader);
+
+    File jar = MappedJarTest.jar(temporaryFolder.newFile("test.jar"));
+    try (InputStream inputStream = new FileInputStream(jar)) {
+      workspace.addJar("lib.jar", inputStream);
+    }
+
+    WorkspaceDto details = workspace.details();
+    assertThat(details.id).isEqualTo(workspace.id);
+    assertThat(details.jars).extracting(jarDto -> jarDto.name).contains("lib.jar");
+    assertThat(details.jars.stream().filter(jarDto -> jarDto.workspace.equals(workspace.id)).findFirst().get().classes).isEqualTo(1);
+
+    SquidClassLoader classLoader = workspace.classLoader();
+    assertThat(classLoader).isNotSameAs(initialClassLoader);
+    assertThat(MappedJarTest.read(classLoader.getResourceAsStream("p/deflated.txt"))).startsWith("some content");
+  }
+
+  @Test
+  public void class_loader_in_use_can_still_be_read_once_a_jar_is_added() throws Exception {
+    Workspace workspace = Workspace.get(UUID.randomUUID().toString());
+    File jar = MappedJarTest.jar(temporaryFolder.newFile("test.jar"));
+    try (InputStream inputStream = new FileInputStream(jar)) {
+      workspace.addJar("lib.jar", inputStream);
+    }
+    SquidClassLoader classLoader = workspace.classLoader();
+
+    try (InputStream inputStream = new FileInputStream(jar)) {
+      workspace.addJar("other.jar", inputStream);
+    }
+
+    assertThat(workspace.classLoader()).isNotSameAs(classLoader);
+    assertThat(MappedJarTest.read(classLoader.getResourceAsStream("p/deflated.txt"))).startsWith("some content");
+  }
+
+  @Test
+  public void default_workspace_is_used_without_id() {
+    assertThat(Workspace.get(null)).isSameAs(Workspace.defaultWorkspace());
+    assertThat(Workspace.get("")).isSameAs(Workspace.defaultWorkspace());
+    assertThat(Workspace.get(Workspace.DEFAULT_ID).id).isEqualTo(Workspace.DEFAULT_ID);
+  }
+
+  @Test
+  public void jars_can_not_be_added_to_default_workspace() throws Exception {
+    exception.expect(IllegalStateException.class);
+    Workspace.defaultWorkspace().addJar("lib.jar", new ByteArrayInputStream(new byte[0]));
+  }
+
+  @Test
+  public void invalid_workspace_id_is_rejected() {
+    exception.expect(IllegalArgumentException.class);
+    exception.expectMessage("Invalid workspace: '../etc'");
+    Workspace.get("../etc");
+  }
+
+  @Test
+  public void workspace_id_designating_a_parent_directory_is_rejected() {
+    assertThatThrownBy(() -> Workspace.get("..")).isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid workspace: '..'");
+    assertThatThrownBy(() -> Workspace.get(".")).isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid workspace: '.'");
+    assertThatThrownBy(() -> Workspace.get("...")).isInstanceOf(IllegalArgumentException.class).hasMessage("Invalid workspace: '...'");
+    assertThat(Workspace.get("a..b").id).isEqualTo("a..b");
+  }
+
+  @Test
+  public void invalid_jar_is_rejected() throws Exception {
+    Workspace workspace = Workspace.get(UUID.randomUUID().toString());
+
+    exception.expect(RuntimeException.class);
+    workspace.addJar("lib.jar", new ByteArrayInputStream("not a jar".getBytes(StandardCharsets.UTF_8)));
+  }
+}
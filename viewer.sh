@@ -0,0 +1,62 @@
+#!/bin/bash
+# Launcher of the viewer, optionally using an application class data sharing (AppCDS) archive (requires JDK 13+)
+#   ./viewer.sh run      start the viewer, with the archive when it exists
+#   ./viewer.sh dump     record the classes loaded during the warm-up into the archive
+#   ./viewer.sh measure  compare the time to first response without and with the archive
+#   ./viewer.sh load [directory]  replay java sources against the running viewer and report latencies
+set -euo pipefail
+
+JAR=$(ls target/source-graph-viewer-*-jar-with-dependencies.jar 2>/dev/null | head -1)
+ARCHIVE=target/viewer.jsa
+URL=http://localhost:9999/
+
+if [ -z "$JAR" ]; then
+  echo "Build the application first: mvn clean install -PskipJS"
+  exit 1
+fi
+
+function archiveOptions {
+  if [ -f "$ARCHIVE" ]; then
+    echo "-XX:SharedArchiveFile=$ARCHIVE"
+  fi
+}
+
+function dump {
+  rm -f "$ARCHIVE"
+  java -XX:ArchiveClassesAtExit="$ARCHIVE" -Dviewer.warmup.exit=true -jar "$JAR"
+}
+
+# milliseconds between the launch of the JVM and the first successful response
+function timeToFirstResponse {
+  local start
+  start=$(date +%s%N)
+  java "$@" -Dviewer.warmup.rounds=0 -jar "$JAR" > /dev/null 2>&1 &
+  local pid=$!
+  until curl -sf -o /dev/null "$URL"; do
+    sleep 0.01
+  done
+  echo $(( ($(date +%s%N) - start) / 1000000 ))
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+}
+
+case "${1:-run}" in
+  run)
+    java $(archiveOptions) -jar "$JAR"
+    ;;
+  dump)
+    dump
+    ;;
+  measure)
+    echo "Without archive: $(timeToFirstResponse -Xshare:auto) ms"
+    [ -f "$ARCHIVE" ] || dump > /dev/null 2>&1
+    echo "With archive: $(timeToFirstResponse "-XX:SharedArchiveFile=$ARCHIVE") ms"
+    ;;
+  load)
+    java ${LOAD_OPTS:-} -cp "$JAR" org.sonar.java.viewer.LoadTest "${@:2}"
+    ;;
+  *)
+    echo "Usage: $0 [run|dump|measure|load [directory]]"
+    exit 1
+    ;;
+esac